@@ -28,17 +28,23 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.FileExistsException;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.commons.lang.reflect.MethodUtils;
 import org.apache.tools.ant.taskdefs.Execute;
+import org.apache.tools.ant.taskdefs.PumpStreamHandler;
 import org.dkpro.lab.storage.StreamReader;
 import org.dkpro.lab.task.Discriminable;
 import org.springframework.dao.DataAccessResourceFailureException;
@@ -144,7 +150,9 @@ public class Util
 
 	/**
 	 * Shove data from an {@link InputStream} into an {@link OutputStream}.
-	 * Neither of the streams are closed after the operation.
+	 * Neither of the streams are closed after the operation. If both streams
+	 * are file streams, the data is transferred between the file channels
+	 * without copying it through a buffer on the heap.
 	 *
 	 * @param is the source.
 	 * @param os the target.
@@ -153,6 +161,12 @@ public class Util
 	public static void shove(final InputStream is, final OutputStream os)
 		throws IOException
 	{
+		if (is instanceof FileInputStream && os instanceof FileOutputStream) {
+			transfer(((FileInputStream) is).getChannel(),
+					((FileOutputStream) os).getChannel());
+			return;
+		}
+
 		byte[] buffer = new byte[65536];
 		int read;
 		while (true) {
@@ -165,6 +179,46 @@ public class Util
 		os.flush();
 	}
 
+	/**
+	 * Transfer all remaining data from the source channel into the target
+	 * channel. Neither of the channels are closed after the operation.
+	 * <p>
+	 * Channels which are not backed by a regular file, e.g. pipes, report a size of 0 and cannot
+	 * be positioned. Their data is copied through a buffer.
+	 *
+	 * @param aSource the source.
+	 * @param aTarget the target.
+	 * @throws IOException in case of read or write problems.
+	 */
+	public static void transfer(final FileChannel aSource, final FileChannel aTarget)
+		throws IOException
+	{
+		long size = aSource.size();
+		if (size > 0) {
+			long position = aSource.position();
+			while (position < size) {
+				// transferTo may transfer less than requested, e.g. at most 2 GB on some
+				// platforms
+				long transferred = aSource.transferTo(position, size - position, aTarget);
+				if (transferred <= 0) {
+					break;
+				}
+				position += transferred;
+			}
+			aSource.position(position);
+		}
+
+		// Copy anything that is left, e.g. all data of a pipe
+		ByteBuffer buffer = ByteBuffer.allocate(65536);
+		while (aSource.read(buffer) != -1) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				aTarget.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
 	/**
 	 * As {@link #shove(InputStream, OutputStream)} but the streams are closed
 	 * at the end of the process.
@@ -365,6 +419,88 @@ public class Util
 		}
 	}
 
+	/**
+	 * Clone the given file or folder using copy-on-write clones (reflinks) of the files. The
+	 * clones share their data with the source until either of them is modified. This requires
+	 * a file system which supports cloning, e.g. Btrfs, XFS or APFS.
+	 *
+	 * @param aSource the source.
+	 * @param aTarget the target which must not exist.
+	 * @return whether the clone was created. If not, the target does not exist.
+	 */
+	public static boolean cloneTree(File aSource, File aTarget)
+	{
+		if (aTarget.exists() || !(isUnix() || isMac())) {
+			return false;
+		}
+
+		String[] cmdline;
+		if (isMac()) {
+			cmdline = new String[] { "cp", "-R", "-c", aSource.getAbsolutePath(),
+					aTarget.getAbsolutePath() };
+		}
+		else {
+			cmdline = new String[] { "cp", "-R", "--reflink=always", aSource.getAbsolutePath(),
+					aTarget.getAbsolutePath() };
+		}
+
+		Execute exe = new Execute(new PumpStreamHandler(new NullOutputStream()));
+		exe.setVMLauncher(false);
+		exe.setCommandline(cmdline);
+		try {
+			exe.execute();
+		}
+		catch (IOException e) {
+			// Handled below
+		}
+
+		if (exe.isFailure() || !aTarget.exists()) {
+			FileUtils.deleteQuietly(aTarget);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of hard links to the given file.
+	 *
+	 * @param aFile a file.
+	 * @return the number of links or 1 if the file system does not support hard links.
+	 * @throws IOException if the file cannot be accessed.
+	 */
+	public static int getLinkCount(File aFile)
+		throws IOException
+	{
+		try {
+			return ((Number) Files.getAttribute(aFile.toPath(), "unix:nlink")).intValue();
+		}
+		catch (UnsupportedOperationException | IllegalArgumentException e) {
+			return 1;
+		}
+	}
+
+	/**
+	 * If the given file has further hard links, replace it with a private writable copy.
+	 *
+	 * @param aFile a file.
+	 * @return whether the file has been copied.
+	 * @throws IOException if something goes wrong.
+	 */
+	public static boolean breakLink(File aFile)
+		throws IOException
+	{
+		if (!aFile.isFile() || getLinkCount(aFile) <= 1) {
+			return false;
+		}
+
+		File tmp = new File(aFile.getPath() + ".unlink");
+		Files.copy(aFile.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		tmp.setWritable(true);
+		Files.move(tmp.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		return true;
+	}
+
 	public static final ToStringStyle LAB_STYLE = new LabToStringStyle();
 
 	/**
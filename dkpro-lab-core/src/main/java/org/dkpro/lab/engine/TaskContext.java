@@ -20,6 +20,7 @@ package org.dkpro.lab.engine;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 import org.dkpro.lab.conversion.ConversionService;
 import org.dkpro.lab.logging.LoggingService;
@@ -132,6 +133,13 @@ public interface TaskContext
 	 */
 	<T extends StreamReader> T retrieveBinary(String aSearchResultKey, T aReader);
 
+	/**
+	 * Get a read-only view of a resource taking into account imports.
+	 *
+	 * @see StorageService#retrieveMapped(String, String)
+	 */
+	ByteBuffer retrieveMapped(String aKey);
+
 	/**
 	 * Resolves the given import URI to the meta data of the task containing the addressed resource.
 	 * 
@@ -26,8 +26,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -58,8 +60,10 @@ import org.dkpro.lab.task.BatchTask;
 import org.dkpro.lab.task.Dimension;
 import org.dkpro.lab.task.FixedSizeDimension;
 import org.dkpro.lab.task.ParameterSpace;
+import org.dkpro.lab.task.SearchStrategy;
 import org.dkpro.lab.task.Task;
 import org.dkpro.lab.task.TaskContextMetadata;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessResourceFailureException;
 
 public class BatchTaskEngine
@@ -67,6 +71,9 @@ public class BatchTaskEngine
 {
     private TaskContextFactory contextFactory;
 
+    @Autowired(required = false)
+    private SharedTaskExecutor taskExecutor;
+
     private final Log log = LogFactory.getLog(getClass());
 
     /**
@@ -97,43 +104,16 @@ public class BatchTaskEngine
             try {
                 BatchTask cfg = (BatchTask) aConfiguration;
 
-                ParameterSpace parameterSpace = cfg.getParameterSpace();
-
-                // Try to calculate the parameter space size.
-                int estimatedSize = 1;
-                for (Dimension<?> d : parameterSpace.getDimensions()) {
-                    if (d instanceof FixedSizeDimension) {
-                        FixedSizeDimension fsd = (FixedSizeDimension) d;
-                        if (fsd.size() > 0) {
-                            estimatedSize *= fsd.size();
-                        }
-                    }
-                }
-
                 // A subtask execution may apply to multiple parameter space coordinates!
-                Set<String> executedSubtasks = new LinkedHashSet<String>();
-
-                ProgressMeter progress = new ProgressMeter(estimatedSize);
-                for (Map<String, Object> config : parameterSpace) {
-                    if (cfg.getConfiguration() != null) {
-                        for (Entry<String, Object> e : cfg.getConfiguration().entrySet()) {
-                            if (!config.containsKey(e.getKey())) {
-                                config.put(e.getKey(), e.getValue());
-                            }
-                        }
-                    }
+                Set<String> executedSubtasks = Collections
+                        .synchronizedSet(new LinkedHashSet<String>());
 
-                    log.info("== Running new configuration [" + ctx.getId() + "] ==");
-                    List<String> keys = new ArrayList<String>(config.keySet());
-                    for (String key : keys) {
-                        log.info("[" + key + "]: [" + StringUtils
-                                .abbreviateMiddle(Util.toString(config.get(key)), "…", 150) + "]");
-                    }
-
-                    executeConfiguration(cfg, ctx, config, executedSubtasks);
-
-                    progress.next();
-                    log.info("Completed configuration " + progress);
+                SearchStrategy strategy = cfg.getParameterSpace().getSearchStrategy();
+                if (strategy != null) {
+                    executeSearch(cfg, ctx, executedSubtasks, strategy);
+                }
+                else {
+                    executeConfigurations(cfg, ctx, executedSubtasks);
                 }
 
                 // Set the subtask property and persist again, so the property is available to
@@ -167,6 +147,174 @@ public class BatchTaskEngine
         }
     }
 
+    /**
+     * Execute the subtasks for each configuration of the parameter space.
+     * 
+     * @param aConfiguration
+     *            the batch task.
+     * @param aContext
+     *            the context of the current batch task.
+     * @param aExecutedSubtasks
+     *            collects the executed subtasks.
+     */
+    protected void executeConfigurations(BatchTask aConfiguration, TaskContext aContext,
+            Set<String> aExecutedSubtasks)
+        throws ExecutionException, LifeCycleException
+    {
+        ProgressMeter progress = new ProgressMeter(estimateSize(aConfiguration));
+        for (Map<String, Object> config : aConfiguration.getParameterSpace()) {
+            prepareConfiguration(aConfiguration, aContext, config);
+
+            executeConfiguration(aConfiguration, aContext, config, aExecutedSubtasks);
+
+            progress.next();
+            log.info("Completed configuration " + progress);
+        }
+    }
+
+    /**
+     * Execute the subtasks for each configuration chosen by the given search strategy. The
+     * configurations are executed one after the other, since the strategy may choose the next
+     * configuration based on the result of the previous one. This bypasses
+     * {@link #executeConfigurations}, so engines overriding it to change how the configurations
+     * are scheduled must also override this method if that does not work for a search.
+     * 
+     * @param aConfiguration
+     *            the batch task.
+     * @param aContext
+     *            the context of the current batch task.
+     * @param aExecutedSubtasks
+     *            collects the executed subtasks.
+     * @param aStrategy
+     *            the search strategy.
+     */
+    protected void executeSearch(BatchTask aConfiguration, TaskContext aContext,
+            Set<String> aExecutedSubtasks, SearchStrategy aStrategy)
+        throws ExecutionException, LifeCycleException
+    {
+        aStrategy.init(aConfiguration.getParameterSpace());
+        int n = 0;
+        Map<String, Object> config;
+        while ((config = aStrategy.next()) != null) {
+            // The strategy identifies the configuration by the map it has returned
+            Map<String, Object> prepared = new LinkedHashMap<String, Object>(config);
+            prepareConfiguration(aConfiguration, aContext, prepared);
+
+            executeConfiguration(aConfiguration, aContext, prepared, aExecutedSubtasks);
+
+            double result = getSearchResult(aConfiguration, aContext, prepared,
+                    aExecutedSubtasks, aStrategy);
+            aStrategy.report(config, result);
+
+            n++;
+            log.info("Completed configuration " + n + " of search - result: " + result);
+        }
+    }
+
+    /**
+     * Read the result of the given configuration from the contexts of the subtasks. The first
+     * subtask which stored the {@link SearchStrategy#getResultKey() result key} provides the
+     * result.
+     * 
+     * @return the result or {@link Double#NaN} if no subtask provided it.
+     */
+    protected double getSearchResult(BatchTask aConfiguration, TaskContext aContext,
+            Map<String, Object> aConfig, Set<String> aExecutedSubtasks,
+            SearchStrategy aStrategy)
+    {
+        String key = aStrategy.getResultKey();
+        if (key == null) {
+            return Double.NaN;
+        }
+
+        StorageService storage = aContext.getStorageService();
+        for (Task task : aConfiguration.getTasks()) {
+            TaskContextMetadata execution = getExistingExecution(aConfiguration, aContext, task,
+                    aConfig, aExecutedSubtasks);
+            if (execution == null || !storage.containsKey(execution.getId(), key)) {
+                continue;
+            }
+
+            String value = storage.retrieveBinary(execution.getId(), key,
+                    new PropertiesAdapter()).getMap().get(aStrategy.getResultAttribute());
+            if (value != null) {
+                try {
+                    return Double.parseDouble(value.trim());
+                }
+                catch (NumberFormatException e) {
+                    log.warn("Result [" + aStrategy.getResultAttribute() + "] in ["
+                            + execution.getId() + "] is not a number: [" + value + "]");
+                }
+            }
+        }
+
+        log.warn("No subtask provided the result [" + aStrategy.getResultAttribute()
+                + "] in [" + key + "]");
+        return Double.NaN;
+    }
+
+    /**
+     * Copy the given set. If configurations are executed concurrently, the set of executed
+     * subtasks may be modified while it is copied, so the copy is made while holding its lock.
+     */
+    protected static Set<String> snapshot(Set<String> aSet)
+    {
+        synchronized (aSet) {
+            return new LinkedHashSet<String>(aSet);
+        }
+    }
+
+    /**
+     * Try to calculate the parameter space size. Constraints are not considered, since checking
+     * them would require building every configuration before the run starts. Use
+     * {@link ParameterSpace#size()} to get the exact number of allowed configurations.
+     */
+    protected int estimateSize(BatchTask aConfiguration)
+    {
+        ParameterSpace parameterSpace = aConfiguration.getParameterSpace();
+        if (parameterSpace.isIndexed()) {
+            try {
+                return (int) Math.min(Integer.MAX_VALUE, parameterSpace.getGridSize());
+            }
+            catch (ArithmeticException e) {
+                return Integer.MAX_VALUE;
+            }
+        }
+
+        int estimatedSize = 1;
+        for (Dimension<?> d : parameterSpace.getDimensions()) {
+            if (d instanceof FixedSizeDimension) {
+                FixedSizeDimension fsd = (FixedSizeDimension) d;
+                if (fsd.size() > 0) {
+                    estimatedSize *= fsd.size();
+                }
+            }
+        }
+        return estimatedSize;
+    }
+
+    /**
+     * Add the fixed configuration of the batch task to the given parameter space configuration.
+     */
+    protected void prepareConfiguration(BatchTask aConfiguration, TaskContext aContext,
+            Map<String, Object> aConfig)
+    {
+        if (aConfiguration.getConfiguration() != null) {
+            for (Entry<String, Object> e : aConfiguration.getConfiguration().entrySet()) {
+                if (!aConfig.containsKey(e.getKey())) {
+                    aConfig.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        log.info("== Running new configuration [" + aContext.getId() + "] ==");
+        List<String> keys = new ArrayList<String>(aConfig.keySet());
+        for (String key : keys) {
+            log.info("[" + key + "]: [" + StringUtils
+                    .abbreviateMiddle(Util.toString(aConfig.get(key)), "…", 150) + "]");
+        }
+    }
+
     @Override
     public void setContextFactory(TaskContextFactory aContextFactory)
     {
@@ -179,6 +327,23 @@ public class BatchTaskEngine
         return contextFactory;
     }
 
+    public void setTaskExecutor(SharedTaskExecutor aTaskExecutor)
+    {
+        taskExecutor = aTaskExecutor;
+    }
+
+    /**
+     * Get the thread pool shared by the engines of the {@code Lab} instance. If the engine has
+     * not been created by the {@code Lab}, it gets a pool of its own.
+     */
+    protected synchronized SharedTaskExecutor getTaskExecutor()
+    {
+        if (taskExecutor == null) {
+            taskExecutor = new SharedTaskExecutor();
+        }
+        return taskExecutor;
+    }
+
     /**
      * Locate the latest task execution compatible with the given task configuration.
      * 
@@ -291,7 +456,7 @@ public class BatchTaskEngine
      *             if a matching task context could not be found.
      * @see ImportUtil#matchConstraints(Map, Map, boolean)
      */
-    private TaskContextMetadata getLatestExecution(TaskContext aContext, String aType,
+    protected TaskContextMetadata getLatestExecution(TaskContext aContext, String aType,
             Map<String, String> aDiscriminators, Map<String, Object> aConfig)
     {
         // Convert parameter values to strings
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.engine.ExecutionException;
+import org.dkpro.lab.engine.LifeCycleException;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.storage.UnresolvedImportException;
+import org.dkpro.lab.task.BatchTask;
+import org.dkpro.lab.task.Task;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Batch task engine which determines the execution order of the subtasks from their imports
+ * instead of trying to execute them and deferring those whose imports cannot be resolved yet.
+ * A subtask is started on the {@link SharedTaskExecutor shared work-stealing pool} as soon as
+ * all subtasks it imports from are complete.
+ * <p>
+ * Imports which are not visible in the task definitions, e.g. imports added only while a task
+ * is running, are still handled: a subtask failing with an {@link UnresolvedImportException} is
+ * retried once further subtasks have completed.
+ *
+ * @see TaskDependencyGraph
+ */
+public class DagBatchTaskEngine
+    extends BatchTaskEngine
+{
+    private final Log log = LogFactory.getLog(getClass());
+
+    @Value("#{ @Properties['" + MultiThreadBatchTaskEngine.PROP_THREADS + "'] ?: "
+            + "T(java.lang.Math).max(1, "
+            + "T(java.lang.Runtime).getRuntime().availableProcessors() - 1) }")
+    private int maxThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    public DagBatchTaskEngine()
+    {
+        // Nothing to do.
+    }
+
+    public DagBatchTaskEngine(int aNThreads)
+    {
+        setMaxThreads(aNThreads);
+    }
+
+    public void setMaxThreads(int aNThreads)
+    {
+        maxThreads = aNThreads;
+    }
+
+    @Override
+    protected void executeConfiguration(BatchTask aConfiguration, TaskContext aContext,
+            Map<String, Object> aConfig, Set<String> aExecutedSubtasks)
+        throws ExecutionException, LifeCycleException
+    {
+        // Configure subtasks
+        for (Task task : aConfiguration.getTasks()) {
+            aContext.getLifeCycleManager().configure(aContext, task, aConfig);
+        }
+
+        TaskDependencyGraph graph = new TaskDependencyGraph(aConfiguration.getTasks());
+        if (!graph.isAcyclic()) {
+            log.warn("Subtask imports contain a cycle - falling back to sequential execution");
+            super.executeConfiguration(aConfiguration, aContext, aConfig, aExecutedSubtasks);
+            return;
+        }
+
+        List<Task> criticalPath = graph.getCriticalPath();
+        if (log.isInfoEnabled()) {
+            List<String> types = new ArrayList<String>();
+            for (Task task : criticalPath) {
+                types.add(task.getType());
+            }
+            log.info("Scheduling " + graph.getTasks().size() + " subtasks - critical path has "
+                    + criticalPath.size() + " tasks: " + types);
+        }
+
+        Set<String> scope = new HashSet<String>();
+        if (aConfiguration.getScope() != null) {
+            scope.addAll(aConfiguration.getScope());
+        }
+
+        // Number of producers each task is still waiting for
+        Map<Task, Integer> waiting = new IdentityHashMap<Task, Integer>();
+        Queue<Task> ready = new LinkedList<Task>();
+        for (Task task : graph.getTopologicalOrder()) {
+            waiting.put(task, graph.getProducers(task).size());
+            if (graph.getProducers(task).isEmpty()) {
+                ready.add(task);
+            }
+        }
+
+        SharedTaskExecutor executor = getTaskExecutor();
+        int parallelism = executor.getParallelism(maxThreads);
+        CompletionService<TaskContextMetadata> completion =
+                new ExecutorCompletionService<TaskContextMetadata>(executor.getPool());
+        Map<Future<TaskContextMetadata>, Task> running =
+                new IdentityHashMap<Future<TaskContextMetadata>, Task>();
+        List<Task> deferred = new ArrayList<Task>();
+        // Number of completed tasks when a task was started
+        Map<Task, Integer> startedAt = new IdentityHashMap<Task, Integer>();
+        int completed = 0;
+        UnresolvedImportException lastDeferralReason = null;
+        long start = System.currentTimeMillis();
+        try {
+            while (!ready.isEmpty() || !running.isEmpty()) {
+                // Start tasks whose producers are complete until the parallelism limit is reached
+                while (!ready.isEmpty() && running.size() < parallelism) {
+                    Task task = ready.poll();
+                    TaskContextMetadata execution = getExistingExecution(aConfiguration, aContext,
+                            task, aConfig, aExecutedSubtasks);
+                    if (execution != null) {
+                        log.debug("Using existing execution [" + execution.getId() + "]");
+                        complete(graph, task, execution, aExecutedSubtasks, scope, waiting,
+                                ready);
+                        continue;
+                    }
+
+                    log.info("Executing task [" + task.getType() + "]");
+                    if (task instanceof BatchTask) {
+                        ((BatchTask) task).setScope(new HashSet<String>(scope));
+                    }
+                    running.put(completion.submit(new Execution(aContext, task, aConfig,
+                            snapshot(aExecutedSubtasks))), task);
+                    startedAt.put(task, completed);
+                }
+
+                if (running.isEmpty()) {
+                    break;
+                }
+
+                // Wait for the next task to complete
+                Future<TaskContextMetadata> future = SharedTaskExecutor.take(completion);
+                Task task = running.remove(future);
+                try {
+                    complete(graph, task, future.get(), aExecutedSubtasks, scope, waiting, ready);
+                    completed++;
+
+                    // Imports of deferred tasks may be resolvable now
+                    ready.addAll(deferred);
+                    deferred.clear();
+                }
+                catch (java.util.concurrent.ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof UnresolvedImportException) {
+                        log.debug("Deferring execution of task [" + task.getType() + "]: "
+                                + cause.getMessage());
+                        lastDeferralReason = (UnresolvedImportException) cause;
+                        if (completed > startedAt.get(task)) {
+                            // Other tasks have completed in the meantime - try again right away
+                            ready.add(task);
+                        }
+                        else {
+                            deferred.add(task);
+                        }
+                        continue;
+                    }
+                    throw rethrow(cause);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
+        finally {
+            // Only reached with running tasks if a task failed
+            for (Future<TaskContextMetadata> future : running.keySet()) {
+                future.cancel(true);
+            }
+        }
+
+        if (!deferred.isEmpty()) {
+            // Pass unresolved imports up to the outer batch task
+            throw lastDeferralReason;
+        }
+
+        log.info("Executed " + graph.getTasks().size() + " subtasks in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void complete(TaskDependencyGraph aGraph, Task aTask, TaskContextMetadata aExecution,
+            Set<String> aExecutedSubtasks, Set<String> aScope, Map<Task, Integer> aWaiting,
+            Queue<Task> aReady)
+    {
+        // Record new/existing execution
+        aExecutedSubtasks.add(aExecution.getId());
+        aScope.add(aExecution.getId());
+
+        for (Task consumer : aGraph.getConsumers(aTask)) {
+            int remaining = aWaiting.get(consumer) - 1;
+            aWaiting.put(consumer, remaining);
+            if (remaining == 0) {
+                aReady.add(consumer);
+            }
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable aCause)
+        throws ExecutionException, LifeCycleException
+    {
+        if (aCause instanceof ExecutionException) {
+            throw (ExecutionException) aCause;
+        }
+        if (aCause instanceof LifeCycleException) {
+            throw (LifeCycleException) aCause;
+        }
+        if (aCause instanceof RuntimeException) {
+            throw (RuntimeException) aCause;
+        }
+        if (aCause instanceof Error) {
+            throw (Error) aCause;
+        }
+        throw new ExecutionException(aCause);
+    }
+
+    /**
+     * Runs a subtask. The scope is a snapshot taken when the subtask is started, which contains
+     * at least all the contexts the subtask imports from.
+     */
+    private class Execution
+        implements Callable<TaskContextMetadata>
+    {
+        private final TaskContext context;
+        private final Task task;
+        private final Map<String, Object> config;
+        private final Set<String> scope;
+
+        public Execution(TaskContext aContext, Task aTask, Map<String, Object> aConfig,
+                Set<String> aScope)
+        {
+            context = aContext;
+            task = aTask;
+            config = aConfig;
+            scope = aScope;
+        }
+
+        @Override
+        public TaskContextMetadata call()
+            throws Exception
+        {
+            return runNewExecution(context, task, config, scope);
+        }
+    }
+}
@@ -18,11 +18,15 @@
 package org.dkpro.lab.engine.impl;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dkpro.lab.engine.LifeCycleException;
 import org.dkpro.lab.engine.LifeCycleManager;
 import org.dkpro.lab.engine.TaskContext;
@@ -33,11 +37,84 @@ import org.dkpro.lab.task.TaskContextMetadata;
 import org.dkpro.lab.task.impl.ParameterUtil;
 import org.springframework.beans.PropertyAccessor;
 import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataAccessResourceFailureException;
 
 public class DefaultLifeCycleManager
 	implements LifeCycleManager
 {
+	public static final String PROP_MEMORY_BASELINE = "lifecycle.memoryBaseline";
+
+	/**
+	 * How the heap memory used by a task is determined. The heap usage is measured for the whole
+	 * JVM. If tasks run concurrently, e.g. in a {@link MultiThreadBatchTaskEngine}, the recorded
+	 * numbers include memory allocated by the other tasks running at the same time and only
+	 * give a rough indication.
+	 */
+	public static enum MemoryBaseline
+	{
+		/**
+		 * Do not record the heap memory usage.
+		 */
+		NONE,
+
+		/**
+		 * Run a single garbage collection before each task and report, then record the heap
+		 * memory usage of tasks. This stops the JVM, but yields a precise baseline.
+		 */
+		GC,
+
+		/**
+		 * Record the heap memory usage of tasks without triggering a garbage collection.
+		 */
+		MEASURE
+	}
+
+	@Autowired(required = false)
+	@Qualifier("Properties")
+	private Properties properties;
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private MemoryBaseline memoryBaseline = MemoryBaseline.MEASURE;
+
+	// Last value of the property and the baseline parsed from it, so an invalid value is only
+	// reported once
+	private String parsedValue;
+	private MemoryBaseline parsedBaseline;
+
+	/**
+	 * Set how the heap memory used by a task is determined. This can be overridden using the
+	 * {@code Lab} property {@link #PROP_MEMORY_BASELINE}. If the value of the property is not
+	 * valid, the baseline set here is used. Default: {@link MemoryBaseline#MEASURE}.
+	 */
+	public void setMemoryBaseline(MemoryBaseline aMemoryBaseline)
+	{
+		memoryBaseline = aMemoryBaseline;
+	}
+
+	public synchronized MemoryBaseline getMemoryBaseline()
+	{
+		String value = properties != null ? properties.getProperty(PROP_MEMORY_BASELINE) : null;
+		if (value == null) {
+			return memoryBaseline;
+		}
+
+		if (!value.equals(parsedValue)) {
+			parsedValue = value;
+			try {
+				parsedBaseline = MemoryBaseline.valueOf(value.trim().toUpperCase());
+			}
+			catch (IllegalArgumentException e) {
+				log.warn("Invalid value [" + value + "] of [" + PROP_MEMORY_BASELINE
+						+ "] - using [" + memoryBaseline + "]");
+				parsedBaseline = null;
+			}
+		}
+		return parsedBaseline != null ? parsedBaseline : memoryBaseline;
+	}
+
     @Override
     public void configure(TaskContext aParentContext, Task aTask, Map<String, Object> aConfiguration)
     {
@@ -108,9 +185,13 @@ public class DefaultLifeCycleManager
 	public void begin(TaskContext aContext,
 			Task aConfiguration)
 	{
-		for (int g = 0; g < 3; g++) {
+		MemoryBaseline baseline = getMemoryBaseline();
+		if (baseline == MemoryBaseline.GC) {
 			System.gc();
 		}
+		if (baseline != MemoryBaseline.NONE) {
+			aContext.getMetadata().setHeapStart(getHeapUsed());
+		}
 		aContext.getMetadata().setStart(System.currentTimeMillis());
 		aContext.message("Starting task ["+aConfiguration.getType()+"]");
 	}
@@ -120,13 +201,17 @@ public class DefaultLifeCycleManager
 		throws LifeCycleException
 	{
 		aContext.getMetadata().setEnd(System.currentTimeMillis());
+		MemoryBaseline baseline = getMemoryBaseline();
+		if (baseline != MemoryBaseline.NONE) {
+			aContext.getMetadata().setHeapEnd(getHeapUsed());
+		}
 		aContext.message("Completing task ["+aConfiguration.getType()+"]");
 		aContext.message("Running reports for task ["+aConfiguration.getType()+"]");
 		List<Report> reports = new ArrayList<Report>(
 				aConfiguration.getReports());
 		int i = 1;
 		for (Report report : reports) {
-			for (int g = 0; g < 3; g++) {
+			if (baseline == MemoryBaseline.GC) {
 				System.gc();
 			}
 			try {
@@ -162,6 +247,11 @@ public class DefaultLifeCycleManager
 		aContext.message("Completed task ["+aConfiguration.getType()+"]");
 	}
 
+	private static long getHeapUsed()
+	{
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
 	@Override
 	public void fail(TaskContext aContext, Task aConfiguration, Throwable aCause)
 		throws LifeCycleException
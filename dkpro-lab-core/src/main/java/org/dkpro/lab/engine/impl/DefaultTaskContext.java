@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import org.dkpro.lab.conversion.ConversionService;
@@ -183,6 +184,13 @@ public class DefaultTaskContext
 		return getStorageService().retrieveBinary(key.contextId, key.key, aReader);
 	}
 
+	@Override
+	public ByteBuffer retrieveMapped(String aPath)
+	{
+		StorageKey key = resolve(aPath, AccessMode.READONLY, false);
+		return getStorageService().retrieveMapped(key.contextId, key.key);
+	}
+
 	public void setMetadata(TaskContextMetadata aMetadata)
 	{
 		metadata = aMetadata;
@@ -236,6 +244,12 @@ public class DefaultTaskContext
             key = resolve(aKey, aMode, true);
         }
 
+        // The files in the folder may be shared with other contexts, so make sure modifying
+        // them does not affect these.
+        if (aMode == AccessMode.READWRITE && getId().equals(key.contextId)) {
+            storage.unshare(key.contextId, key.key);
+        }
+
         return getStorageService().getStorageFolder(key.contextId, key.key);
     }
 	
@@ -287,6 +301,12 @@ public class DefaultTaskContext
                     + "] resolves to [" + file + "] which is not a file."); 
         }
         
+        // The file may be shared with other contexts, so make sure modifying it does not affect
+        // them.
+        if (aMode == AccessMode.READWRITE && getId().equals(key.contextId) && file.exists()) {
+            storage.unshare(key.contextId, key.key);
+        }
+        
         return file;
     }
 	
@@ -342,6 +362,12 @@ public class DefaultTaskContext
                     + "] resolves to [" + folder + "] which is not a folder."); 
         }
         
+        // The files in the folder may be shared with other contexts, so make sure modifying
+        // them does not affect these.
+        if (aMode == AccessMode.READWRITE && getId().equals(key.contextId)) {
+            storage.unshare(key.contextId, key.key);
+        }
+        
         return folder;
 	}
 
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.ProgressMeter;
+import org.dkpro.lab.Util;
+import org.dkpro.lab.engine.ExecutionException;
+import org.dkpro.lab.engine.LifeCycleException;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.storage.StorageService;
+import org.dkpro.lab.storage.UnresolvedImportException;
+import org.dkpro.lab.storage.filesystem.FileSystemStorageService;
+import org.dkpro.lab.task.BatchTask;
+import org.dkpro.lab.task.SearchStrategy;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Batch task engine distributing the configurations of the parameter space over several
+ * processes, possibly on different machines sharing the storage via a network file system.
+ * <p>
+ * All participating processes run the same batch task with the same {@link #PROP_RUN_ID run
+ * ID}. The first one expands the parameter space into a {@link FileWorkQueue} below the storage
+ * root. Then every process claims configurations from the queue and executes their subtasks
+ * until all configurations are done. Configurations claimed by a process which stopped renewing
+ * its leases, e.g. because it died, are claimed again by another process. Finally, each process
+ * completes the batch task with the subtask executions of all processes.
+ * <p>
+ * Since the queue is durable, a process joining a run whose queue is complete only collects the
+ * results. Use a new run ID to execute the batch task again. Without a run ID, the
+ * configurations are executed locally. Nested batch tasks are always executed locally.
+ * <p>
+ * Parameter spaces with a {@link SearchStrategy} cannot be distributed, since the strategy
+ * chooses each configuration based on the results of the previous ones. Running such a batch
+ * task with a run ID fails instead of every process running the full search.
+ */
+public class DistributedBatchTaskEngine
+    extends BatchTaskEngine
+{
+    public static final String PROP_RUN_ID = "engine.distributed.runId";
+
+    public static final String PROP_QUEUE_ROOT = "engine.distributed.queueRoot";
+
+    public static final String PROP_HEARTBEAT = "engine.distributed.heartbeat";
+
+    public static final String PROP_LEASE_TIMEOUT = "engine.distributed.leaseTimeout";
+
+    public static final String PROP_POLL_INTERVAL = "engine.distributed.pollInterval";
+
+    /**
+     * Folder below the storage root containing the queues.
+     */
+    public static final String QUEUE_FOLDER = ".queue";
+
+    // Set while a configuration claimed from a queue is executed, so nested batch tasks do not
+    // create queues of their own
+    private static final ThreadLocal<Boolean> DISTRIBUTED = new ThreadLocal<Boolean>();
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    @Value("#{ @Properties['" + PROP_RUN_ID + "'] ?: '' }")
+    private String runId = "";
+
+    @Value("#{ @Properties['" + PROP_QUEUE_ROOT + "'] ?: '' }")
+    private String queueRoot = "";
+
+    @Value("#{ @Properties['" + PROP_HEARTBEAT + "'] ?: 10000 }")
+    private long heartbeat = 10000;
+
+    @Value("#{ @Properties['" + PROP_LEASE_TIMEOUT + "'] ?: 60000 }")
+    private long leaseTimeout = 60000;
+
+    @Value("#{ @Properties['" + PROP_POLL_INTERVAL + "'] ?: 1000 }")
+    private long pollInterval = 1000;
+
+    public void setRunId(String aRunId)
+    {
+        runId = aRunId;
+    }
+
+    /**
+     * Set the folder containing the queues. Default: the {@link #QUEUE_FOLDER} below the root of
+     * the file system storage.
+     */
+    public void setQueueRoot(String aQueueRoot)
+    {
+        queueRoot = aQueueRoot;
+    }
+
+    /**
+     * Set the interval in milliseconds at which the leases are renewed. Default: 10 seconds.
+     */
+    public void setHeartbeat(long aHeartbeat)
+    {
+        heartbeat = aHeartbeat;
+    }
+
+    /**
+     * Set the time in milliseconds after which a configuration claimed by a process which does
+     * no longer renew its lease is claimed again. Default: 60 seconds.
+     */
+    public void setLeaseTimeout(long aLeaseTimeout)
+    {
+        leaseTimeout = aLeaseTimeout;
+    }
+
+    /**
+     * Set the interval in milliseconds at which the queue is checked while waiting for other
+     * processes. Default: 1 second.
+     */
+    public void setPollInterval(long aPollInterval)
+    {
+        pollInterval = aPollInterval;
+    }
+
+    @Override
+    protected void executeConfigurations(BatchTask aConfiguration, TaskContext aContext,
+            Set<String> aExecutedSubtasks)
+        throws ExecutionException, LifeCycleException
+    {
+        if (Boolean.TRUE.equals(DISTRIBUTED.get()) || StringUtils.isBlank(runId)) {
+            super.executeConfigurations(aConfiguration, aContext, aExecutedSubtasks);
+            return;
+        }
+
+        // All processes iterate the same parameter space, so the configurations can be
+        // identified by their position
+        List<Map<String, Object>> configs = new ArrayList<Map<String, Object>>();
+        List<Map<String, String>> items = new ArrayList<Map<String, String>>();
+        for (Map<String, Object> config : aConfiguration.getParameterSpace()) {
+            configs.add(config);
+            Map<String, String> item = new TreeMap<String, String>();
+            for (Entry<String, Object> e : config.entrySet()) {
+                item.put(e.getKey(), StringUtils.abbreviateMiddle(Util.toString(e.getValue()),
+                        "…", 150));
+            }
+            items.add(item);
+        }
+
+        FileWorkQueue queue = new FileWorkQueue(new File(getQueueRoot(aContext),
+                aConfiguration.getType() + "-" + runId), ManagementFactory.getRuntimeMXBean()
+                        .getName() + "-" + UUID.randomUUID());
+        queue.setLeaseTimeout(leaseTimeout);
+
+        ScheduledExecutorService heartbeats = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable aRunnable)
+                    {
+                        Thread thread = new Thread(aRunnable, "heartbeat-" + runId);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            if (queue.create(items)) {
+                log.info("Coordinating run [" + runId + "] in [" + queue.getFolder() + "]");
+            }
+            else {
+                log.info("Joining run [" + runId + "] in [" + queue.getFolder() + "]");
+            }
+            if (queue.size() != configs.size()) {
+                throw new ExecutionException("Queue [" + queue.getFolder() + "] has "
+                        + queue.size() + " configurations but the parameter space has "
+                        + configs.size() + " - use a different run ID");
+            }
+            for (int i = 0; i < items.size(); i++) {
+                if (!items.get(i).equals(queue.getItem(i))) {
+                    throw new ExecutionException("Configuration " + i + " of queue ["
+                            + queue.getFolder() + "] does not match the parameter space - use "
+                            + "a different run ID");
+                }
+            }
+
+            heartbeats.scheduleAtFixedRate(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    queue.heartbeat();
+                }
+            }, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+
+            ProgressMeter progress = new ProgressMeter(configs.size());
+            while (true) {
+                Map<Integer, String> failures = queue.getFailures();
+                if (!failures.isEmpty()) {
+                    Entry<Integer, String> first = failures.entrySet().iterator().next();
+                    throw new ExecutionException("Configuration " + first.getKey() + " of run ["
+                            + runId + "] failed:\n" + first.getValue());
+                }
+
+                Integer item = queue.claim();
+                if (item == null) {
+                    if (queue.isComplete()) {
+                        break;
+                    }
+                    // Remaining configurations are claimed by other processes
+                    Thread.sleep(pollInterval);
+                    continue;
+                }
+
+                log.info("Claimed configuration " + item + " of run [" + runId + "]");
+                executeItem(queue, item, aConfiguration, aContext, configs.get(item));
+                progress.next();
+                log.info("Completed configuration " + progress);
+            }
+
+            aExecutedSubtasks.addAll(queue.getResults());
+        }
+        catch (IOException e) {
+            throw new ExecutionException(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
+        finally {
+            heartbeats.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void executeSearch(BatchTask aConfiguration, TaskContext aContext,
+            Set<String> aExecutedSubtasks, SearchStrategy aStrategy)
+        throws ExecutionException, LifeCycleException
+    {
+        if (!Boolean.TRUE.equals(DISTRIBUTED.get()) && StringUtils.isNotBlank(runId)) {
+            throw new ExecutionException("Batch task [" + aConfiguration.getType()
+                    + "] uses a search strategy, which cannot be distributed - run it without "
+                    + "[" + PROP_RUN_ID + "]");
+        }
+
+        super.executeSearch(aConfiguration, aContext, aExecutedSubtasks, aStrategy);
+    }
+
+    private void executeItem(FileWorkQueue aQueue, int aItem, BatchTask aConfiguration,
+            TaskContext aContext, Map<String, Object> aConfig)
+        throws ExecutionException, LifeCycleException, IOException
+    {
+        // Subtask executions of other processes may be reused
+        Set<String> executedSubtasks = Collections.synchronizedSet(new LinkedHashSet<String>(
+                aQueue.getResults()));
+        Map<String, Object> config = new HashMap<String, Object>(aConfig);
+        prepareConfiguration(aConfiguration, aContext, config);
+
+        DISTRIBUTED.set(true);
+        try {
+            executeConfiguration(aConfiguration, aContext, config, executedSubtasks);
+        }
+        catch (UnresolvedImportException e) {
+            // Another process may be able to resolve the imports
+            aQueue.release(aItem);
+            throw e;
+        }
+        catch (ExecutionException | LifeCycleException | RuntimeException | Error e) {
+            aQueue.fail(aItem, ExceptionUtils.getFullStackTrace(e));
+            throw e;
+        }
+        finally {
+            DISTRIBUTED.remove();
+        }
+
+        aQueue.complete(aItem, snapshot(executedSubtasks));
+    }
+
+    private File getQueueRoot(TaskContext aContext)
+        throws ExecutionException
+    {
+        if (StringUtils.isNotBlank(queueRoot)) {
+            return new File(queueRoot);
+        }
+
+        StorageService storage = aContext.getStorageService();
+        if (storage instanceof FileSystemStorageService) {
+            return new File(((FileSystemStorageService) storage).getStorageRoot(), QUEUE_FOLDER);
+        }
+
+        throw new ExecutionException("Storage [" + storage.getClass().getName()
+                + "] has no storage root - set [" + PROP_QUEUE_ROOT + "]");
+    }
+}
@@ -52,7 +52,7 @@ public class ExecutableTaskEngine
             ctx.getLifeCycleManager().begin(ctx, aConfiguration);
 
             try {
-                ((ExecutableTask) aConfiguration).execute(ctx);
+                execute(ctx, (ExecutableTask) aConfiguration);
             }
             catch (LifeCycleException e) {
                 ctx.getLifeCycleManager().fail(ctx, aConfiguration, e);
@@ -82,6 +82,15 @@ public class ExecutableTaskEngine
         }
     }
 
+    /**
+     * Run the main execution step of the given task. The task has already been initialized.
+     */
+    protected void execute(TaskContext aContext, ExecutableTask aTask)
+        throws Exception
+    {
+        aTask.execute(aContext);
+    }
+
     @Override
     public void setContextFactory(TaskContextFactory aContextFactory)
     {
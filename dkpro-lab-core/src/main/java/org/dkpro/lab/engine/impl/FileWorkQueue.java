@@ -0,0 +1,504 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Durable work queue stored in a folder which may be shared by several processes, possibly on
+ * different machines via a network file system. The queue consists of a fixed list of items
+ * which is written once when the queue is {@link #create(List) created}.
+ * <p>
+ * A process {@link #claim() claims} an item by atomically creating a lease file for it. While
+ * working on the item, the process must regularly call {@link #heartbeat()} to renew its
+ * leases. A lease which has not been renewed for the {@link #setLeaseTimeout(long) lease
+ * timeout} is considered to belong to a dead process and the item can be claimed again. When
+ * the item is done, the process records the result and removes its lease.
+ * <p>
+ * Layout of the queue folder:
+ * <ul>
+ * <li>{@code QUEUE.properties} - number of items</li>
+ * <li>{@code items/N.properties} - description of item N</li>
+ * <li>{@code leases/N} - lease of item N, containing the owner</li>
+ * <li>{@code done/N} - result of item N, one value per line</li>
+ * <li>{@code failed/N} - error of item N</li>
+ * </ul>
+ * <p>
+ * Since items never leave the done or failed state, the queue remembers which items it has seen
+ * in these states and checks the remaining ones by listing the {@code done} and {@code failed}
+ * folders instead of checking every item individually.
+ */
+public class FileWorkQueue
+{
+    public static final String QUEUE_FILE = "QUEUE.properties";
+
+    private static final String ITEMS = "items";
+    private static final String LEASES = "leases";
+    private static final String DONE = "done";
+    private static final String FAILED = "failed";
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private final File folder;
+    private final String owner;
+    private final Set<Integer> leases = Collections
+            .newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    private final BitSet done = new BitSet();
+    private final BitSet failed = new BitSet();
+
+    private long leaseTimeout = 60000;
+    private int size = -1;
+
+    /**
+     * @param aFolder
+     *            the queue folder.
+     * @param aOwner
+     *            identifies the process using the queue, e.g. host name and process ID.
+     */
+    public FileWorkQueue(File aFolder, String aOwner)
+    {
+        folder = aFolder;
+        owner = aOwner;
+    }
+
+    public File getFolder()
+    {
+        return folder;
+    }
+
+    public String getOwner()
+    {
+        return owner;
+    }
+
+    /**
+     * Set the time in milliseconds after which a lease that has not been renewed expires.
+     * Default: 60 seconds.
+     */
+    public void setLeaseTimeout(long aLeaseTimeout)
+    {
+        leaseTimeout = aLeaseTimeout;
+    }
+
+    public long getLeaseTimeout()
+    {
+        return leaseTimeout;
+    }
+
+    /**
+     * Check if the queue has been created.
+     */
+    public boolean exists()
+    {
+        return new File(folder, QUEUE_FILE).isFile();
+    }
+
+    /**
+     * Create the queue with the given items unless it already exists. The queue is prepared
+     * in a temporary folder and then moved to its final location, so other processes never see
+     * a partially created queue.
+     *
+     * @param aItems
+     *            descriptions of the items.
+     * @return whether the queue was created by this call.
+     */
+    public boolean create(List<Map<String, String>> aItems)
+        throws IOException
+    {
+        if (exists()) {
+            return false;
+        }
+
+        File temp = new File(folder.getParentFile(), "." + folder.getName() + "-"
+                + UUID.randomUUID());
+        try {
+            File items = new File(temp, ITEMS);
+            for (int i = 0; i < aItems.size(); i++) {
+                Properties props = new Properties();
+                props.putAll(aItems.get(i));
+                write(new File(items, i + ".properties"), props);
+            }
+            FileUtils.forceMkdir(new File(temp, LEASES));
+            FileUtils.forceMkdir(new File(temp, DONE));
+            FileUtils.forceMkdir(new File(temp, FAILED));
+
+            Properties props = new Properties();
+            props.setProperty("size", String.valueOf(aItems.size()));
+            write(new File(temp, QUEUE_FILE), props);
+
+            try {
+                Files.move(temp.toPath(), folder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (FileAlreadyExistsException e) {
+                return false;
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                throw new IOException("Queue folder [" + folder + "] must be on the same file "
+                        + "system as its parent", e);
+            }
+            catch (IOException e) {
+                // Some platforms report a non-empty target folder differently
+                if (exists()) {
+                    return false;
+                }
+                throw e;
+            }
+            log.info("Created work queue [" + folder + "] with " + aItems.size() + " items");
+            return true;
+        }
+        finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Get the number of items.
+     */
+    public synchronized int size()
+        throws IOException
+    {
+        if (size < 0) {
+            size = Integer.parseInt(read(new File(folder, QUEUE_FILE)).getProperty("size"));
+        }
+        return size;
+    }
+
+    /**
+     * Get the description of the given item.
+     */
+    public Map<String, String> getItem(int aItem)
+        throws IOException
+    {
+        Map<String, String> item = new TreeMap<String, String>();
+        Properties props = read(new File(folder, ITEMS + "/" + aItem + ".properties"));
+        for (String key : props.stringPropertyNames()) {
+            item.put(key, props.getProperty(key));
+        }
+        return item;
+    }
+
+    /**
+     * Claim the first item which is neither done nor failed and not leased by a live process.
+     *
+     * @return the claimed item or {@code null} if there is none at the moment.
+     */
+    public Integer claim()
+        throws IOException
+    {
+        refresh();
+        for (int i = 0; i < size(); i++) {
+            if (isFinished(i)) {
+                continue;
+            }
+
+            File lease = getLease(i);
+            if (lease.exists() && !removeExpiredLease(i, lease)) {
+                continue;
+            }
+
+            try {
+                Files.write(lease.toPath(), owner.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
+            catch (FileAlreadyExistsException e) {
+                // Another process was faster
+                continue;
+            }
+
+            // The previous owner may have completed the item in the meantime
+            if (isDone(i)) {
+                release(i);
+                continue;
+            }
+
+            leases.add(i);
+            return i;
+        }
+        return null;
+    }
+
+    /**
+     * Renew the leases of the items claimed by this process.
+     */
+    public void heartbeat()
+    {
+        long now = System.currentTimeMillis();
+        for (Integer item : leases) {
+            File lease = getLease(item);
+            if (!lease.setLastModified(now)) {
+                log.warn("Unable to renew lease [" + lease + "]");
+            }
+        }
+    }
+
+    /**
+     * Record the result of the given item and release its lease.
+     */
+    public void complete(int aItem, Collection<String> aResult)
+        throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String value : aResult) {
+            sb.append(value).append('\n');
+        }
+        writeAtomically(new File(folder, DONE + "/" + aItem), sb.toString());
+        synchronized (this) {
+            done.set(aItem);
+        }
+        release(aItem);
+    }
+
+    /**
+     * Record that the given item failed and release its lease. Failed items are not claimed
+     * again.
+     */
+    public void fail(int aItem, String aError)
+        throws IOException
+    {
+        writeAtomically(new File(folder, FAILED + "/" + aItem), aError);
+        synchronized (this) {
+            failed.set(aItem);
+        }
+        release(aItem);
+    }
+
+    /**
+     * Release the lease of the given item without completing it, so it can be claimed again.
+     */
+    public void release(int aItem)
+        throws IOException
+    {
+        leases.remove(aItem);
+        File lease = getLease(aItem);
+        // Do not remove the lease if it has expired and been taken over by another process
+        if (lease.exists() && owner.equals(readString(lease))) {
+            Files.deleteIfExists(lease.toPath());
+        }
+    }
+
+    public boolean isDone(int aItem)
+    {
+        return new File(folder, DONE + "/" + aItem).exists();
+    }
+
+    public boolean isFailed(int aItem)
+    {
+        return new File(folder, FAILED + "/" + aItem).exists();
+    }
+
+    /**
+     * Check if all items are done.
+     */
+    public boolean isComplete()
+        throws IOException
+    {
+        refresh();
+        synchronized (this) {
+            return done.cardinality() >= size();
+        }
+    }
+
+    /**
+     * Get the errors of the failed items.
+     */
+    public Map<Integer, String> getFailures()
+        throws IOException
+    {
+        refresh();
+        BitSet items;
+        synchronized (this) {
+            items = (BitSet) failed.clone();
+        }
+        Map<Integer, String> failures = new TreeMap<Integer, String>();
+        for (int i = items.nextSetBit(0); i >= 0; i = items.nextSetBit(i + 1)) {
+            failures.put(i, readString(new File(folder, FAILED + "/" + i)));
+        }
+        return failures;
+    }
+
+    /**
+     * Update the done and failed items by listing the corresponding folders.
+     */
+    private void refresh()
+        throws IOException
+    {
+        scan(DONE, done);
+        scan(FAILED, failed);
+    }
+
+    private void scan(String aFolder, BitSet aItems)
+        throws IOException
+    {
+        String[] names = new File(folder, aFolder).list();
+        if (names == null) {
+            throw new IOException("Unable to list [" + new File(folder, aFolder) + "]");
+        }
+        synchronized (this) {
+            for (String name : names) {
+                // Skip temporary files of items being written
+                if (!name.startsWith(".")) {
+                    aItems.set(Integer.parseInt(name));
+                }
+            }
+        }
+    }
+
+    private synchronized boolean isFinished(int aItem)
+    {
+        return done.get(aItem) || failed.get(aItem);
+    }
+
+    /**
+     * Get the results of all items which are done, in the order of the items.
+     */
+    public Set<String> getResults()
+        throws IOException
+    {
+        Set<String> results = new LinkedHashSet<String>();
+        for (int i = 0; i < size(); i++) {
+            File done = new File(folder, DONE + "/" + i);
+            if (done.exists()) {
+                for (String line : FileUtils.readLines(done, StandardCharsets.UTF_8.name())) {
+                    if (!line.isEmpty()) {
+                        results.add(line);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private File getLease(int aItem)
+    {
+        return new File(folder, LEASES + "/" + aItem);
+    }
+
+    private boolean isExpired(File aLease)
+    {
+        long modified = aLease.lastModified();
+        // A lease removed in the meantime reports 0 and is handled when moving it
+        return modified > 0 && System.currentTimeMillis() - modified > leaseTimeout;
+    }
+
+    /**
+     * Remove the given lease if it has expired.
+     *
+     * @return whether the lease has been removed by this call.
+     */
+    private boolean removeExpiredLease(int aItem, File aLease)
+        throws IOException
+    {
+        String expiredOwner = readString(aLease);
+        if (!isExpired(aLease)) {
+            return false;
+        }
+
+        // Only one process succeeds in moving the expired lease away
+        File expired = new File(aLease.getPath() + "." + UUID.randomUUID() + ".expired");
+        try {
+            Files.move(aLease.toPath(), expired.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+
+        // Between checking and moving the lease, another process may have taken it over or the
+        // owner may have renewed it. Such a lease is still valid, so put it back. Linking does
+        // not replace a lease created in the meantime, unlike renaming.
+        if (!isExpired(expired) || !expiredOwner.equals(readString(expired))) {
+            try {
+                Files.createLink(aLease.toPath(), expired.toPath());
+            }
+            catch (FileAlreadyExistsException e) {
+                log.warn("Unable to restore lease of item " + aItem + " held by ["
+                        + readString(expired) + "] - item may be processed twice");
+            }
+            FileUtils.deleteQuietly(expired);
+            return false;
+        }
+
+        log.info("Lease of item " + aItem + " held by [" + expiredOwner + "] has expired");
+        FileUtils.deleteQuietly(expired);
+        return true;
+    }
+
+    private void writeAtomically(File aFile, String aContent)
+        throws IOException
+    {
+        File temp = new File(aFile.getParentFile(), "." + aFile.getName() + "-"
+                + UUID.randomUUID());
+        FileUtils.writeStringToFile(temp, aContent, StandardCharsets.UTF_8.name());
+        Files.move(temp.toPath(), aFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String readString(File aFile)
+    {
+        try {
+            return FileUtils.readFileToString(aFile, StandardCharsets.UTF_8.name());
+        }
+        catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void write(File aFile, Properties aProperties)
+        throws IOException
+    {
+        FileUtils.forceMkdir(aFile.getParentFile());
+        try (OutputStream os = FileUtils.openOutputStream(aFile)) {
+            aProperties.store(os, null);
+        }
+    }
+
+    private static Properties read(File aFile)
+        throws IOException
+    {
+        Properties props = new Properties();
+        try (InputStream is = FileUtils.openInputStream(aFile)) {
+            props.load(is);
+        }
+        return props;
+    }
+}
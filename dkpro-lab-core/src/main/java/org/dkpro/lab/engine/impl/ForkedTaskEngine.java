@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import static java.util.Arrays.asList;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.engine.ExecutionException;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.storage.UnresolvedImportException;
+import org.dkpro.lab.storage.filesystem.EmbeddedStorageService;
+import org.dkpro.lab.task.ExecutableTask;
+import org.dkpro.lab.task.impl.TaskBase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Engine running the main execution step of executable tasks in a worker JVM of the
+ * {@link ForkedWorkerPool}. The task context is created, and the reports are run, in the
+ * current JVM. The worker accesses the context through the shared storage.
+ * <p>
+ * Tasks must implement {@link Serializable} to be run in a worker. Fields inherited from
+ * non-serializable base classes are not transferred, except for the configuration of
+ * {@link TaskBase}, i.e. the type, attributes, discriminators, imports and serializable reports.
+ * Tasks which cannot be serialized are run in the current JVM. So are all tasks if the storage is
+ * an {@link EmbeddedStorageService}, since its key-value store cannot be opened by a worker.
+ * <p>
+ * If a worker crashes, it is replaced by a new one and the task is run again up to
+ * {@link #PROP_RETRIES} times. Data the crashed attempt stored in the task context is removed
+ * before. If a worker does not complete a task within {@link #PROP_TIMEOUT} milliseconds, it
+ * is terminated and the task fails.
+ */
+public class ForkedTaskEngine
+    extends ExecutableTaskEngine
+{
+    public static final String PROP_RETRIES = "engine.forked.maxRetries";
+
+    public static final String PROP_TIMEOUT = "engine.forked.timeout";
+
+    private static ForkedWorkerPool defaultWorkerPool;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    @Autowired(required = false)
+    private ForkedWorkerPool workerPool;
+
+    @Value("#{ @Properties['" + PROP_RETRIES + "'] ?: 1 }")
+    private int maxRetries = 1;
+
+    @Value("#{ @Properties['" + PROP_TIMEOUT + "'] ?: 0 }")
+    private long timeout = 0;
+
+    public void setWorkerPool(ForkedWorkerPool aWorkerPool)
+    {
+        workerPool = aWorkerPool;
+    }
+
+    /**
+     * Get the worker pool. If none has been set, a pool shared by all engines without pool is
+     * used.
+     */
+    protected ForkedWorkerPool getWorkerPool()
+    {
+        if (workerPool != null) {
+            return workerPool;
+        }
+
+        synchronized (ForkedTaskEngine.class) {
+            if (defaultWorkerPool == null) {
+                final ForkedWorkerPool pool = new ForkedWorkerPool();
+                Runtime.getRuntime().addShutdownHook(new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        pool.shutdown();
+                    }
+                });
+                defaultWorkerPool = pool;
+            }
+            return defaultWorkerPool;
+        }
+    }
+
+    public void setMaxRetries(int aMaxRetries)
+    {
+        maxRetries = aMaxRetries;
+    }
+
+    /**
+     * Set the maximum time in milliseconds a worker may take to run a task. Set to 0 to wait
+     * indefinitely. Default: 0.
+     */
+    public void setTimeout(long aTimeout)
+    {
+        timeout = aTimeout;
+    }
+
+    @Override
+    protected void execute(TaskContext aContext, ExecutableTask aTask)
+        throws Exception
+    {
+        byte[] task = null;
+        if (aContext.getStorageService() instanceof EmbeddedStorageService) {
+            log.debug("Storage cannot be shared with a worker");
+        }
+        else if (aTask instanceof Serializable) {
+            try {
+                task = SerializationUtils.serialize((Serializable) aTask);
+            }
+            catch (SerializationException e) {
+                log.warn("Unable to serialize task [" + aTask.getType() + "]: " + e.getMessage());
+            }
+        }
+
+        if (task == null) {
+            log.info("Running task [" + aTask.getType() + "] in the current JVM");
+            super.execute(aContext, aTask);
+            return;
+        }
+
+        ForkedTaskWorker.Request request = new ForkedTaskWorker.Request(aContext.getMetadata(),
+                task, aTask instanceof TaskBase
+                        ? new ForkedTaskWorker.TaskState((TaskBase) aTask) : null);
+        Set<String> initialKeys = listKeys(aContext);
+        ForkedWorkerPool pool = getWorkerPool();
+        for (int attempt = 0;; attempt++) {
+            ForkedWorkerPool.Worker worker = pool.acquire();
+            ForkedTaskWorker.Result result;
+            try {
+                result = worker.execute(request, timeout);
+            }
+            catch (InterruptedIOException e) {
+                pool.discard(worker);
+                throw new ExecutionException("Worker running task [" + aTask.getType()
+                        + "] did not complete within " + timeout + " ms", e);
+            }
+            catch (IOException e) {
+                pool.discard(worker);
+                if (attempt >= maxRetries) {
+                    throw new ExecutionException("Worker running task [" + aTask.getType()
+                            + "] crashed " + (attempt + 1) + " times", e);
+                }
+                log.warn("Worker running task [" + aTask.getType() + "] crashed - retrying "
+                        + "with a new worker", e);
+                removeNewKeys(aContext, initialKeys);
+                continue;
+            }
+            pool.release(worker);
+
+            if (result.isSuccess()) {
+                return;
+            }
+            if (result.isUnresolvedImport()) {
+                throw new UnresolvedImportException(aContext,
+                        StringUtils.join(aContext.getMetadata().getImports().values(), ", "),
+                        StringUtils.substringBefore(result.getError(), "\n"));
+            }
+            throw new ExecutionException("Task [" + aTask.getType() + "] failed in worker:\n"
+                    + result.getError());
+        }
+    }
+
+    /**
+     * List the keys at the top level of the given context.
+     */
+    private static Set<String> listKeys(TaskContext aContext)
+    {
+        Set<String> keys = new HashSet<String>();
+        String[] names = aContext.getStorageService().locateKey(aContext.getId(), "").list();
+        if (names != null) {
+            keys.addAll(asList(names));
+        }
+        return keys;
+    }
+
+    /**
+     * Remove the keys a crashed attempt stored in the given context.
+     */
+    private void removeNewKeys(TaskContext aContext, Set<String> aInitialKeys)
+    {
+        for (String key : listKeys(aContext)) {
+            if (!aInitialKeys.contains(key)) {
+                log.debug("Removing [" + key + "] stored by the crashed attempt");
+                aContext.getStorageService().delete(aContext.getId(), key);
+            }
+        }
+    }
+}
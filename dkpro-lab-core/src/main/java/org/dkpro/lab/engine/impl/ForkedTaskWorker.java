@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.dkpro.lab.Lab;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.reporting.Report;
+import org.dkpro.lab.storage.UnresolvedImportException;
+import org.dkpro.lab.task.ExecutableTask;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.dkpro.lab.task.impl.TaskBase;
+
+/**
+ * Main class of a worker JVM forked by the {@link ForkedWorkerPool}. The worker reads
+ * {@link Request requests} from its standard input, runs the main execution step of the task
+ * in the given context and writes a {@link Result result} to its standard output. The worker
+ * exits when its standard input is closed.
+ * <p>
+ * The worker accesses the storage of the parent JVM through the file system, so it must use the
+ * same {@code DKPRO_HOME}. Anything the task writes to {@link System#out} is redirected to
+ * {@link System#err}.
+ */
+public class ForkedTaskWorker
+{
+    public static void main(String[] aArgs)
+        throws Exception
+    {
+        // Standard output is reserved for the results
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        out.flush();
+
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(System.in));
+
+        DefaultTaskContextFactory contextFactory = (DefaultTaskContextFactory) Lab.getInstance()
+                .getTaskContextFactory();
+
+        while (true) {
+            Request request;
+            try {
+                request = (Request) in.readObject();
+            }
+            catch (EOFException e) {
+                // Parent JVM closed the connection
+                break;
+            }
+
+            out.writeObject(execute(contextFactory, request));
+            out.flush();
+            out.reset();
+        }
+    }
+
+    private static Result execute(DefaultTaskContextFactory aContextFactory, Request aRequest)
+    {
+        TaskContextMetadata metadata = new TaskContextMetadata();
+        metadata.setId(aRequest.getContextId());
+        metadata.setType(aRequest.getType());
+        metadata.setImports(aRequest.getImports());
+
+        TaskContext ctx = aContextFactory.createContext(metadata);
+        try {
+            ExecutableTask task = aRequest.getTask();
+            task.initialize(ctx);
+            try {
+                task.execute(ctx);
+            }
+            finally {
+                task.destroy(ctx);
+            }
+            return new Result(null, false);
+        }
+        catch (Throwable e) {
+            return new Result(ExceptionUtils.getFullStackTrace(e),
+                    e instanceof UnresolvedImportException);
+        }
+    }
+
+    /**
+     * Request to run the main execution step of a task.
+     */
+    public static class Request
+        implements Serializable
+    {
+        private static final long serialVersionUID = 3093434718364218557L;
+
+        private final String contextId;
+        private final String type;
+        private final HashMap<String, String> imports;
+        private final byte[] task;
+        private final TaskState taskState;
+
+        /**
+         * @param aMetadata
+         *            the metadata of the context created for the task. The imports must
+         *            already be resolved.
+         * @param aTask
+         *            the serialized task.
+         * @param aTaskState
+         *            the state of the task which is not serialized along with the task or
+         *            {@code null}.
+         */
+        public Request(TaskContextMetadata aMetadata, byte[] aTask, TaskState aTaskState)
+        {
+            contextId = aMetadata.getId();
+            type = aMetadata.getType();
+            imports = new HashMap<String, String>(aMetadata.getImports());
+            task = aTask;
+            taskState = aTaskState;
+        }
+
+        public String getContextId()
+        {
+            return contextId;
+        }
+
+        public String getType()
+        {
+            return type;
+        }
+
+        public Map<String, String> getImports()
+        {
+            return imports;
+        }
+
+        public ExecutableTask getTask()
+        {
+            ExecutableTask t = (ExecutableTask) SerializationUtils.deserialize(task);
+            if (taskState != null) {
+                taskState.apply((TaskBase) t);
+            }
+            return t;
+        }
+    }
+
+    /**
+     * Configuration of a {@link TaskBase}. Tasks are serialized to be sent to the worker, but
+     * {@link TaskBase} is not serializable, so its fields are reset by its constructor when the
+     * task is deserialized. The configuration is therefore transferred separately. Reports are
+     * run in the parent JVM, so only reports which are serializable are transferred.
+     */
+    public static class TaskState
+        implements Serializable
+    {
+        private static final long serialVersionUID = -4705470231768389412L;
+
+        private final String type;
+        private final HashMap<String, String> attributes;
+        private final HashMap<String, String> descriminators;
+        private final HashMap<String, String> imports;
+        private final ArrayList<Report> reports;
+
+        public TaskState(TaskBase aTask)
+        {
+            type = aTask.getType();
+            attributes = new HashMap<String, String>(aTask.getAttributes());
+            descriminators = new HashMap<String, String>(aTask.getDescriminators());
+            imports = new HashMap<String, String>(aTask.getImports());
+            reports = new ArrayList<Report>();
+            for (Report report : aTask.getReports()) {
+                if (report instanceof Serializable) {
+                    reports.add(report);
+                }
+            }
+        }
+
+        public void apply(TaskBase aTask)
+        {
+            aTask.setType(type);
+            for (Entry<String, String> e : attributes.entrySet()) {
+                aTask.setAttribute(e.getKey(), e.getValue());
+            }
+            for (Entry<String, String> e : descriminators.entrySet()) {
+                aTask.setDescriminator(e.getKey(), e.getValue());
+            }
+            aTask.getImports().putAll(imports);
+            aTask.setReports(reports);
+        }
+    }
+
+    /**
+     * Outcome of a {@link Request}. Exceptions are passed as text since they often reference
+     * objects which cannot be serialized.
+     */
+    public static class Result
+        implements Serializable
+    {
+        private static final long serialVersionUID = -2519834287451830165L;
+
+        private final String error;
+        private final boolean unresolvedImport;
+
+        public Result(String aError, boolean aUnresolvedImport)
+        {
+            error = aError;
+            unresolvedImport = aUnresolvedImport;
+        }
+
+        public boolean isSuccess()
+        {
+            return error == null;
+        }
+
+        /**
+         * Get the stack trace of the exception thrown by the task.
+         */
+        public String getError()
+        {
+            return error;
+        }
+
+        /**
+         * Check if the task failed because an import could not be resolved.
+         */
+        public boolean isUnresolvedImport()
+        {
+            return unresolvedImport;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+/**
+ * Pool of reusable worker JVMs running {@link ForkedTaskWorker}. Workers are started on demand
+ * using the class path of the current JVM and are kept running until the pool is shut down.
+ * <p>
+ * The number of workers and the JVM arguments of the workers, e.g. the heap size, can be set
+ * using the {@code Lab} properties {@link #PROP_WORKERS} and {@link #PROP_JVM_ARGS}.
+ */
+public class ForkedWorkerPool
+{
+    public static final String PROP_WORKERS = "engine.forked.maxWorkers";
+
+    public static final String PROP_JVM_ARGS = "engine.forked.jvmArgs";
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    @Autowired(required = false)
+    @Qualifier("Properties")
+    private Properties properties;
+
+    private int maxWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private List<String> jvmArgs = new ArrayList<String>();
+
+    private final LinkedList<Worker> idle = new LinkedList<Worker>();
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private int starting;
+    private ScheduledExecutorService watchdog;
+
+    /**
+     * Set the maximum number of workers. Default: half the number of available processors.
+     */
+    public void setMaxWorkers(int aMaxWorkers)
+    {
+        maxWorkers = aMaxWorkers;
+    }
+
+    public int getMaxWorkers()
+    {
+        String value = properties != null ? properties.getProperty(PROP_WORKERS) : null;
+        return Math.max(1, value != null ? Integer.parseInt(value.trim()) : maxWorkers);
+    }
+
+    /**
+     * Set the JVM arguments of the workers, e.g. {@code -Xmx4g}. Default: none.
+     */
+    public void setJvmArgs(List<String> aJvmArgs)
+    {
+        jvmArgs = aJvmArgs;
+    }
+
+    public List<String> getJvmArgs()
+    {
+        String value = properties != null ? properties.getProperty(PROP_JVM_ARGS) : null;
+        if (value != null) {
+            List<String> args = new ArrayList<String>();
+            for (String arg : StringUtils.split(value)) {
+                args.add(arg);
+            }
+            return args;
+        }
+        return jvmArgs;
+    }
+
+    /**
+     * Get an idle worker, starting a new one if the maximum number of workers has not been
+     * reached yet. Otherwise wait until a worker is {@link #release(Worker) released}.
+     */
+    public Worker acquire()
+        throws IOException, InterruptedException
+    {
+        final Worker[] worker = new Worker[1];
+        final boolean[] start = new boolean[1];
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+        {
+            @Override
+            public boolean block()
+                throws InterruptedException
+            {
+                synchronized (ForkedWorkerPool.this) {
+                    while (!isReleasable()) {
+                        ForkedWorkerPool.this.wait();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable()
+            {
+                synchronized (ForkedWorkerPool.this) {
+                    if (worker[0] == null && !start[0]) {
+                        if (!idle.isEmpty()) {
+                            worker[0] = idle.poll();
+                        }
+                        else if (workers.size() + starting < getMaxWorkers()) {
+                            // Reserve the slot for the new worker
+                            starting++;
+                            start[0] = true;
+                        }
+                    }
+                    return worker[0] != null || start[0];
+                }
+            }
+        });
+
+        if (worker[0] != null) {
+            return worker[0];
+        }
+
+        try {
+            Worker newWorker = new Worker();
+            synchronized (this) {
+                workers.add(newWorker);
+            }
+            return newWorker;
+        }
+        finally {
+            synchronized (this) {
+                starting--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Return a worker to the pool after it has completed a request.
+     */
+    public synchronized void release(Worker aWorker)
+    {
+        if (workers.contains(aWorker)) {
+            idle.add(aWorker);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Remove a worker from the pool, e.g. because it crashed, and terminate it.
+     */
+    public void discard(Worker aWorker)
+    {
+        synchronized (this) {
+            workers.remove(aWorker);
+            idle.remove(aWorker);
+            notifyAll();
+        }
+        aWorker.close();
+    }
+
+    public void shutdown()
+    {
+        List<Worker> all;
+        synchronized (this) {
+            all = new ArrayList<Worker>(workers);
+            workers.clear();
+            idle.clear();
+            if (watchdog != null) {
+                watchdog.shutdownNow();
+                watchdog = null;
+            }
+            notifyAll();
+        }
+        for (Worker worker : all) {
+            worker.close();
+        }
+    }
+
+    private synchronized ScheduledExecutorService getWatchdog()
+    {
+        if (watchdog == null) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable aRunnable)
+                {
+                    Thread thread = new Thread(aRunnable, "worker-watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return watchdog;
+    }
+
+    /**
+     * A worker JVM.
+     */
+    public class Worker
+    {
+        private final Process process;
+        private final ObjectOutputStream out;
+        private final ObjectInputStream in;
+
+        private Worker()
+            throws IOException
+        {
+            List<String> command = new ArrayList<String>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator
+                    + "java");
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            if (System.getProperty("DKPRO_HOME") != null) {
+                command.add("-DDKPRO_HOME=" + System.getProperty("DKPRO_HOME"));
+            }
+            command.addAll(getJvmArgs());
+            command.add(ForkedTaskWorker.class.getName());
+
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = builder.start();
+            log.info("Started worker JVM " + getJvmArgs());
+
+            try {
+                out = new ObjectOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                out.flush();
+                // Blocks until the worker has set up its side of the connection
+                in = new ObjectInputStream(new BufferedInputStream(process.getInputStream()));
+            }
+            catch (IOException e) {
+                process.destroy();
+                throw e;
+            }
+        }
+
+        /**
+         * Send a request to the worker and wait for the result. If the worker does not respond
+         * in time, it is terminated.
+         *
+         * @param aTimeout
+         *            the maximum time to wait for the result in milliseconds or 0 to wait
+         *            indefinitely.
+         * @throws InterruptedIOException
+         *             if the worker did not respond in time.
+         * @throws IOException
+         *             if the worker crashed.
+         */
+        public ForkedTaskWorker.Result execute(ForkedTaskWorker.Request aRequest, long aTimeout)
+            throws IOException
+        {
+            out.writeObject(aRequest);
+            out.flush();
+            out.reset();
+
+            final AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> timer = null;
+            if (aTimeout > 0) {
+                timer = getWatchdog().schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        timedOut.set(true);
+                        process.destroyForcibly();
+                    }
+                }, aTimeout, TimeUnit.MILLISECONDS);
+            }
+
+            try {
+                return (ForkedTaskWorker.Result) in.readObject();
+            }
+            catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            catch (IOException e) {
+                if (timedOut.get()) {
+                    InterruptedIOException ex = new InterruptedIOException("Worker did not "
+                            + "respond within " + aTimeout + " ms");
+                    ex.initCause(e);
+                    throw ex;
+                }
+                throw e;
+            }
+            finally {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+        }
+
+        private void close()
+        {
+            try {
+                // The worker exits when its input is closed
+                out.close();
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+            catch (IOException e) {
+                process.destroy();
+            }
+            catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -17,30 +17,58 @@
  */
 package org.dkpro.lab.engine.impl;
 
+import static java.util.Arrays.asList;
+import static org.dkpro.lab.engine.impl.ImportUtil.extractConstraints;
+import static org.dkpro.lab.storage.StorageService.CONTEXT_ID_SCHEME;
+import static org.dkpro.lab.storage.StorageService.LATEST_CONTEXT_SCHEME;
+
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.ProgressMeter;
+import org.dkpro.lab.Util;
+import org.dkpro.lab.conversion.ConversionService;
 import org.dkpro.lab.engine.ExecutionException;
 import org.dkpro.lab.engine.LifeCycleException;
 import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.engine.TaskContextFactory;
 import org.dkpro.lab.engine.TaskExecutionEngine;
 import org.dkpro.lab.engine.TaskExecutionService;
-import org.dkpro.lab.storage.UnresolvedImportException;
+import org.dkpro.lab.storage.TaskContextNotFoundException;
 import org.dkpro.lab.task.BatchTask;
+import org.dkpro.lab.task.Discriminator;
+import org.dkpro.lab.task.ReportingTask;
 import org.dkpro.lab.task.Task;
 import org.dkpro.lab.task.TaskContextMetadata;
+import org.dkpro.lab.task.impl.ParameterUtil;
+import org.dkpro.lab.task.impl.TaskBase;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.ReflectionUtils;
 
 public class MultiThreadBatchTaskEngine
     extends BatchTaskEngine
@@ -49,8 +77,57 @@ public class MultiThreadBatchTaskEngine
     
     public static final String PROP_THREADS = "engine.batch.maxThreads";
     
-    @Value("#{ @Properties['" + PROP_THREADS + "'] }")
-    private int maxThreads = Runtime.getRuntime().availableProcessors() - 1;
+    public static final String PROP_CONFIGURATIONS = "engine.batch.maxConfigurations";
+
+    public static final String PROP_VIRTUAL_THREADS = "engine.batch.virtualThreads";
+
+    public static final String PROP_MAX_VIRTUAL_THREADS = "engine.batch.maxVirtualThreads";
+
+    public static final String PROP_SPECULATIVE_EXECUTION = "engine.batch.speculativeExecution";
+
+    public static final String PROP_STRAGGLER_FACTOR = "engine.batch.stragglerFactor";
+
+    public static final String PROP_STRAGGLER_MIN_TIME = "engine.batch.stragglerMinTime";
+
+    @Value("#{ @Properties['" + PROP_THREADS + "'] ?: "
+            + "T(java.lang.Math).max(1, "
+            + "T(java.lang.Runtime).getRuntime().availableProcessors() - 1) }")
+    private int maxThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    @Value("#{ @Properties['" + PROP_CONFIGURATIONS + "'] ?: 1 }")
+    private int maxConfigurations = 1;
+
+    @Value("#{ @Properties['" + PROP_VIRTUAL_THREADS + "'] ?: false }")
+    private boolean virtualThreads = false;
+
+    @Value("#{ @Properties['" + PROP_MAX_VIRTUAL_THREADS + "'] ?: 1024 }")
+    private int maxVirtualThreads = 1024;
+
+    @Value("#{ @Properties['" + PROP_SPECULATIVE_EXECUTION + "'] ?: false }")
+    private boolean speculativeExecution = false;
+
+    @Value("#{ @Properties['" + PROP_STRAGGLER_FACTOR + "'] ?: 3.0 }")
+    private double stragglerFactor = 3.0;
+
+    @Value("#{ @Properties['" + PROP_STRAGGLER_MIN_TIME + "'] ?: 10000 }")
+    private long stragglerMinTime = 10000;
+
+    // Running times of the subtasks completed so far, across all configurations
+    private TaskDurations durations;
+
+    // Subtask executions in progress, so that a subtask is not executed for several
+    // configurations at the same time if it does not depend on the parameters in which the
+    // configurations differ
+    private final SingleFlight<String, TaskContextMetadata> inFlight = new SingleFlight<>();
+
+    /**
+     * Get the number of subtask executions a configuration got from a concurrent configuration
+     * running the same subtask instead of executing the subtask itself.
+     */
+    public long getSharedResults()
+    {
+        return inFlight.getSharedResults();
+    }
     
     /**
      * Explicit no-args constructor
@@ -76,14 +153,222 @@ public class MultiThreadBatchTaskEngine
         maxThreads = aNThreads;
     }
 
+    /**
+     * Set the number of parameter space configurations executed concurrently. Each concurrent
+     * configuration works on {@link TaskBase#clone() clones} of the subtasks. If a subtask
+     * cannot be cloned, e.g. because it is a batch task, the configurations are executed one
+     * after the other. Default: 1.
+     */
+    public void setMaxConfigurations(int aMaxConfigurations)
+    {
+        maxConfigurations = aMaxConfigurations;
+    }
+
+    /**
+     * Run each subtask on a {@link SharedTaskExecutor#getVirtualThreadExecutor() virtual thread}
+     * instead of a thread of the shared pool. This allows to run many subtasks which mostly wait
+     * for I/O at the same time. CPU-bound subtasks still only run as long as the
+     * {@link SharedTaskExecutor#getResourceBudget() resource budget} has cores left.
+     * Default: false.
+     * 
+     * @see #isCpuBound(Task)
+     */
+    public void setVirtualThreads(boolean aVirtualThreads)
+    {
+        virtualThreads = aVirtualThreads;
+    }
+
+    protected boolean isVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    /**
+     * Set the number of subtasks run concurrently on virtual threads. Default: 1024.
+     */
+    public void setMaxVirtualThreads(int aMaxVirtualThreads)
+    {
+        maxVirtualThreads = aMaxVirtualThreads;
+    }
+
+    /**
+     * Launch a second execution of a subtask which is a straggler, i.e. which runs considerably
+     * longer than the completed subtasks of the same type. The execution finishing first is
+     * used, the other one is interrupted and its context is removed. The other execution keeps
+     * its resources until it has stopped. Only subtasks which can be
+     * {@link TaskBase#clone() cloned} are executed speculatively. Default: false.
+     * 
+     * @see #setStragglerFactor(double)
+     */
+    public void setSpeculativeExecution(boolean aSpeculativeExecution)
+    {
+        speculativeExecution = aSpeculativeExecution;
+    }
+
+    /**
+     * Set how many times longer than the median running time of the completed subtasks of the
+     * same type a subtask must run to be considered a straggler. Stragglers are reported in the
+     * log and, if enabled, executed speculatively. A value of 0 or less disables the detection.
+     * Default: 3.
+     */
+    public void setStragglerFactor(double aStragglerFactor)
+    {
+        stragglerFactor = aStragglerFactor;
+    }
+
+    /**
+     * Set the time in milliseconds a subtask must at least run to be considered a straggler, so
+     * that short subtasks are not executed twice because of small fluctuations.
+     * Default: 10000.
+     */
+    public void setStragglerMinTime(long aStragglerMinTime)
+    {
+        stragglerMinTime = aStragglerMinTime;
+    }
+
+    protected synchronized TaskDurations getTaskDurations()
+    {
+        if (durations == null) {
+            durations = new TaskDurations(stragglerFactor, stragglerMinTime);
+        }
+        return durations;
+    }
+
+    /**
+     * Check if the given subtask needs processor cores when running on a virtual thread.
+     * Reporting tasks and batch tasks are considered as I/O-bound, all other tasks as
+     * CPU-bound. Override this method to run further tasks without cores.
+     */
+    protected boolean isCpuBound(Task aTask)
+    {
+        return !(aTask instanceof ReportingTask || aTask instanceof BatchTask);
+    }
+
+    /**
+     * Get the resources the given subtask needs while it is running. Batch tasks only wait for
+     * their own subtasks, so they need no resources unless they declare some. The same applies
+     * to the cores of I/O-bound subtasks when running on virtual threads.
+     * 
+     * @see TaskResources#of(Task)
+     */
+    protected TaskResources getResources(Task aTask)
+    {
+        if (aTask instanceof BatchTask && !TaskResources.isDeclared(aTask)) {
+            return TaskResources.NONE;
+        }
+
+        TaskResources resources = TaskResources.of(aTask);
+        if (isVirtualThreads() && !isCpuBound(aTask)) {
+            resources = new TaskResources(0, resources.getMemory());
+        }
+        return resources;
+    }
+
+    @Override
+    protected void executeConfigurations(final BatchTask aConfiguration,
+            final TaskContext aContext, final Set<String> aExecutedSubtasks)
+        throws ExecutionException, LifeCycleException
+    {
+        if (maxConfigurations <= 1) {
+            super.executeConfigurations(aConfiguration, aContext, aExecutedSubtasks);
+            return;
+        }
+
+        if (!isCloneable(aConfiguration.getTasks())) {
+            log.info("Not all subtasks can be cloned - executing configurations sequentially");
+            super.executeConfigurations(aConfiguration, aContext, aExecutedSubtasks);
+            return;
+        }
+
+        SharedTaskExecutor executor = getTaskExecutor();
+        int parallelism = executor.getParallelism(maxConfigurations);
+        CompletionService<Void> completion = new ExecutorCompletionService<>(executor.getPool());
+        Set<Future<Void>> running = new HashSet<>();
+
+        ProgressMeter progress = new ProgressMeter(estimateSize(aConfiguration));
+        Iterator<Map<String, Object>> configs = aConfiguration.getParameterSpace().iterator();
+        try {
+            while (configs.hasNext() || !running.isEmpty()) {
+                // The parameter space is only iterated here since the dimensions are stateful
+                while (configs.hasNext() && running.size() < parallelism) {
+                    final Map<String, Object> config = configs.next();
+                    prepareConfiguration(aConfiguration, aContext, config);
+
+                    final List<Task> tasks = new ArrayList<>();
+                    for (Task task : aConfiguration.getTasks()) {
+                        tasks.add(((TaskBase) task).clone());
+                    }
+
+                    running.add(completion.submit(new Callable<Void>()
+                    {
+                        @Override
+                        public Void call()
+                            throws Exception
+                        {
+                            executeTasks(aConfiguration, aContext, config, aExecutedSubtasks,
+                                    tasks, true);
+                            return null;
+                        }
+                    }));
+                }
+
+                Future<Void> future = SharedTaskExecutor.take(completion);
+                running.remove(future);
+                try {
+                    future.get();
+                }
+                catch (java.util.concurrent.ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ExecutionException) {
+                        throw (ExecutionException) cause;
+                    }
+                    if (cause instanceof LifeCycleException) {
+                        throw (LifeCycleException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new ExecutionException(cause);
+                }
+
+                progress.next();
+                log.info("Completed configuration " + progress);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
+        finally {
+            for (Future<Void> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
     @Override
     protected void executeConfiguration(BatchTask aConfiguration, TaskContext aContext,
             Map<String, Object> aConfig, Set<String> aExecutedSubtasks)
         throws ExecutionException, LifeCycleException
+    {
+        executeTasks(aConfiguration, aContext, aConfig, aExecutedSubtasks,
+                aConfiguration.getTasks(), false);
+    }
+
+    /**
+     * Execute the given subtasks for one configuration.
+     * 
+     * @param aConcurrent
+     *            whether other configurations are executed at the same time.
+     */
+    private void executeTasks(BatchTask aConfiguration, TaskContext aContext,
+            Map<String, Object> aConfig, final Set<String> aExecutedSubtasks,
+            Collection<Task> aTasks, boolean aConcurrent)
+        throws ExecutionException, LifeCycleException
     {
         if (log.isTraceEnabled()) {
             // Show all subtasks executed so far
-            for (String est : aExecutedSubtasks) {
+            for (String est : snapshot(aExecutedSubtasks)) {
                 log.trace("-- Already executed: " + est);
             }
         }
@@ -100,133 +385,253 @@ public class MultiThreadBatchTaskEngine
         }
 
         // Configure subtasks
-        for (Task task : aConfiguration.getTasks()) {
+        for (Task task : aTasks) {
             // Now the setup is complete
             aContext.getLifeCycleManager().configure(aContext, task, aConfig);
         }
 
-        Queue<Task> queue = new LinkedList<>(aConfiguration.getTasks());
-        // keeps track of the execution threads; 
-        // TODO MW: do we really need this or can we work with the futures list only?
-        Map<Task, ExecutionThread> threads = new HashMap<>();              
-        // keeps track of submitted Futures and their associated tasks
-        Map<Future<?>, Task> futures = new HashMap<Future<?>, Task>();     
-        // will be instantiated with all exceptions from current loop
-        ConcurrentMap<Task, Throwable> exceptionsFromLastLoop = null;      
-        ConcurrentMap<Task, Throwable> exceptionsFromCurrentLoop = new ConcurrentHashMap<>();
-
-        int outerLoopCounter = 0;
-
-        // main loop
-        do {
-            outerLoopCounter++;
-
-            threads.clear();
-            futures.clear();
-            ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
-
-            // set the exceptions from the last loop
-            exceptionsFromLastLoop = new ConcurrentHashMap<>(exceptionsFromCurrentLoop);
-
-            // Fix MW: Clear exceptionsFromCurrentLoop; otherwise the loop with run at most twice.
-            exceptionsFromCurrentLoop.clear();
-            
-            // process all tasks from the queue
-            while (!queue.isEmpty()) {
-                Task task = queue.poll();
-
-                TaskContextMetadata execution = getExistingExecution(aConfiguration, aContext,
-                        task, aConfig, aExecutedSubtasks);
-
-                // Check if a subtask execution compatible with the present configuration has
-                // does already exist ...
-                if (execution == null) {
-                    // ... otherwise execute it with the present configuration
-                    log.info("Executing task [" + task.getType() + "]");
-
-                    // set scope here so that the inherited scopes are considered
-                    if (task instanceof BatchTask) {
-                        ((BatchTask) task).setScope(scope);
+        SharedTaskExecutor executor = getTaskExecutor();
+        int parallelism;
+        Executor threads;
+        if (isVirtualThreads()) {
+            parallelism = Math.max(1, maxVirtualThreads);
+            threads = executor.getVirtualThreadExecutor();
+        }
+        else {
+            parallelism = executor.getParallelism(maxThreads);
+            threads = executor.getPool();
+        }
+        CompletionService<TaskContextMetadata> completion = new ExecutorCompletionService<>(
+                threads);
+        ResourceBudget budget = executor.getResourceBudget();
+
+        LinkedList<Task> queue = new LinkedList<>(aTasks);
+        // keeps track of submitted Futures and their associated tasks. A task which is executed
+        // speculatively is associated with two Futures.
+        Map<Future<TaskContextMetadata>, Task> running = new HashMap<>();
+        Map<Task, SubtaskExecution> executions = new IdentityHashMap<>();
+        Map<Future<TaskContextMetadata>, SubtaskExecution> callables = new HashMap<>();
+        // executions which have been aborted because the other execution of the same task
+        // finished first. They keep their slot and resources until they have actually stopped.
+        Set<Future<TaskContextMetadata>> aborted = new HashSet<>();
+        // resources acquired by the running executions
+        Map<Future<TaskContextMetadata>, TaskResources> acquired = new HashMap<>();
+        // tasks which failed, e.g. because their imports could not be resolved yet. They are
+        // tried again when another task has completed.
+        Map<Task, Throwable> failed = new LinkedHashMap<>();
+        // number of completed tasks when a task was started
+        Map<Task, Integer> startedAt = new IdentityHashMap<>();
+        int completed = 0;
+        // time when a task was started and the tasks which have been detected as stragglers
+        Map<Task, Long> startTimes = new IdentityHashMap<>();
+        Set<Task> stragglers = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+        TaskDurations taskDurations = getTaskDurations();
+        long checkInterval = Math.max(10, Math.min(1000, stragglerMinTime / 2));
+
+        int executionCount = 0;
+        try {
+            while (!queue.isEmpty() || !running.isEmpty()) {
+                // Start tasks until the parallelism limit is reached. Tasks which do not fit
+                // into the remaining resource budget are postponed in favor of smaller ones.
+                List<Task> postponed = new ArrayList<>();
+                while (!queue.isEmpty() && running.size() < parallelism) {
+                    Task task = queue.poll();
+
+                    // Check if a subtask execution compatible with the present configuration
+                    // has does already exist ...
+                    TaskContextMetadata execution = getExistingExecution(aConfiguration,
+                            aContext, task, aConfig, aExecutedSubtasks);
+                    if (execution == null) {
+                        // ... otherwise execute it with the present configuration
+                        TaskResources resources = getResources(task);
+                        if (!budget.tryAcquire(resources)) {
+                            if (!running.isEmpty()) {
+                                postponed.add(task);
+                                continue;
+                            }
+                            // Only tasks of other batch tasks are using the budget now
+                            log.debug("Waiting for resources " + resources + " of task ["
+                                    + task.getType() + "] - budget: " + budget);
+                            budget.acquire(resources);
+                        }
+
+                        log.info("Executing task [" + task.getType() + "]");
+
+                        // set scope here so that the inherited scopes are considered
+                        if (task instanceof BatchTask) {
+                            ((BatchTask) task).setScope(new HashSet<>(scope));
+                        }
+
+                        ExecutionThread thread = new ExecutionThread(aContext, task, aConfig,
+                                snapshot(aExecutedSubtasks));
+                        SubtaskExecution subtaskExecution = new SubtaskExecution(aConfiguration,
+                                aContext, task, aConfig, aExecutedSubtasks, thread, aConcurrent);
+                        Future<TaskContextMetadata> future = completion.submit(subtaskExecution);
+                        running.put(future, task);
+                        executions.put(task, subtaskExecution);
+                        callables.put(future, subtaskExecution);
+                        acquired.put(future, resources);
+                        startedAt.put(task, completed);
+                        startTimes.put(task, System.currentTimeMillis());
+                        executionCount++;
                     }
+                    else {
+                        log.debug("Using existing execution [" + execution.getId() + "]");
 
-                    ExecutionThread thread = new ExecutionThread(aContext, task, aConfig,
-                            aExecutedSubtasks);
-                    threads.put(task, thread);
-
-                    futures.put(executor.submit(thread), task);
+                        // Record new/existing execution
+                        aExecutedSubtasks.add(execution.getId());
+                        scope.add(execution.getId());
+                    }
                 }
-                else {
-                    log.debug("Using existing execution [" + execution.getId() + "]");
+                queue.addAll(0, postponed);
 
-                    // Record new/existing execution
-                    aExecutedSubtasks.add(execution.getId());
-                    scope.add(execution.getId());
+                if (running.isEmpty()) {
+                    break;
                 }
-            }
 
-            // try and get results from all futures to check for failed executions
-            for(Map.Entry<Future<?>, Task> entry : futures.entrySet()){
-                try {
-                    entry.getKey().get();
-                }
-                catch(java.util.concurrent.ExecutionException ex) {
-                    Task task = entry.getValue();
-                    // TODO MW: add a retry-counter here to prevent endless loops?
-                    log.info("Task exec failed for [" + task.getType() + "]");
-                    // record the failed task, so that it can be re-added to the queue
-                    exceptionsFromCurrentLoop.put(task, ex);
+                // A finished task immediately frees its slot and resources for the next one.
+                // While waiting, the running tasks are checked for stragglers.
+                Future<TaskContextMetadata> future;
+                if (stragglerFactor > 0) {
+                    future = SharedTaskExecutor.poll(completion, checkInterval,
+                            TimeUnit.MILLISECONDS);
+                    if (future == null) {
+                        long now = System.currentTimeMillis();
+                        Set<Task> tasks = Collections.newSetFromMap(
+                                new IdentityHashMap<Task, Boolean>());
+                        for (Entry<Future<TaskContextMetadata>, Task> e : running.entrySet()) {
+                            if (!aborted.contains(e.getKey())) {
+                                tasks.add(e.getValue());
+                            }
+                        }
+                        for (Task task : tasks) {
+                            if (!stragglers.contains(task)) {
+                                long runningTime = now - startTimes.get(task);
+                                if (!taskDurations.isStraggler(task.getType(), runningTime)) {
+                                    continue;
+                                }
+
+                                log.warn("Task [" + task.getType() + "] is a straggler - "
+                                        + "running for " + runningTime + "ms, median of "
+                                        + "completed executions is "
+                                        + taskDurations.getMedian(task.getType()) + "ms");
+                                stragglers.add(task);
+                            }
+
+                            if (!speculativeExecution || !isCloneable(asList(task))
+                                    || Collections.frequency(running.values(), task) > 1) {
+                                continue;
+                            }
+
+                            // The speculative execution may not exceed the resource budget. If
+                            // there are not enough resources left, try again later.
+                            TaskResources resources = getResources(task);
+                            if (!budget.tryAcquire(resources)) {
+                                continue;
+                            }
+
+                            log.info("Executing task [" + task.getType() + "] speculatively");
+                            Task copy = ((TaskBase) task).clone();
+                            ExecutionThread thread = new ExecutionThread(aContext, copy, aConfig,
+                                    snapshot(aExecutedSubtasks));
+                            SubtaskExecution subtaskExecution = new SubtaskExecution(
+                                    executions.get(task), copy, thread);
+                            Future<TaskContextMetadata> speculative = completion.submit(
+                                    subtaskExecution);
+                            running.put(speculative, task);
+                            callables.put(speculative, subtaskExecution);
+                            acquired.put(speculative, resources);
+                            executionCount++;
+                        }
+                        continue;
+                    }
                 }
-                catch(InterruptedException ex){
-                    // thread interrupted, exit
-                    throw new RuntimeException(ex);
+                else {
+                    future = SharedTaskExecutor.take(completion);
                 }
-            }
 
-            log.debug("Calling shutdown");
-            executor.shutdown();
-            log.debug("All threads finished");
-
-            // collect the results
-            for (Map.Entry<Task, ExecutionThread> entry : threads.entrySet()) {
-                Task task = entry.getKey();
-                ExecutionThread thread = entry.getValue();
-                TaskContextMetadata execution = thread.getTaskContextMetadata();
-
-                // probably failed
-                if (execution == null) {
-                    Throwable exception = exceptionsFromCurrentLoop.get(task);
-                    if (!(exception instanceof UnresolvedImportException)
-                            && !(exception instanceof java.util.concurrent.ExecutionException)) {
-                        throw new RuntimeException(exception);
+                Task task = running.remove(future);
+                callables.remove(future);
+                budget.release(acquired.remove(future));
+                if (aborted.remove(future)) {
+                    // Execution which has been aborted because the other execution of the same
+                    // task finished first
+                    continue;
+                }
+                List<Future<TaskContextMetadata>> others = new ArrayList<>();
+                for (Entry<Future<TaskContextMetadata>, Task> e : running.entrySet()) {
+                    if (e.getValue() == task && !aborted.contains(e.getKey())) {
+                        others.add(e.getKey());
                     }
-                    exceptionsFromCurrentLoop.put(task, exception);
-
-                    // re-add to the queue
-                    queue.add(task);
                 }
-                else {
+                try {
+                    TaskContextMetadata execution = future.get();
+
+                    // The first execution of a task to finish is used. The other one removes
+                    // its context when it is aborted or finishes.
+                    for (Future<TaskContextMetadata> other : others) {
+                        callables.get(other).abort();
+                        aborted.add(other);
+                    }
+                    taskDurations.record(task.getType(),
+                            System.currentTimeMillis() - startTimes.remove(task));
+                    stragglers.remove(task);
+                    executions.remove(task);
 
                     // Record new/existing execution
                     aExecutedSubtasks.add(execution.getId());
                     scope.add(execution.getId());
+                    completed++;
+
+                    // The failed tasks may be able to resolve their imports now
+                    queue.addAll(failed.keySet());
+                    failed.clear();
                 }
-            }
+                catch (java.util.concurrent.ExecutionException ex) {
+                    if (!others.isEmpty()) {
+                        log.info("Task exec failed for [" + task.getType()
+                                + "] - waiting for its other execution");
+                        continue;
+                    }
 
+                    log.info("Task exec failed for [" + task.getType() + "]");
+                    startTimes.remove(task);
+                    stragglers.remove(task);
+                    executions.remove(task);
+                    if (completed > startedAt.get(task)) {
+                        // other tasks have completed in the meantime - try again right away
+                        queue.add(task);
+                    }
+                    else {
+                        // record the failed task, so that it can be re-added to the queue
+                        failed.put(task, ex.getCause());
+                    }
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            // thread interrupted, exit
+            for (Future<TaskContextMetadata> future : running.keySet()) {
+                future.cancel(true);
+            }
+            throw new RuntimeException(ex);
+        }
+        finally {
+            for (TaskResources resources : acquired.values()) {
+                budget.release(resources);
+            }
         }
-        // finish if the same tasks failed again
-        while (!exceptionsFromCurrentLoop.keySet().equals(exceptionsFromLastLoop.keySet())); 
-        // END OF DO; finish if the same tasks failed again
 
-        if (!exceptionsFromCurrentLoop.isEmpty()) {
+        if (!failed.isEmpty()) {
             // collect all details
             StringBuilder details = new StringBuilder();
-            for (Throwable throwable : exceptionsFromCurrentLoop.values()) {
+            for (Throwable throwable : failed.values()) {
                 details.append("\n -");
                 details.append(throwable.getMessage());
             }
 
             // we re-throw the first exception
-            Throwable next = exceptionsFromCurrentLoop.values().iterator().next();
+            Throwable next = failed.values().iterator().next();
             if (next instanceof RuntimeException) {
                 throw (RuntimeException) next;
             }
@@ -234,8 +639,288 @@ public class MultiThreadBatchTaskEngine
             // otherwise wrap it
             throw new RuntimeException(details.toString(), next);
         }
-        log.info("MultiThreadBatchTask completed successfully. Total number of outer loop runs: "
-                + outerLoopCounter);
+        log.info("MultiThreadBatchTask completed successfully. Total number of executions: "
+                + executionCount);
+    }
+
+    private static boolean isCloneable(Collection<Task> aTasks)
+    {
+        for (Task task : aTasks) {
+            if (!(task instanceof TaskBase) || task instanceof BatchTask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a subtask. If configurations are executed concurrently, several of them may require
+     * the same subtask execution. Then only one of them executes the subtask and the others
+     * wait for it and reuse the execution instead of running the subtask again.
+     */
+    private class SubtaskExecution
+        implements Callable<TaskContextMetadata>
+    {
+        private final BatchTask configuration;
+        private final TaskContext context;
+        private final Task task;
+        private final Map<String, Object> config;
+        private final Set<String> executedSubtasks;
+        private final ExecutionThread thread;
+        private final boolean exclusive;
+        // Shared with the speculative execution of the same subtask, so that only the execution
+        // finishing first is used
+        private final AtomicReference<TaskContextMetadata> winner;
+        // Thread running this execution, if any
+        private Thread runner;
+        private boolean aborted;
+
+        public SubtaskExecution(BatchTask aConfiguration, TaskContext aContext, Task aTask,
+                Map<String, Object> aConfig, Set<String> aExecutedSubtasks,
+                ExecutionThread aThread, boolean aExclusive)
+        {
+            configuration = aConfiguration;
+            context = aContext;
+            task = aTask;
+            config = aConfig;
+            executedSubtasks = aExecutedSubtasks;
+            thread = aThread;
+            exclusive = aExclusive;
+            winner = new AtomicReference<>();
+        }
+
+        /**
+         * Speculative execution of the subtask run by the given execution.
+         * 
+         * @param aTask
+         *            a clone of the subtask.
+         */
+        public SubtaskExecution(SubtaskExecution aExecution, Task aTask, ExecutionThread aThread)
+        {
+            configuration = aExecution.configuration;
+            context = aExecution.context;
+            task = aTask;
+            config = aExecution.config;
+            executedSubtasks = aExecution.executedSubtasks;
+            thread = aThread;
+            exclusive = false;
+            winner = aExecution.winner;
+        }
+
+        /**
+         * Interrupt the execution because the other execution of the subtask has finished
+         * first. Unlike cancelling its {@link Future}, this does not mark the execution as done
+         * before it has actually stopped.
+         */
+        public synchronized void abort()
+        {
+            aborted = true;
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+
+        @Override
+        public TaskContextMetadata call()
+            throws Exception
+        {
+            synchronized (this) {
+                if (aborted) {
+                    throw new CancellationException("Another execution of task ["
+                            + task.getType() + "] finished first");
+                }
+                runner = Thread.currentThread();
+            }
+
+            try {
+                TaskContextMetadata execution = execute();
+                TaskContextMetadata own = thread.getTaskContextMetadata();
+                if (!isWinner(execution)) {
+                    // The other execution of the subtask has finished first
+                    if (own != null) {
+                        discard(own);
+                    }
+                    throw new CancellationException("Another execution of task ["
+                            + task.getType() + "] finished first");
+                }
+                if (own != null && own != execution) {
+                    // Lost while running for concurrent configurations, which use the other
+                    // execution instead
+                    discard(own);
+                }
+                return execution;
+            }
+            finally {
+                synchronized (this) {
+                    runner = null;
+                    if (aborted) {
+                        // Do not leak the interrupt to the next task run by the thread
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Check if the given result is the one of the execution of the subtask which finished
+         * first, making it the winner if no execution has finished yet.
+         */
+        private boolean isWinner(TaskContextMetadata aExecution)
+        {
+            return winner.compareAndSet(null, aExecution) || winner.get() == aExecution;
+        }
+
+        private TaskContextMetadata execute()
+            throws Exception
+        {
+            String key = exclusive ? getExecutionKey() : null;
+            if (key == null) {
+                thread.run();
+                return thread.getTaskContextMetadata();
+            }
+
+            // If another configuration is running the same subtask with the same parameters
+            // and imports, wait for it and use its execution
+            TaskContextMetadata execution = inFlight.execute(key,
+                    new Callable<TaskContextMetadata>()
+                    {
+                        @Override
+                        public TaskContextMetadata call()
+                        {
+                            // The leader of an earlier flight may have completed in the meantime
+                            TaskContextMetadata existing = getExistingExecution(configuration,
+                                    context, task, config, executedSubtasks);
+                            if (existing != null) {
+                                return existing;
+                            }
+
+                            try {
+                                thread.run();
+                            }
+                            catch (RuntimeException e) {
+                                // Aborted because the speculative execution finished first
+                                if (winner.get() != null) {
+                                    return winner.get();
+                                }
+                                throw e;
+                            }
+
+                            // If the speculative execution has finished first, the concurrent
+                            // configurations use it, so imports resolve to the same execution
+                            TaskContextMetadata result = thread.getTaskContextMetadata();
+                            if (!isWinner(result)) {
+                                return winner.get();
+                            }
+
+                            // Make the execution visible before the flight ends
+                            executedSubtasks.add(result.getId());
+                            return result;
+                        }
+                    });
+            if (thread.getTaskContextMetadata() == null) {
+                log.debug("Using execution [" + execution.getId()
+                        + "] of concurrent configuration");
+            }
+            return execution;
+        }
+
+        /**
+         * Remove the context of an execution which is not used because the other execution of
+         * the subtask finished first.
+         */
+        private void discard(TaskContextMetadata aExecution)
+            throws LifeCycleException
+        {
+            TaskContextFactory factory = context.getExecutionService().getContextFactory();
+            TaskContext ctx = factory.getContext(aExecution.getId());
+            if (ctx == null) {
+                return;
+            }
+
+            try {
+                ctx.getLifeCycleManager().fail(ctx, task, new ExecutionException(
+                        "Another execution of task [" + task.getType() + "] finished first"));
+            }
+            finally {
+                factory.destroyContext(ctx);
+            }
+        }
+
+        /**
+         * Identify the execution by the task type, the discriminator values and the contexts
+         * the imports resolve to.
+         *
+         * @return {@code null} if an import cannot be resolved yet.
+         */
+        private String getExecutionKey()
+        {
+            Set<String> scope = snapshot(executedSubtasks);
+            if (configuration.getScope() != null) {
+                scope.addAll(configuration.getScope());
+            }
+
+            Map<String, String> imports = new TreeMap<>();
+            for (Entry<String, String> e : task.getImports().entrySet()) {
+                URI uri = URI.create(e.getValue());
+                String id;
+                if (LATEST_CONTEXT_SCHEME.equals(uri.getScheme())) {
+                    try {
+                        id = getLatestExecution(context, uri.getAuthority(),
+                                extractConstraints(uri), config).getId();
+                    }
+                    catch (TaskContextNotFoundException ex) {
+                        return null;
+                    }
+                }
+                else if (CONTEXT_ID_SCHEME.equals(uri.getScheme())) {
+                    id = uri.getAuthority();
+                }
+                else {
+                    return null;
+                }
+
+                if (!scope.contains(id)) {
+                    return null;
+                }
+                imports.put(e.getKey(), id);
+            }
+
+            return task.getType() + getDiscriminatorValues(task, context.getConversionService())
+                    + imports;
+        }
+    }
+
+    /**
+     * Get the discriminators of the given task as they are persisted, i.e. the discriminators
+     * set on the task and the current values of all fields annotated with {@link Discriminator}
+     * converted by the conversion service. Unlike {@link TaskBase#analyze()}, this does not
+     * require the task to be initialized.
+     */
+    private static Map<String, String> getDiscriminatorValues(Task aTask,
+            ConversionService aConversionService)
+    {
+        Map<String, String> values = new TreeMap<>(aTask.getDescriminators());
+        for (Class<?> c = aTask.getClass(); c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                Discriminator annotation = field.getAnnotation(Discriminator.class);
+                if (annotation == null) {
+                    continue;
+                }
+
+                String name = ParameterUtil.getName(annotation);
+                if (StringUtils.isBlank(name)) {
+                    name = field.getName();
+                }
+
+                ReflectionUtils.makeAccessible(field);
+                Object value = ReflectionUtils.getField(field, aTask);
+                values.put(aTask.getClass().getName() + "|" + name,
+                        aConversionService.isRegistered(value)
+                                ? aConversionService.getDiscriminableValue(value)
+                                : Util.toString(value));
+            }
+        }
+        return values;
     }
 
     /**
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Processor cores and heap memory available to the tasks running on a machine. Tasks acquire
+ * their {@link TaskResources resources} from the budget before they are started and release
+ * them when they are done.
+ * <p>
+ * A task needing more than the whole budget is treated as if it needed the whole budget, so it
+ * can still run, but only alone.
+ */
+public class ResourceBudget
+{
+    private final int cores;
+    private final long memory;
+
+    private int usedCores;
+    private long usedMemory;
+
+    /**
+     * @param aCores
+     *            the number of processor cores.
+     * @param aMemory
+     *            the heap memory in megabytes.
+     */
+    public ResourceBudget(int aCores, long aMemory)
+    {
+        cores = Math.max(1, aCores);
+        memory = Math.max(0, aMemory);
+    }
+
+    public int getCores()
+    {
+        return cores;
+    }
+
+    public long getMemory()
+    {
+        return memory;
+    }
+
+    public synchronized int getAvailableCores()
+    {
+        return cores - usedCores;
+    }
+
+    public synchronized long getAvailableMemory()
+    {
+        return memory - usedMemory;
+    }
+
+    /**
+     * Acquire the given resources if they are available.
+     *
+     * @return whether the resources have been acquired.
+     */
+    public synchronized boolean tryAcquire(TaskResources aResources)
+    {
+        int c = Math.min(aResources.getCores(), cores);
+        long m = Math.min(aResources.getMemory(), memory);
+        if (usedCores + c > cores || usedMemory + m > memory) {
+            return false;
+        }
+
+        usedCores += c;
+        usedMemory += m;
+        return true;
+    }
+
+    /**
+     * Acquire the given resources, waiting until they are available. If the calling thread
+     * belongs to a fork/join pool, the pool may start another thread while the caller is
+     * blocked.
+     */
+    public void acquire(final TaskResources aResources)
+        throws InterruptedException
+    {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+        {
+            private boolean acquired;
+
+            @Override
+            public boolean block()
+                throws InterruptedException
+            {
+                synchronized (ResourceBudget.this) {
+                    while (!isReleasable()) {
+                        ResourceBudget.this.wait();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable()
+            {
+                if (!acquired) {
+                    acquired = tryAcquire(aResources);
+                }
+                return acquired;
+            }
+        });
+    }
+
+    /**
+     * Release resources previously acquired.
+     */
+    public synchronized void release(TaskResources aResources)
+    {
+        usedCores -= Math.min(aResources.getCores(), cores);
+        usedMemory -= Math.min(aResources.getMemory(), memory);
+        notifyAll();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "[cores=" + usedCores + "/" + cores + ", memory=" + usedMemory + "/" + memory
+                + "MB]";
+    }
+}
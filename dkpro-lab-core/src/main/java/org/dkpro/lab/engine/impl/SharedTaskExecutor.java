@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Work-stealing thread pool shared by all batch task engines of a {@code Lab} instance. Nested
+ * batch tasks run their subtasks in the same pool as the outer batch task instead of creating
+ * a pool of their own, so the number of busy threads stays close to the
+ * {@link #setParallelism(int) parallelism} of the pool.
+ * <p>
+ * A batch task running in one of the pool threads is nested in another batch task. The number
+ * of subtasks such a batch task may run concurrently can be limited using
+ * {@link #setMaxNestedParallelism(int)}.
+ * <p>
+ * For subtasks which mostly wait for I/O, the executor additionally provides an
+ * {@link #getVirtualThreadExecutor() executor starting a thread per subtask}.
+ * <p>
+ * Subtasks acquire the {@link TaskResources resources} they need from the
+ * {@link #getResourceBudget() resource budget} of the machine before they are started. The
+ * budget provides as many cores as the {@link #setParallelism(int) parallelism} of the pool and
+ * the {@link #setMaxMemory(long) configured heap memory}.
+ */
+public class SharedTaskExecutor
+{
+    private final Log log = LogFactory.getLog(getClass());
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxNestedParallelism = Integer.MAX_VALUE;
+    private long maxMemory = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+
+    private ForkJoinPool pool;
+    private ExecutorService virtualThreadExecutor;
+    private ResourceBudget resourceBudget;
+
+    /**
+     * Set the number of threads of the pool. This has no effect once the pool has been created.
+     * Default: the number of available processors.
+     */
+    public void setParallelism(int aParallelism)
+    {
+        parallelism = aParallelism;
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Set the maximum number of subtasks a nested batch task may run concurrently. Set to 1 to
+     * run nested batch tasks sequentially. Default: unlimited.
+     */
+    public void setMaxNestedParallelism(int aMaxNestedParallelism)
+    {
+        maxNestedParallelism = aMaxNestedParallelism;
+    }
+
+    public int getMaxNestedParallelism()
+    {
+        return maxNestedParallelism;
+    }
+
+    /**
+     * Set the heap memory in megabytes available to subtasks. This has no effect once the
+     * resource budget has been created. Default: the maximum heap size of the JVM.
+     */
+    public void setMaxMemory(long aMaxMemory)
+    {
+        maxMemory = aMaxMemory;
+    }
+
+    public long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    /**
+     * Get the pool. Its threads use the context class loader of the thread creating the pool,
+     * so tasks can load resources and classes the same way as when they run in the caller.
+     */
+    public synchronized ForkJoinPool getPool()
+    {
+        if (pool == null) {
+            final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            pool = new ForkJoinPool(Math.max(1, parallelism),
+                    new ForkJoinPool.ForkJoinWorkerThreadFactory()
+                    {
+                        @Override
+                        public ForkJoinWorkerThread newThread(ForkJoinPool aPool)
+                        {
+                            ForkJoinWorkerThread thread = ForkJoinPool
+                                    .defaultForkJoinWorkerThreadFactory.newThread(aPool);
+                            thread.setContextClassLoader(classLoader);
+                            return thread;
+                        }
+                    }, null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Get an executor which runs each task on a new virtual thread. Virtual threads are only
+     * available on Java 21 and later. On older platforms, an executor running each task on a
+     * new or idle daemon thread is returned instead.
+     */
+    public synchronized ExecutorService getVirtualThreadExecutor()
+    {
+        if (virtualThreadExecutor == null) {
+            try {
+                virtualThreadExecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                log.info("Virtual threads are not supported by this Java version - using a "
+                        + "cached thread pool instead");
+                virtualThreadExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+                {
+                    private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+                    @Override
+                    public Thread newThread(Runnable aRunnable)
+                    {
+                        Thread thread = delegate.newThread(aRunnable);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+        return virtualThreadExecutor;
+    }
+
+    public synchronized ResourceBudget getResourceBudget()
+    {
+        if (resourceBudget == null) {
+            resourceBudget = new ResourceBudget(parallelism, maxMemory);
+        }
+        return resourceBudget;
+    }
+
+    /**
+     * Check if the calling thread belongs to the pool, i.e. if a batch task calling this
+     * method is nested in another batch task.
+     */
+    public boolean isNested()
+    {
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            return pool != null && thread instanceof ForkJoinWorkerThread
+                    && ((ForkJoinWorkerThread) thread).getPool() == pool;
+        }
+    }
+
+    /**
+     * Get the number of subtasks a batch task may run concurrently.
+     *
+     * @param aMaxThreads the limit configured for the batch task engine.
+     */
+    public int getParallelism(int aMaxThreads)
+    {
+        int limit = Math.max(1, aMaxThreads);
+        return isNested() ? Math.min(limit, Math.max(1, maxNestedParallelism)) : limit;
+    }
+
+    /**
+     * Wait for the next completed task. If the calling thread belongs to the pool, the pool may
+     * start an additional thread while the caller is blocked, so tasks of nested batch tasks
+     * cannot starve.
+     */
+    public static <T> Future<T> take(final CompletionService<T> aCompletion)
+        throws InterruptedException
+    {
+        final Future<?>[] result = new Future<?>[1];
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+        {
+            @Override
+            public boolean block()
+                throws InterruptedException
+            {
+                if (result[0] == null) {
+                    result[0] = aCompletion.take();
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable()
+            {
+                if (result[0] == null) {
+                    result[0] = aCompletion.poll();
+                }
+                return result[0] != null;
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        Future<T> future = (Future<T>) result[0];
+        return future;
+    }
+
+    /**
+     * Wait for the next completed task, but no longer than the given time.
+     *
+     * @return the completed task or {@code null} if no task completed in time.
+     * @see #take(CompletionService)
+     */
+    public static <T> Future<T> poll(final CompletionService<T> aCompletion,
+            final long aTimeout, final TimeUnit aUnit)
+        throws InterruptedException
+    {
+        final Future<?>[] result = new Future<?>[1];
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+        {
+            private boolean waited;
+
+            @Override
+            public boolean block()
+                throws InterruptedException
+            {
+                if (result[0] == null) {
+                    result[0] = aCompletion.poll(aTimeout, aUnit);
+                }
+                waited = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable()
+            {
+                if (result[0] == null) {
+                    result[0] = aCompletion.poll();
+                }
+                return result[0] != null || waited;
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        Future<T> future = (Future<T>) result[0];
+        return future;
+    }
+
+    public synchronized void shutdown()
+    {
+        if (pool != null) {
+            shutdown(pool);
+            pool = null;
+        }
+        if (virtualThreadExecutor != null) {
+            shutdown(virtualThreadExecutor);
+            virtualThreadExecutor = null;
+        }
+    }
+
+    private static void shutdown(ExecutorService aExecutor)
+    {
+        aExecutor.shutdown();
+        try {
+            aExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
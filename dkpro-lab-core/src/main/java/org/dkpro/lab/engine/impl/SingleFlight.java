@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of computations in progress. If a computation is requested while another one with
+ * the same key is in progress, the requester waits for the result of the computation in
+ * progress instead of starting its own.
+ * <p>
+ * Only successful results are shared. If the computation in progress fails, each waiting
+ * requester retries, so one of them becomes the new leader.
+ *
+ * @param <K> the key type.
+ * @param <V> the result type.
+ */
+public class SingleFlight<K, V>
+{
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight =
+            new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong sharedResults = new AtomicLong();
+
+    /**
+     * Run the given computation unless a computation with the same key is in progress, in which
+     * case its result is returned.
+     */
+    public V execute(K aKey, Callable<V> aComputation)
+        throws Exception
+    {
+        while (true) {
+            CompletableFuture<V> future = new CompletableFuture<V>();
+            CompletableFuture<V> leader = inFlight.putIfAbsent(aKey, future);
+            if (leader == null) {
+                executions.incrementAndGet();
+                try {
+                    V result = aComputation.call();
+                    future.complete(result);
+                    return result;
+                }
+                catch (Exception | Error e) {
+                    future.completeExceptionally(e);
+                    throw e;
+                }
+                finally {
+                    inFlight.remove(aKey, future);
+                }
+            }
+
+            V result = await(leader);
+            if (result != null) {
+                sharedResults.incrementAndGet();
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Check if a computation with the given key is in progress.
+     */
+    public boolean isInFlight(K aKey)
+    {
+        return inFlight.containsKey(aKey);
+    }
+
+    /**
+     * Get the number of computations which have been run.
+     */
+    public long getExecutions()
+    {
+        return executions.get();
+    }
+
+    /**
+     * Get the number of requests which got the result of a computation run for another request.
+     */
+    public long getSharedResults()
+    {
+        return sharedResults.get();
+    }
+
+    /**
+     * Wait for the given computation. If the calling thread belongs to a fork/join pool, the pool
+     * may start another thread while the caller is blocked.
+     *
+     * @return the result or {@code null} if the computation failed.
+     */
+    private V await(final CompletableFuture<V> aFuture)
+        throws InterruptedException
+    {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+        {
+            @Override
+            public boolean block()
+            {
+                aFuture.handle((result, error) -> null).join();
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable()
+            {
+                return aFuture.isDone();
+            }
+        });
+        return aFuture.isCompletedExceptionally() ? null : aFuture.join();
+    }
+}
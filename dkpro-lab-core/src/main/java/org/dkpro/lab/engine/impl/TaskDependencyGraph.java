@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import static org.dkpro.lab.storage.StorageService.LATEST_CONTEXT_SCHEME;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.dkpro.lab.task.BatchTask;
+import org.dkpro.lab.task.Task;
+
+/**
+ * Dependencies between the subtasks of a batch task. A task depends on another task if it
+ * imports data from the latest context of that task's type. The imports of a nested
+ * {@link BatchTask} are the imports of all its subtasks. Imports of contexts produced outside
+ * the batch task do not create dependencies.
+ */
+public class TaskDependencyGraph
+{
+    private final List<Task> tasks;
+    private final Map<Task, Set<Task>> producers = new IdentityHashMap<Task, Set<Task>>();
+    private final Map<Task, Set<Task>> consumers = new IdentityHashMap<Task, Set<Task>>();
+
+    private List<Task> order;
+    private List<Task> criticalPath;
+
+    public TaskDependencyGraph(Collection<? extends Task> aTasks)
+    {
+        tasks = new ArrayList<Task>(aTasks);
+
+        Map<String, List<Task>> byType = new HashMap<String, List<Task>>();
+        for (Task task : tasks) {
+            producers.put(task, new LinkedHashSet<Task>());
+            consumers.put(task, new LinkedHashSet<Task>());
+            List<Task> sameType = byType.get(task.getType());
+            if (sameType == null) {
+                sameType = new ArrayList<Task>();
+                byType.put(task.getType(), sameType);
+            }
+            sameType.add(task);
+        }
+
+        for (Task task : tasks) {
+            for (String type : getImportedTypes(task)) {
+                List<Task> candidates = byType.get(type);
+                if (candidates == null) {
+                    continue;
+                }
+                for (Task producer : candidates) {
+                    if (producer != task) {
+                        producers.get(task).add(producer);
+                        consumers.get(producer).add(task);
+                    }
+                }
+            }
+        }
+    }
+
+    public List<Task> getTasks()
+    {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * Get the tasks the given task imports data from.
+     */
+    public Set<Task> getProducers(Task aTask)
+    {
+        return Collections.unmodifiableSet(producers.get(aTask));
+    }
+
+    /**
+     * Get the tasks importing data from the given task.
+     */
+    public Set<Task> getConsumers(Task aTask)
+    {
+        return Collections.unmodifiableSet(consumers.get(aTask));
+    }
+
+    /**
+     * Check if the dependencies contain a cycle, in which case there is no valid execution order.
+     */
+    public boolean isAcyclic()
+    {
+        return getTopologicalOrder() != null;
+    }
+
+    /**
+     * Get the tasks ordered such that each task comes after all its producers. Among tasks
+     * without mutual dependencies the order in which the tasks were added is kept.
+     *
+     * @return the tasks or {@code null} if the dependencies contain a cycle.
+     */
+    public List<Task> getTopologicalOrder()
+    {
+        if (order == null) {
+            Map<Task, Integer> pending = new IdentityHashMap<Task, Integer>();
+            Queue<Task> ready = new LinkedList<Task>();
+            for (Task task : tasks) {
+                pending.put(task, producers.get(task).size());
+                if (producers.get(task).isEmpty()) {
+                    ready.add(task);
+                }
+            }
+
+            List<Task> result = new ArrayList<Task>();
+            while (!ready.isEmpty()) {
+                Task task = ready.poll();
+                result.add(task);
+                for (Task consumer : consumers.get(task)) {
+                    int remaining = pending.get(consumer) - 1;
+                    pending.put(consumer, remaining);
+                    if (remaining == 0) {
+                        ready.add(consumer);
+                    }
+                }
+            }
+
+            if (result.size() < tasks.size()) {
+                return null;
+            }
+            order = result;
+        }
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * Get the longest chain of tasks each depending on the previous one. Since these tasks
+     * cannot run in parallel, the chain bounds how much parallel execution can help.
+     *
+     * @return the chain or an empty list if the dependencies contain a cycle.
+     */
+    public List<Task> getCriticalPath()
+    {
+        if (criticalPath == null) {
+            List<Task> topological = getTopologicalOrder();
+            if (topological == null) {
+                return Collections.emptyList();
+            }
+
+            Map<Task, Integer> length = new IdentityHashMap<Task, Integer>();
+            Map<Task, Task> predecessor = new IdentityHashMap<Task, Task>();
+            Task last = null;
+            for (Task task : topological) {
+                int best = 0;
+                for (Task producer : producers.get(task)) {
+                    if (length.get(producer) > best) {
+                        best = length.get(producer);
+                        predecessor.put(task, producer);
+                    }
+                }
+                length.put(task, best + 1);
+                if (last == null || length.get(task) > length.get(last)) {
+                    last = task;
+                }
+            }
+
+            LinkedList<Task> path = new LinkedList<Task>();
+            for (Task t = last; t != null; t = predecessor.get(t)) {
+                path.addFirst(t);
+            }
+            criticalPath = path;
+        }
+        return Collections.unmodifiableList(criticalPath);
+    }
+
+    /**
+     * Get the task types from whose latest contexts the given task imports data.
+     */
+    public static Set<String> getImportedTypes(Task aTask)
+    {
+        Set<String> types = new LinkedHashSet<String>();
+        collectImportedTypes(aTask, types);
+        return types;
+    }
+
+    private static void collectImportedTypes(Task aTask, Set<String> aTypes)
+    {
+        for (String uri : aTask.getImports().values()) {
+            try {
+                URI u = URI.create(uri);
+                if (LATEST_CONTEXT_SCHEME.equals(u.getScheme()) && u.getAuthority() != null) {
+                    aTypes.add(u.getAuthority());
+                }
+            }
+            catch (IllegalArgumentException e) {
+                // Unparseable imports fail when they are resolved
+            }
+        }
+
+        if (aTask instanceof BatchTask) {
+            for (Task subtask : ((BatchTask) aTask).getTasks()) {
+                collectImportedTypes(subtask, aTypes);
+            }
+        }
+    }
+}
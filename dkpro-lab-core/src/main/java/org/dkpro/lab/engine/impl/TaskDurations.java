@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running times of the completed executions per task type. A running execution is considered
+ * a straggler if it takes considerably longer than the executions of the same type completed
+ * so far.
+ * <p>
+ * Only the most recent durations of each type are kept, so the statistics follow changes in
+ * the running time, e.g. when later configurations work on larger data.
+ */
+public class TaskDurations
+{
+    /**
+     * Number of completed executions of a type required before executions of that type can be
+     * considered stragglers.
+     */
+    public static final int MIN_SAMPLES = 3;
+
+    private static final int MAX_SAMPLES = 64;
+
+    private final Map<String, LinkedList<Long>> durations = new HashMap<>();
+
+    private final double factor;
+    private final long minDuration;
+
+    /**
+     * @param aFactor
+     *            how many times longer than the median duration an execution must run to be a
+     *            straggler.
+     * @param aMinDuration
+     *            the time in milliseconds an execution must at least run to be a straggler.
+     */
+    public TaskDurations(double aFactor, long aMinDuration)
+    {
+        factor = aFactor;
+        minDuration = Math.max(0, aMinDuration);
+    }
+
+    public synchronized void record(String aType, long aDuration)
+    {
+        LinkedList<Long> samples = durations.get(aType);
+        if (samples == null) {
+            samples = new LinkedList<>();
+            durations.put(aType, samples);
+        }
+        samples.add(aDuration);
+        if (samples.size() > MAX_SAMPLES) {
+            samples.removeFirst();
+        }
+    }
+
+    /**
+     * Get the median duration of the recorded executions of the given type.
+     *
+     * @return the median in milliseconds or {@code -1} if fewer than {@link #MIN_SAMPLES}
+     *         executions have been recorded.
+     */
+    public synchronized long getMedian(String aType)
+    {
+        LinkedList<Long> samples = durations.get(aType);
+        if (samples == null || samples.size() < MIN_SAMPLES) {
+            return -1;
+        }
+
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * Get the time after which a running execution of the given type is a straggler.
+     *
+     * @return the time in milliseconds or {@code -1} if there are not enough recorded executions
+     *         of the type to tell.
+     */
+    public long getThreshold(String aType)
+    {
+        long median = getMedian(aType);
+        if (median < 0) {
+            return -1;
+        }
+        return Math.max(minDuration, (long) Math.ceil(median * factor));
+    }
+
+    public boolean isStraggler(String aType, long aRunningTime)
+    {
+        long threshold = getThreshold(aType);
+        return threshold >= 0 && aRunningTime > threshold;
+    }
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+import org.dkpro.lab.task.Resources;
+import org.dkpro.lab.task.Task;
+
+/**
+ * The resources a task needs while it is running.
+ *
+ * @see Resources
+ */
+public class TaskResources
+{
+    /**
+     * No resources, e.g. for tasks which only wait for other tasks.
+     */
+    public static final TaskResources NONE = new TaskResources(0, 0);
+
+    /**
+     * The resources of a task which does not declare any: one core and no significant memory.
+     */
+    public static final TaskResources DEFAULT = new TaskResources(1, 0);
+
+    private final int cores;
+    private final long memory;
+
+    public TaskResources(int aCores, long aMemory)
+    {
+        cores = Math.max(0, aCores);
+        memory = Math.max(0, aMemory);
+    }
+
+    /**
+     * Get the number of processor cores.
+     */
+    public int getCores()
+    {
+        return cores;
+    }
+
+    /**
+     * Get the heap memory in megabytes.
+     */
+    public long getMemory()
+    {
+        return memory;
+    }
+
+    /**
+     * Check if the task declares its resources using the {@link Resources} annotation or the
+     * task attributes.
+     */
+    public static boolean isDeclared(Task aTask)
+    {
+        return aTask.getClass().isAnnotationPresent(Resources.class)
+                || aTask.getAttribute(Resources.CORES) != null
+                || aTask.getAttribute(Resources.MEMORY) != null;
+    }
+
+    /**
+     * Get the resources declared by the given task. Task attributes take precedence over the
+     * {@link Resources} annotation.
+     *
+     * @return the declared resources or {@link #DEFAULT}.
+     */
+    public static TaskResources of(Task aTask)
+    {
+        int cores = DEFAULT.cores;
+        long memory = DEFAULT.memory;
+
+        Resources annotation = aTask.getClass().getAnnotation(Resources.class);
+        if (annotation != null) {
+            cores = annotation.cores();
+            memory = annotation.memory();
+        }
+
+        String value = aTask.getAttribute(Resources.CORES);
+        if (value != null) {
+            cores = Integer.parseInt(value.trim());
+        }
+        value = aTask.getAttribute(Resources.MEMORY);
+        if (value != null) {
+            memory = Long.parseLong(value.trim());
+        }
+
+        return new TaskResources(cores, memory);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[cores=" + cores + ", memory=" + memory + "MB]";
+    }
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.engine.impl;
+
+/**
+ * Batch task engine running each subtask on a virtual thread. This is the same as a
+ * {@link MultiThreadBatchTaskEngine} with the property
+ * {@link MultiThreadBatchTaskEngine#PROP_VIRTUAL_THREADS} set to {@code true}, but can be
+ * registered for batch tasks in {@code META-INF/lab/engines.properties}.
+ */
+public class VirtualThreadBatchTaskEngine
+    extends MultiThreadBatchTaskEngine
+{
+    @Override
+    protected boolean isVirtualThreads()
+    {
+        return true;
+    }
+}
@@ -40,7 +40,7 @@ import org.dkpro.lab.task.Task;
  * Base class for reports.
  */
 public abstract class ReportBase
-	implements Report
+	implements Report, Cloneable
 {
 	private TaskContext context;
 	private Map<String, String> attributes;
@@ -52,6 +52,25 @@ public abstract class ReportBase
 		context = aContext;
 	}
 
+	/**
+	 * Create a copy of this report which is not bound to a context. Fields of subclasses are
+	 * copied shallowly.
+	 */
+	@Override
+	public ReportBase clone()
+	{
+		try {
+			ReportBase clone = (ReportBase) super.clone();
+			clone.context = null;
+			clone.attributes = null;
+			clone.discriminators = null;
+			return clone;
+		}
+		catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	public TaskContext getContext()
 	{
 		return context;
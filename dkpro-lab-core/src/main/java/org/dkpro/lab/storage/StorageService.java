@@ -19,6 +19,7 @@ package org.dkpro.lab.storage;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -140,6 +141,17 @@ public interface StorageService
 
 	void copy(String aTargetContextId, String aTargetKey, StorageKey aSourceKey, AccessMode aMode);
 
+	/**
+	 * Make sure the data of the given key can be modified in place without affecting other
+	 * contexts. Storages which share data between contexts, e.g. via hard links, must give the
+	 * context a private copy of the data here. If the key is a folder, this applies to all files
+	 * in the folder.
+	 *
+	 * @param aContextId a context ID.
+	 * @param aKey a storage key.
+	 */
+	void unshare(String aContextId, String aKey);
+
 	/**
 	 * Sometimes data cannot be conveniently stored via a stream, e.g. when using Lucene, it
 	 * has to be provided with a location where it can store its data. This method allows to get
@@ -168,9 +180,32 @@ public interface StorageService
 
 	/**
 	 * Read a binary stream. If the path ends in ".gz" the stream is uncompressed upon reading.
+	 * Implementations may support further compression formats.
 	 */
 	<T extends StreamReader> T retrieveBinary(String aContextId, String aKey, T aConsumer);
 
+	/**
+	 * Get a read-only view of the data stored under the given key without copying it to the
+	 * heap. Compressed keys (e.g. ending in ".gz") cannot be accessed this way.
+	 *
+	 * @param aContextId a context ID.
+	 * @param aKey a storage key.
+	 * @return a read-only buffer.
+	 */
+	ByteBuffer retrieveMapped(String aContextId, String aKey);
+
+	/**
+	 * Get a read-only view of a region of the data stored under the given key. This allows
+	 * accessing keys larger than the maximum buffer size of 2 GB.
+	 *
+	 * @param aContextId a context ID.
+	 * @param aKey a storage key.
+	 * @param aOffset the position of the region within the data.
+	 * @param aLength the size of the region.
+	 * @return a read-only buffer.
+	 */
+	ByteBuffer retrieveMapped(String aContextId, String aKey, long aOffset, long aLength);
+
 	/**
 	 * Store all data available from the given stream into the storage. The
 	 * stream is closed afterwards, even in case an exception is thrown.
@@ -20,13 +20,12 @@ package org.dkpro.lab.storage.filesystem;
 import static org.dkpro.lab.task.Task.DISCRIMINATORS_KEY;
 import static org.dkpro.lab.task.TaskContextMetadata.METADATA_KEY;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.dkpro.lab.storage.StreamReader;
 import org.dkpro.lab.storage.StreamWriter;
@@ -35,88 +34,143 @@ import org.dkpro.lab.task.TaskContextMetadata;
 
 /**
  * File system-based storage service which caches task contexts and discriminators.
+ * <p>
+ * The cache is safe to be used from multiple threads. It is bounded by a total weight, where
+ * each cached context metadata or discriminator set weighs one plus its number of properties.
+ * When the bound is exceeded, the least recently used entries are evicted. Unless disabled via
+ * {@link #setValidateEntries(boolean)}, a cached entry is only used if the modification time
+ * and size of the underlying file did not change since it was cached, so changes written by other
+ * processes sharing the storage root are picked up.
  */
 public class CachedFileSystemStorageService
     extends FileSystemStorageService
 {
-	private Map<String, TaskContextMetadata> contexts;
-	private Map<String, Map<String, String>> discriminators;
-	private boolean scannedFiles = false;
+	public static final long DEFAULT_MAX_WEIGHT = 1000000;
+
+	private final Cache cache;
+	private boolean validateEntries = true;
 
 	public CachedFileSystemStorageService()
 	{
-		contexts = new HashMap<String, TaskContextMetadata>();
-		discriminators = new HashMap<String, Map<String, String>>();
+		cache = new Cache(DEFAULT_MAX_WEIGHT);
 	}
 
-	@Override
-	public void delete(String aContextId)
+	/**
+	 * Set the maximum total weight of the cached entries.
+	 */
+	public void setMaxCacheWeight(long aMaxWeight)
 	{
-		super.delete(aContextId);
+		cache.setMaxWeight(aMaxWeight);
+	}
+
+	public long getMaxCacheWeight()
+	{
+		return cache.getMaxWeight();
+	}
+
+	/**
+	 * Whether to check that the file underlying a cached entry has not changed before using the
+	 * entry. This should only be disabled if no other process writes to the storage root.
+	 * Default: enabled.
+	 */
+	public void setValidateEntries(boolean aValidateEntries)
+	{
+		validateEntries = aValidateEntries;
+	}
+
+	public boolean isValidateEntries()
+	{
+		return validateEntries;
+	}
+
+	public long getCacheHits()
+	{
+		return cache.hits.get();
+	}
+
+	public long getCacheMisses()
+	{
+		return cache.misses.get();
+	}
+
+	public long getCacheEvictions()
+	{
+		return cache.evictions.get();
+	}
 
-		contexts.remove(aContextId);
-		discriminators.remove(aContextId);
+	public int getCacheSize()
+	{
+		return cache.size();
+	}
+
+	public void clearCache()
+	{
+		cache.clear();
 	}
 
 	@Override
-	public List<TaskContextMetadata> getContexts()
-	{
-		if (!scannedFiles) {
-			// If we are using an existing run, we need to have all the context metadata available.
-			// To avoid pulling these from the FS every time we need the list, we fetch them once.
-			// If new contexts are added, it is ensured by storeBinary that those are put into the
-			// cache.
-			for (TaskContextMetadata meta : super.getContexts()) {
-				contexts.put(meta.getId(), meta);
-			}
-			scannedFiles = true;
+	public void setStorageRoot(File aStorageRoot)
+	{
+		super.setStorageRoot(aStorageRoot);
+		if (cache != null) {
+			cache.clear();
 		}
+	}
 
-		List<TaskContextMetadata> contextList = new ArrayList<TaskContextMetadata>(
-		        contexts.values());
-		Collections.sort(contextList, new Comparator<TaskContextMetadata>()
-		{
-			@Override
-			public int compare(TaskContextMetadata aO1, TaskContextMetadata aO2)
-			{
-				return Long.signum(aO2.getEnd() - aO1.getEnd());
-			}
-		});
-		return contextList;
+	@Override
+	public void delete(String aContextId)
+	{
+		super.delete(aContextId);
+
+		cache.remove(cacheKey(aContextId, METADATA_KEY));
+		cache.remove(cacheKey(aContextId, DISCRIMINATORS_KEY));
 	}
 
 	@Override
-	public boolean containsContext(String aContextId)
+	public void delete(String aContextId, String aKey)
 	{
-		return contexts.containsKey(aContextId) || super.containsContext(aContextId);
+		super.delete(aContextId, aKey);
+
+		cache.remove(cacheKey(aContextId, aKey));
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends StreamReader> T retrieveBinary(String aContextId, String aKey, T aConsumer)
 	{
-		T consumer = null;
-		// Get the consumer from cache if it is a TaskContextMetadata or PropertiesAdapter.
-		if (aConsumer instanceof TaskContextMetadata && aKey.equals(METADATA_KEY)) {
-			consumer = (T) contexts.get(aContextId);
+		if (!isCacheable(aKey, aConsumer)) {
+			return super.retrieveBinary(aContextId, aKey, aConsumer);
 		}
-		else if (aConsumer instanceof PropertiesAdapter && aKey.equals(DISCRIMINATORS_KEY)) {
-			Properties props = new Properties();
-			Map<String, String> discs = discriminators.get(aContextId);
-			if (discs != null) {
-				props.putAll(discs);
-				((PropertiesAdapter) aConsumer).setProperties(props);
-				consumer = aConsumer;
-			}
+
+		String key = cacheKey(aContextId, aKey);
+		File file = locateKey(aContextId, aKey);
+
+		CacheEntry entry = cache.get(key);
+		if (entry != null && validateEntries && !entry.isCurrent(file)) {
+			cache.remove(key);
+			entry = null;
 		}
 
-		// If the consumer is not a TaskContextMetadata/PropertiesAdapter or is not cached, retrieve
-		// it from file and store it in the cache.
-		if (consumer == null) {
-			consumer = super.retrieveBinary(aContextId, aKey, aConsumer);
-			storeInCache(aContextId, aKey, consumer);
+		if (entry != null) {
+			cache.hits.incrementAndGet();
+			if (entry.value instanceof TaskContextMetadata) {
+				return (T) entry.value;
+			}
+			else {
+				Properties props = new Properties();
+				props.putAll((Map<String, String>) entry.value);
+				((PropertiesAdapter) aConsumer).setProperties(props);
+				return aConsumer;
+			}
 		}
 
+		// Capture the state of the file before reading it so that a concurrent update is noticed
+		// the next time the entry is used.
+		cache.misses.incrementAndGet();
+		long lastModified = file.lastModified();
+		long length = file.length();
+		T consumer = super.retrieveBinary(aContextId, aKey, aConsumer);
+		cache.put(key, createEntry(consumer, lastModified, length));
 		return consumer;
 	}
 
@@ -124,7 +178,15 @@ public class CachedFileSystemStorageService
 	public void storeBinary(String aContextId, String aKey, StreamWriter aProducer)
 	{
 		super.storeBinary(aContextId, aKey, aProducer);
-		storeInCache(aContextId, aKey, aProducer);
+
+		String key = cacheKey(aContextId, aKey);
+		if (isCacheable(aKey, aProducer)) {
+			File file = locateKey(aContextId, aKey);
+			cache.put(key, createEntry(aProducer, file.lastModified(), file.length()));
+		}
+		else {
+			cache.remove(key);
+		}
 	}
 
 	@Override
@@ -132,38 +194,125 @@ public class CachedFileSystemStorageService
 	{
 		super.copy(aContextId, aKey, aResolvedKey, aMode);
 
-		if (isStorageFolder(aResolvedKey.contextId, aResolvedKey.key)) {
-			if (aResolvedKey.key.equals(METADATA_KEY) && aKey.equals(METADATA_KEY)) {
-				contexts.put(aContextId, getContext(aResolvedKey.contextId));
-			}
-			else if (aResolvedKey.key.equals(DISCRIMINATORS_KEY) && aKey.equals(DISCRIMINATORS_KEY)) {
-				discriminators.put(aContextId, getDiscriminators(aResolvedKey.contextId));
-			}
+		cache.remove(cacheKey(aContextId, aKey));
+	}
+
+	private static boolean isCacheable(String aKey, Object aObject)
+	{
+		return (aObject instanceof TaskContextMetadata && aKey.equals(METADATA_KEY))
+				|| (aObject instanceof PropertiesAdapter && aKey.equals(DISCRIMINATORS_KEY));
+	}
+
+	private static String cacheKey(String aContextId, String aKey)
+	{
+		return aContextId + "/" + aKey;
+	}
+
+	private static CacheEntry createEntry(Object aObject, long aLastModified, long aLength)
+	{
+		if (aObject instanceof TaskContextMetadata) {
+			TaskContextMetadata meta = (TaskContextMetadata) aObject;
+			return new CacheEntry(meta, 1 + meta.getImports().size(), aLastModified, aLength);
+		}
+		else {
+			Map<String, String> map = ((PropertiesAdapter) aObject).getMap();
+			return new CacheEntry(map, 1 + map.size(), aLastModified, aLength);
 		}
 	}
 
-	/**
-	 * Stores a TaskContextMetadata or the contents of a PropertiesAdapter in cache.
-	 *
-	 * @param aContextId
-	 *            the id of the context to which this aMeta belongs.
-	 * @param aKey
-	 *            the key of the object.
-	 * @param aMeta
-	 *            the TaskContextMetadata or the PropertiesAdapter that should be cached.
-	 */
-	private void storeInCache(String aContextId, String aKey, Object aMeta)
+	private static class CacheEntry
 	{
-		if (aMeta instanceof TaskContextMetadata && aKey.equals(METADATA_KEY)) {
-			contexts.put(aContextId, (TaskContextMetadata) aMeta);
+		private final Object value;
+		private final int weight;
+		private final long lastModified;
+		private final long length;
+
+		public CacheEntry(Object aValue, int aWeight, long aLastModified, long aLength)
+		{
+			value = aValue;
+			weight = aWeight;
+			lastModified = aLastModified;
+			length = aLength;
 		}
-		else if (aMeta instanceof PropertiesAdapter && aKey.equals(DISCRIMINATORS_KEY)) {
-			discriminators.put(aContextId, ((PropertiesAdapter) aMeta).getMap());
+
+		public boolean isCurrent(File aFile)
+		{
+			return aFile.lastModified() == lastModified && aFile.length() == length;
 		}
 	}
 
-	private Map<String, String> getDiscriminators(String aContextId)
+	/**
+	 * Weight-bounded LRU map. All access is synchronized on the cache.
+	 */
+	private static class Cache
 	{
-		return retrieveBinary(aContextId, DISCRIMINATORS_KEY, new PropertiesAdapter()).getMap();
+		private final LinkedHashMap<String, CacheEntry> entries;
+		private long maxWeight;
+		private long weight;
+
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+		private final AtomicLong evictions = new AtomicLong();
+
+		public Cache(long aMaxWeight)
+		{
+			entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+			maxWeight = aMaxWeight;
+		}
+
+		public synchronized CacheEntry get(String aKey)
+		{
+			return entries.get(aKey);
+		}
+
+		public synchronized void put(String aKey, CacheEntry aEntry)
+		{
+			CacheEntry old = entries.put(aKey, aEntry);
+			if (old != null) {
+				weight -= old.weight;
+			}
+			weight += aEntry.weight;
+			evict();
+		}
+
+		public synchronized void remove(String aKey)
+		{
+			CacheEntry old = entries.remove(aKey);
+			if (old != null) {
+				weight -= old.weight;
+			}
+		}
+
+		public synchronized void clear()
+		{
+			entries.clear();
+			weight = 0;
+		}
+
+		public synchronized int size()
+		{
+			return entries.size();
+		}
+
+		public synchronized long getMaxWeight()
+		{
+			return maxWeight;
+		}
+
+		public synchronized void setMaxWeight(long aMaxWeight)
+		{
+			maxWeight = aMaxWeight;
+			evict();
+		}
+
+		private void evict()
+		{
+			Iterator<CacheEntry> i = entries.values().iterator();
+			while (weight > maxWeight && i.hasNext()) {
+				weight -= i.next().weight;
+				i.remove();
+				evictions.incrementAndGet();
+			}
+		}
 	}
 }
@@ -0,0 +1,571 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static org.dkpro.lab.task.Task.DISCRIMINATORS_KEY;
+import static org.dkpro.lab.task.TaskContextMetadata.METADATA_KEY;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.Util;
+import org.dkpro.lab.storage.StreamWriter;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * File system-based storage service which stores identical data only once. The content of every
+ * stored key is hashed using SHA-256 and kept as a blob in the {@link #BLOB_FOLDER} below the
+ * storage root. The key in the context folder is a hard link to the blob. Each context keeps a
+ * {@link #MANIFEST_KEY manifest} of the blobs it references. A blob is removed as soon as no
+ * context references it any more.
+ * <p>
+ * Importing a storage folder in {@link AccessMode#ADD_ONLY} mode links the files of the folder
+ * instead of copying them. Permissions belong to the blob rather than to a link, so linked files
+ * stay writable and modifying one in place modifies all of them. A task obtaining a file or
+ * folder for writing via
+ * {@link org.dkpro.lab.engine.TaskContext#getFile} or
+ * {@link org.dkpro.lab.engine.TaskContext#getFolder} therefore receives private copies of all
+ * linked files via {@link #unshare(String, String)}. The same applies to
+ * {@link #getStorageFolder(String, String)}. Callers which modify files obtained via
+ * {@link #locateKey(String, String)} in place must call {@link #unshare(String, String)}
+ * first.
+ * <p>
+ * If the file system does not support hard links, this service behaves like the
+ * {@link FileSystemStorageService}.
+ */
+public class ContentAddressedStorageService
+	extends FileSystemStorageService
+{
+	public static final String BLOB_FOLDER = ".blobs";
+	public static final String MANIFEST_KEY = "MANIFEST.txt";
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private long minBlobSize = 16 * 1024;
+	private Boolean supported;
+
+	/**
+	 * Guards checking the link count of a blob before removing it against linking the blob.
+	 */
+	private final Object blobLock = new Object();
+
+	/**
+	 * Set the minimum size in bytes of data to be deduplicated. Smaller keys are stored as plain
+	 * files. Default: 16 KB.
+	 */
+	public void setMinBlobSize(long aMinBlobSize)
+	{
+		minBlobSize = aMinBlobSize;
+	}
+
+	public long getMinBlobSize()
+	{
+		return minBlobSize;
+	}
+
+	@Override
+	public synchronized void setStorageRoot(File aStorageRoot)
+	{
+		super.setStorageRoot(aStorageRoot);
+		supported = null;
+	}
+
+	/**
+	 * Check if the file system containing the storage root supports hard links and link counts.
+	 */
+	public synchronized boolean isDeduplicationSupported()
+	{
+		if (supported == null) {
+			try {
+				getStorageRoot().mkdirs();
+				Files.getAttribute(getStorageRoot().toPath(), "unix:nlink");
+				supported = true;
+			}
+			catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+				log.info("Storage root [" + getStorageRoot()
+						+ "] does not support hard links - not deduplicating data");
+				supported = false;
+			}
+		}
+		return supported;
+	}
+
+	@Override
+	public void storeBinary(String aContextId, String aKey, StreamWriter aProducer)
+	{
+		super.storeBinary(aContextId, aKey, aProducer);
+
+		if (isDeduplicationSupported() && isDeduplicated(aKey)) {
+			File file = locateKey(aContextId, aKey);
+			String hash = null;
+			if (file.length() >= minBlobSize) {
+				try {
+					hash = hash(file);
+					link(hash, file);
+				}
+				catch (IOException e) {
+					// The data is stored, it is just not deduplicated
+					log.warn("Unable to deduplicate [" + aKey + "] in context [" + aContextId
+							+ "]: " + e.getMessage());
+					hash = null;
+				}
+			}
+
+			// The stored file replaced the link to the blob of the previous data, if any
+			String previousHash = updateManifest(aContextId, aKey, hash);
+			if (previousHash != null && !previousHash.equals(hash)) {
+				collect(previousHash);
+			}
+		}
+	}
+
+	@Override
+	public void copy(String aContextId, String aKey, StorageKey aResolvedKey, AccessMode aMode)
+	{
+		// Files imported for READWRITE access would be unshared right away when the folder is
+		// handed out, so only link them for ADD_ONLY access
+		if (!isDeduplicationSupported() || !isStorageFolder(aResolvedKey.contextId, aResolvedKey.key)
+				|| aMode != AccessMode.ADD_ONLY) {
+			super.copy(aContextId, aKey, aResolvedKey, aMode);
+			return;
+		}
+
+		log.info("Write access to imported storage folder [" + aKey
+				+ "] was requested. Linking to current context");
+
+		try {
+			linkFolder(aResolvedKey.contextId, aResolvedKey.key, aContextId, aKey);
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public File getStorageFolder(String aContextId, String aKey)
+	{
+		// The folder is handed out for writing
+		unshare(aContextId, aKey);
+		return super.getStorageFolder(aContextId, aKey);
+	}
+
+	@Override
+	public synchronized void unshare(String aContextId, String aKey)
+	{
+		File file = locateKey(aContextId, aKey);
+		if (!file.exists() || !isDeduplicationSupported()) {
+			return;
+		}
+
+		try {
+			Properties manifest = readManifest(aContextId);
+			Set<String> hashes = new HashSet<String>();
+			Iterator<Entry<Object, Object>> i = manifest.entrySet().iterator();
+			while (i.hasNext()) {
+				Entry<Object, Object> e = i.next();
+				String key = (String) e.getKey();
+				if (key.equals(aKey) || key.startsWith(aKey + "/")) {
+					hashes.add((String) e.getValue());
+					i.remove();
+				}
+			}
+
+			// Files linked to blobs are listed in the manifest, but break any other links as
+			// well
+			if (file.isDirectory()) {
+				for (File f : FileUtils.listFiles(file, null, true)) {
+					Util.breakLink(f);
+				}
+			}
+			else {
+				Util.breakLink(file);
+			}
+
+			if (!hashes.isEmpty()) {
+				writeManifest(aContextId, manifest);
+				for (String hash : hashes) {
+					collect(hash);
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException("Unable to unshare [" + aKey
+					+ "] in context [" + aContextId + "]", e);
+		}
+	}
+
+	@Override
+	public void delete(String aContextId)
+	{
+		Set<String> hashes = new HashSet<String>();
+		synchronized (this) {
+			if (isDeduplicationSupported()) {
+				for (Object hash : readManifest(aContextId).values()) {
+					hashes.add((String) hash);
+				}
+			}
+		}
+
+		super.delete(aContextId);
+
+		for (String hash : hashes) {
+			collect(hash);
+		}
+	}
+
+	@Override
+	public void delete(String aContextId, String aKey)
+	{
+		Set<String> hashes = new HashSet<String>();
+		synchronized (this) {
+			if (isDeduplicationSupported()) {
+				Properties manifest = readManifest(aContextId);
+				Iterator<Entry<Object, Object>> i = manifest.entrySet().iterator();
+				while (i.hasNext()) {
+					Entry<Object, Object> e = i.next();
+					String key = (String) e.getKey();
+					if (key.equals(aKey) || key.startsWith(aKey + "/")) {
+						hashes.add((String) e.getValue());
+						i.remove();
+					}
+				}
+				if (!hashes.isEmpty()) {
+					writeManifest(aContextId, manifest);
+				}
+			}
+		}
+
+		super.delete(aContextId, aKey);
+
+		for (String hash : hashes) {
+			collect(hash);
+		}
+	}
+
+	/**
+	 * Remove all blobs which are no longer referenced by any context, e.g. because contexts have
+	 * been deleted without going through the storage service.
+	 *
+	 * @return the number of removed blobs.
+	 */
+	public int collectGarbage()
+	{
+		File blobs = new File(getStorageRoot(), BLOB_FOLDER);
+		if (!isDeduplicationSupported() || !blobs.isDirectory()) {
+			return 0;
+		}
+
+		final int[] removed = { 0 };
+		try {
+			Files.walkFileTree(blobs.toPath(), new SimpleFileVisitor<Path>()
+			{
+				@Override
+				public FileVisitResult visitFile(Path aFile, BasicFileAttributes aAttrs)
+					throws IOException
+				{
+					if (collect(aFile.toFile())) {
+						removed[0]++;
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException(e.getMessage(), e);
+		}
+		return removed[0];
+	}
+
+	protected boolean isDeduplicated(String aKey)
+	{
+		return !METADATA_KEY.equals(aKey) && !DISCRIMINATORS_KEY.equals(aKey)
+				&& !MANIFEST_KEY.equals(aKey);
+	}
+
+	protected File getBlobFile(String aHash)
+	{
+		return new File(new File(new File(getStorageRoot(), BLOB_FOLDER),
+				aHash.substring(0, 2)), aHash);
+	}
+
+	/**
+	 * Link all files of the source folder into the target folder.
+	 */
+	private void linkFolder(String aSourceContextId, String aSourceKey, String aTargetContextId,
+			String aTargetKey)
+		throws IOException
+	{
+		final File source = locateKey(aSourceContextId, aSourceKey);
+		final File target = locateKey(aTargetContextId, aTargetKey);
+		if (target.exists()) {
+			throw new IOException("Target [" + target + "] already exists");
+		}
+
+		final Properties sourceManifest;
+		final Properties targetManifest;
+		synchronized (this) {
+			sourceManifest = readManifest(aSourceContextId);
+			targetManifest = readManifest(aTargetContextId);
+		}
+		final int sourceEntries = sourceManifest.size();
+
+		final String sourcePrefix = aSourceKey + "/";
+		final String targetPrefix = aTargetKey + "/";
+		Files.walkFileTree(source.toPath(), new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path aDir, BasicFileAttributes aAttrs)
+				throws IOException
+			{
+				Files.createDirectories(target.toPath().resolve(source.toPath().relativize(aDir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path aFile, BasicFileAttributes aAttrs)
+				throws IOException
+			{
+				String path = source.toPath().relativize(aFile).toString().replace('\\', '/');
+				File targetFile = target.toPath().resolve(path).toFile();
+
+				if (aAttrs.size() < minBlobSize) {
+					Files.copy(aFile, targetFile.toPath());
+					return FileVisitResult.CONTINUE;
+				}
+
+				String hash = sourceManifest.getProperty(sourcePrefix + path);
+				if (hash == null) {
+					// The source file is not yet in the blob store, so add it now
+					hash = hash(aFile.toFile());
+					link(hash, aFile.toFile());
+					sourceManifest.setProperty(sourcePrefix + path, hash);
+				}
+
+				linkBlob(hash, aFile.toFile(), targetFile);
+				targetManifest.setProperty(targetPrefix + path, hash);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		synchronized (this) {
+			if (sourceManifest.size() != sourceEntries) {
+				writeManifest(aSourceContextId, sourceManifest);
+			}
+			writeManifest(aTargetContextId, targetManifest);
+		}
+	}
+
+	/**
+	 * Make the given file a link to the blob with the given hash. If the blob does not exist yet,
+	 * the file becomes the blob.
+	 */
+	private void link(String aHash, File aFile)
+		throws IOException
+	{
+		File blob = getBlobFile(aHash);
+		blob.getParentFile().mkdirs();
+
+		synchronized (blobLock) {
+			// Another process may create or remove the same blob concurrently, so try again once
+			// if that happens.
+			for (int attempt = 0; attempt < 2; attempt++) {
+				if (blob.exists()) {
+					if (Files.isSameFile(blob.toPath(), aFile.toPath())) {
+						return;
+					}
+					File tmp = new File(aFile.getPath() + ".link");
+					Files.deleteIfExists(tmp.toPath());
+					try {
+						Files.createLink(tmp.toPath(), blob.toPath());
+					}
+					catch (NoSuchFileException e) {
+						continue;
+					}
+					Files.move(tmp.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+					return;
+				}
+
+				try {
+					Files.createLink(blob.toPath(), aFile.toPath());
+					return;
+				}
+				catch (FileAlreadyExistsException e) {
+					// Try again
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the given target file as a link to the blob with the given hash. If the blob has
+	 * been removed in the meantime, e.g. by another process, it is re-created from the given
+	 * source file, which has the same content.
+	 */
+	private void linkBlob(String aHash, File aSource, File aTarget)
+		throws IOException
+	{
+		synchronized (blobLock) {
+			try {
+				Files.createLink(aTarget.toPath(), getBlobFile(aHash).toPath());
+			}
+			catch (NoSuchFileException e) {
+				link(aHash, aSource);
+				Files.createLink(aTarget.toPath(), getBlobFile(aHash).toPath());
+			}
+		}
+	}
+
+	private void collect(String aHash)
+	{
+		try {
+			collect(getBlobFile(aHash));
+		}
+		catch (IOException e) {
+			log.warn("Unable to remove blob [" + aHash + "]: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Remove the given blob if it is no longer referenced by any context.
+	 */
+	private boolean collect(File aBlob)
+		throws IOException
+	{
+		synchronized (blobLock) {
+			if (aBlob.exists() && Util.getLinkCount(aBlob) <= 1) {
+				log.debug("Removing unreferenced blob [" + aBlob.getName() + "]");
+				return aBlob.delete();
+			}
+			return false;
+		}
+	}
+
+	private Properties readManifest(String aContextId)
+	{
+		Properties manifest = new Properties();
+		File file = locateKey(aContextId, MANIFEST_KEY);
+		if (file.isFile()) {
+			InputStream is = null;
+			try {
+				is = new FileInputStream(file);
+				manifest.load(is);
+			}
+			catch (IOException e) {
+				throw new DataAccessResourceFailureException("Unable to read manifest of context ["
+						+ aContextId + "]", e);
+			}
+			finally {
+				Util.close(is);
+			}
+		}
+		return manifest;
+	}
+
+	private void writeManifest(String aContextId, Properties aManifest)
+	{
+		File file = locateKey(aContextId, MANIFEST_KEY);
+		File tmp = new File(file.getPath() + ".tmp");
+		OutputStream os = null;
+		try {
+			file.getParentFile().mkdirs();
+			os = new FileOutputStream(tmp);
+			aManifest.store(os, null);
+			os.close();
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException("Unable to write manifest of context ["
+					+ aContextId + "]", e);
+		}
+		finally {
+			Util.close(os);
+		}
+	}
+
+	/**
+	 * Record the hash of the given key in the manifest of the context or remove the key from the
+	 * manifest if the hash is {@code null}.
+	 *
+	 * @return the previous hash of the key or {@code null} if the key was not in the manifest.
+	 */
+	private synchronized String updateManifest(String aContextId, String aKey, String aHash)
+	{
+		Properties manifest = readManifest(aContextId);
+		String previousHash = (String) (aHash != null ? manifest.setProperty(aKey, aHash)
+				: manifest.remove(aKey));
+		if (aHash != null ? !aHash.equals(previousHash) : previousHash != null) {
+			writeManifest(aContextId, manifest);
+		}
+		return previousHash;
+	}
+
+	private static String hash(File aFile)
+		throws IOException
+	{
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		InputStream is = null;
+		try {
+			is = new FileInputStream(aFile);
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		finally {
+			Util.close(is);
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+}
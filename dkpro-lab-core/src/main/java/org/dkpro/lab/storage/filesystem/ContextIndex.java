@@ -0,0 +1,645 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static org.dkpro.lab.task.Task.DISCRIMINATORS_KEY;
+import static org.dkpro.lab.task.TaskContextMetadata.METADATA_KEY;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.Util;
+import org.dkpro.lab.engine.impl.ImportUtil;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Persistent index of the context metadata and discriminators kept in a
+ * {@link FileSystemStorageService}. The index is an append-only journal stored in the
+ * {@link #INDEX_FOLDER} below the storage root. A record is appended whenever the
+ * {@link TaskContextMetadata#METADATA_KEY} or the
+ * {@link org.dkpro.lab.task.Task#DISCRIMINATORS_KEY} of a context is stored or deleted, so
+ * looking up contexts no longer requires scanning the storage root.
+ * <p>
+ * The journal is guarded by a file lock, so several processes may share the same storage root.
+ * Each of them only reads the part of the journal appended since its last access. If the journal
+ * is missing or cannot be parsed, it is rebuilt from the context folders. It can also be rebuilt
+ * explicitly using {@link #rebuild()}, e.g. if contexts have been added or removed bypassing the
+ * storage service.
+ */
+public class ContextIndex
+{
+	public static final String INDEX_FOLDER = ".index";
+	public static final String JOURNAL_FILE = "JOURNAL.txt";
+	public static final String LOCK_FILE = "JOURNAL.lock";
+
+	private static final String OP_PUT = "+";
+	private static final String OP_REMOVE = "-";
+	private static final String ENCODING = "UTF-8";
+
+	/**
+	 * The journal is compacted if it contains this many records more than twice the number of
+	 * indexed contexts.
+	 */
+	private static final int COMPACTION_SLACK = 1000;
+
+	/**
+	 * File locks are held per process, so threads within this JVM must be serialized separately.
+	 */
+	private static final ConcurrentMap<String, ReentrantLock> JVM_LOCKS =
+			new ConcurrentHashMap<String, ReentrantLock>();
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final File storageRoot;
+	private final File indexFolder;
+	private final File journal;
+	private final File lockFile;
+	private final ReentrantLock jvmLock;
+
+	private final Map<String, IndexEntry> entries;
+	private final Map<String, Set<String>> byType;
+
+	private RandomAccessFile lockHandle;
+	private boolean loaded = false;
+	private Object journalKey;
+	private long journalOffset;
+	private int journalRecords;
+
+	public ContextIndex(File aStorageRoot)
+	{
+		storageRoot = aStorageRoot;
+		indexFolder = new File(aStorageRoot, INDEX_FOLDER);
+		journal = new File(indexFolder, JOURNAL_FILE);
+		lockFile = new File(indexFolder, LOCK_FILE);
+		entries = new HashMap<String, IndexEntry>();
+		byType = new HashMap<String, Set<String>>();
+
+		String lockId = lockFile.getAbsoluteFile().toURI().normalize().toString();
+		ReentrantLock lock = new ReentrantLock();
+		ReentrantLock existing = JVM_LOCKS.putIfAbsent(lockId, lock);
+		jvmLock = existing != null ? existing : lock;
+	}
+
+	/**
+	 * Get the metadata of all completed contexts, i.e. of all contexts for which the
+	 * {@link TaskContextMetadata#METADATA_KEY} has been stored. The list is not sorted.
+	 */
+	public List<TaskContextMetadata> getContexts()
+	{
+		lock();
+		try {
+			refresh();
+			List<TaskContextMetadata> contexts = new ArrayList<TaskContextMetadata>();
+			for (IndexEntry e : entries.values()) {
+				if (e.metadata != null) {
+					contexts.add(e.metadata);
+				}
+			}
+			return contexts;
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Get the metadata of all completed contexts of the given type whose discriminators match
+	 * the given constraints. Contexts are partitioned by type, so contexts of other types are not
+	 * visited. The list is not sorted.
+	 *
+	 * @see ImportUtil#matchConstraints(Map, Map, boolean)
+	 */
+	public List<TaskContextMetadata> getContexts(String aTaskType, Map<String, String> aConstraints)
+	{
+		lock();
+		try {
+			refresh();
+			List<TaskContextMetadata> contexts = new ArrayList<TaskContextMetadata>();
+			Set<String> ids = byType.get(aTaskType);
+			if (ids == null) {
+				return contexts;
+			}
+
+			for (String id : ids) {
+				IndexEntry e = entries.get(id);
+				if (aConstraints.size() > 0 && (e.discriminators == null
+						|| !ImportUtil.matchConstraints(e.discriminators, aConstraints, true))) {
+					continue;
+				}
+
+				contexts.add(e.metadata);
+			}
+			return contexts;
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Record that the given key has been stored in the given context. Only
+	 * {@link TaskContextMetadata#METADATA_KEY} and
+	 * {@link org.dkpro.lab.task.Task#DISCRIMINATORS_KEY} are indexed, other keys are ignored.
+	 */
+	public void put(String aContextId, String aKey, Map<String, String> aProperties)
+	{
+		if (!isIndexed(aKey)) {
+			return;
+		}
+
+		lock();
+		try {
+			refresh();
+			append(OP_PUT + "\t" + encode(aContextId) + "\t" + encode(aKey) + "\t"
+					+ encode(aProperties));
+			putLocal(aContextId, aKey, aProperties);
+			compactIfNecessary();
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException("Unable to update context index ["
+					+ journal + "]", e);
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Record that the given context has been deleted.
+	 */
+	public void remove(String aContextId)
+	{
+		remove(aContextId, null);
+	}
+
+	/**
+	 * Record that the given key has been deleted from the given context. If the key is
+	 * {@code null}, the whole context is removed from the index.
+	 */
+	public void remove(String aContextId, String aKey)
+	{
+		if (aKey != null && !isIndexed(aKey)) {
+			return;
+		}
+
+		lock();
+		try {
+			refresh();
+			if (!entries.containsKey(aContextId)) {
+				return;
+			}
+			append(OP_REMOVE + "\t" + encode(aContextId)
+					+ (aKey != null ? "\t" + encode(aKey) : ""));
+			removeLocal(aContextId, aKey);
+			compactIfNecessary();
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException("Unable to update context index ["
+					+ journal + "]", e);
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Discard the journal and rebuild it by scanning all context folders in the storage root.
+	 */
+	public void rebuild()
+	{
+		lock();
+		try {
+			rebuildLocked();
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException("Unable to rebuild context index ["
+					+ journal + "]", e);
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	public static boolean isIndexed(String aKey)
+	{
+		return METADATA_KEY.equals(aKey) || DISCRIMINATORS_KEY.equals(aKey);
+	}
+
+	private void refresh()
+	{
+		try {
+			if (!journal.exists()) {
+				rebuildLocked();
+				return;
+			}
+
+			BasicFileAttributes attrs = Files.readAttributes(journal.toPath(),
+					BasicFileAttributes.class);
+			Object key = attrs.fileKey();
+			if (!loaded || (key != null && !key.equals(journalKey))
+					|| attrs.size() < journalOffset) {
+				// The journal has been compacted by another process - start over
+				clear();
+				journalKey = key;
+			}
+
+			if (attrs.size() > journalOffset) {
+				readJournal();
+			}
+			loaded = true;
+		}
+		catch (IOException | IllegalArgumentException e) {
+			log.warn("Context index [" + journal + "] is unreadable, rebuilding it: "
+					+ e.getMessage());
+			try {
+				rebuildLocked();
+			}
+			catch (IOException e1) {
+				throw new DataAccessResourceFailureException("Unable to rebuild context index ["
+						+ journal + "]", e1);
+			}
+		}
+	}
+
+	private void readJournal()
+		throws IOException
+	{
+		InputStream is = null;
+		try {
+			FileInputStream fis = new FileInputStream(journal);
+			fis.getChannel().position(journalOffset);
+			is = new BufferedInputStream(fis, 65536);
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = is.read()) != -1) {
+				if (b == '\n') {
+					apply(new String(line.toByteArray(), ENCODING));
+					journalOffset += line.size() + 1;
+					journalRecords++;
+					line.reset();
+				}
+				else {
+					line.write(b);
+				}
+			}
+			// An incomplete last line is a record which is still being written. It is picked up
+			// the next time.
+		}
+		finally {
+			Util.close(is);
+		}
+	}
+
+	private void apply(String aRecord)
+		throws UnsupportedEncodingException
+	{
+		String[] fields = aRecord.split("\t", -1);
+		if (OP_PUT.equals(fields[0]) && fields.length == 4) {
+			putLocal(decode(fields[1]), decode(fields[2]), decodeProperties(fields[3]));
+		}
+		else if (OP_REMOVE.equals(fields[0]) && fields.length == 2) {
+			removeLocal(decode(fields[1]), null);
+		}
+		else if (OP_REMOVE.equals(fields[0]) && fields.length == 3) {
+			removeLocal(decode(fields[1]), decode(fields[2]));
+		}
+		else {
+			throw new IllegalArgumentException("Malformed index record [" + aRecord + "]");
+		}
+	}
+
+	private void append(String aRecord)
+		throws IOException
+	{
+		byte[] data = (aRecord + "\n").getBytes(ENCODING);
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(journal, true);
+			// Single write so the record is never interleaved with another one
+			os.write(data);
+		}
+		finally {
+			Util.close(os);
+		}
+		journalOffset += data.length;
+		journalRecords++;
+	}
+
+	private void putLocal(String aContextId, String aKey, Map<String, String> aProperties)
+	{
+		IndexEntry e = entries.get(aContextId);
+		if (e == null) {
+			e = new IndexEntry(aContextId);
+			entries.put(aContextId, e);
+		}
+
+		if (METADATA_KEY.equals(aKey)) {
+			Properties props = new Properties();
+			props.putAll(aProperties);
+			TaskContextMetadata meta = new TaskContextMetadata();
+			try {
+				meta.read(props);
+			}
+			catch (RuntimeException ex) {
+				throw new IllegalArgumentException("Invalid metadata for context [" + aContextId
+						+ "]", ex);
+			}
+			if (e.metadata != null) {
+				removeFrom(byType, e.metadata.getType(), aContextId);
+			}
+			e.metadata = meta;
+			addTo(byType, meta.getType(), aContextId);
+		}
+		else if (DISCRIMINATORS_KEY.equals(aKey)) {
+			e.discriminators = aProperties;
+		}
+	}
+
+	private void removeLocal(String aContextId, String aKey)
+	{
+		IndexEntry e = entries.get(aContextId);
+		if (e == null) {
+			return;
+		}
+
+		if (aKey == null || DISCRIMINATORS_KEY.equals(aKey)) {
+			e.discriminators = null;
+		}
+		if ((aKey == null || METADATA_KEY.equals(aKey)) && e.metadata != null) {
+			removeFrom(byType, e.metadata.getType(), aContextId);
+			e.metadata = null;
+		}
+		if (e.metadata == null && e.discriminators == null) {
+			entries.remove(aContextId);
+		}
+	}
+
+	private static void addTo(Map<String, Set<String>> aMultiMap, String aKey, String aId)
+	{
+		Set<String> ids = aMultiMap.get(aKey);
+		if (ids == null) {
+			ids = new HashSet<String>();
+			aMultiMap.put(aKey, ids);
+		}
+		ids.add(aId);
+	}
+
+	private static void removeFrom(Map<String, Set<String>> aMultiMap, String aKey, String aId)
+	{
+		Set<String> ids = aMultiMap.get(aKey);
+		if (ids != null) {
+			ids.remove(aId);
+			if (ids.isEmpty()) {
+				aMultiMap.remove(aKey);
+			}
+		}
+	}
+
+	private void clear()
+	{
+		entries.clear();
+		byType.clear();
+		journalOffset = 0;
+		journalRecords = 0;
+	}
+
+	private void rebuildLocked()
+		throws IOException
+	{
+		log.info("Rebuilding context index from [" + storageRoot + "]");
+		clear();
+		File[] children = storageRoot.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				if (!child.isDirectory() || INDEX_FOLDER.equals(child.getName())) {
+					continue;
+				}
+
+				try {
+					for (String key : new String[] { DISCRIMINATORS_KEY, METADATA_KEY }) {
+						File file = new File(child, key);
+						if (file.isFile()) {
+							putLocal(child.getName(), key, load(file));
+						}
+					}
+				}
+				catch (IOException | IllegalArgumentException e) {
+					log.warn("Not indexing context [" + child.getName() + "]: " + e.getMessage());
+					removeLocal(child.getName(), null);
+				}
+			}
+		}
+		writeSnapshot();
+	}
+
+	private void compactIfNecessary()
+		throws IOException
+	{
+		if (journalRecords > (2 * entries.size()) + COMPACTION_SLACK) {
+			log.debug("Compacting context index [" + journal + "]");
+			writeSnapshot();
+		}
+	}
+
+	/**
+	 * Replace the journal with one only containing the current state of the index.
+	 */
+	private void writeSnapshot()
+		throws IOException
+	{
+		File tmp = new File(indexFolder, JOURNAL_FILE + ".tmp");
+		int records = 0;
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(tmp);
+			for (IndexEntry e : entries.values()) {
+				if (e.discriminators != null) {
+					os.write((OP_PUT + "\t" + encode(e.id) + "\t" + encode(DISCRIMINATORS_KEY)
+							+ "\t" + encode(e.discriminators) + "\n").getBytes(ENCODING));
+					records++;
+				}
+				if (e.metadata != null) {
+					os.write((OP_PUT + "\t" + encode(e.id) + "\t" + encode(METADATA_KEY) + "\t"
+							+ encode(toProperties(e.metadata)) + "\n").getBytes(ENCODING));
+					records++;
+				}
+			}
+		}
+		finally {
+			Util.close(os);
+		}
+
+		Files.move(tmp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		BasicFileAttributes attrs = Files.readAttributes(journal.toPath(),
+				BasicFileAttributes.class);
+		journalKey = attrs.fileKey();
+		journalOffset = attrs.size();
+		journalRecords = records;
+		loaded = true;
+	}
+
+	private void lock()
+	{
+		jvmLock.lock();
+		try {
+			indexFolder.mkdirs();
+			lockHandle = new RandomAccessFile(lockFile, "rw");
+			lockHandle.getChannel().lock();
+		}
+		catch (IOException e) {
+			Util.close(lockHandle);
+			lockHandle = null;
+			jvmLock.unlock();
+			throw new DataAccessResourceFailureException("Unable to lock context index ["
+					+ lockFile + "]", e);
+		}
+	}
+
+	private void unlock()
+	{
+		// Closing the file also releases the file lock
+		Util.close(lockHandle);
+		lockHandle = null;
+		jvmLock.unlock();
+	}
+
+	private static Map<String, String> load(File aFile)
+		throws IOException
+	{
+		Properties props = new Properties();
+		InputStream is = null;
+		try {
+			is = new FileInputStream(aFile);
+			props.load(is);
+		}
+		finally {
+			Util.close(is);
+		}
+
+		Map<String, String> map = new HashMap<String, String>();
+		for (String key : props.stringPropertyNames()) {
+			map.put(key, props.getProperty(key));
+		}
+		return map;
+	}
+
+	private static String encode(String aValue)
+		throws UnsupportedEncodingException
+	{
+		return URLEncoder.encode(aValue, ENCODING);
+	}
+
+	private static String decode(String aValue)
+		throws UnsupportedEncodingException
+	{
+		return URLDecoder.decode(aValue, ENCODING);
+	}
+
+	private static String encode(Map<?, ?> aProperties)
+		throws UnsupportedEncodingException
+	{
+		StringBuilder sb = new StringBuilder();
+		for (Entry<?, ?> e : aProperties.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append('&');
+			}
+			sb.append(encode(String.valueOf(e.getKey())));
+			sb.append('=');
+			sb.append(encode(String.valueOf(e.getValue())));
+		}
+		return sb.toString();
+	}
+
+	private static Map<String, String> decodeProperties(String aValue)
+		throws UnsupportedEncodingException
+	{
+		Map<String, String> map = new HashMap<String, String>();
+		if (aValue.isEmpty()) {
+			return map;
+		}
+
+		for (String pair : aValue.split("&")) {
+			int sep = pair.indexOf('=');
+			if (sep == -1) {
+				throw new IllegalArgumentException("Malformed property [" + pair + "]");
+			}
+			map.put(decode(pair.substring(0, sep)), decode(pair.substring(sep + 1)));
+		}
+		return map;
+	}
+
+	private static Properties toProperties(TaskContextMetadata aMetadata)
+		throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try {
+			aMetadata.write(bos);
+		}
+		catch (IOException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new IOException(e);
+		}
+		Properties props = new Properties();
+		props.load(new ByteArrayInputStream(bos.toByteArray()));
+		return props;
+	}
+
+	private static class IndexEntry
+	{
+		private final String id;
+		private TaskContextMetadata metadata;
+		private Map<String, String> discriminators;
+
+		public IndexEntry(String aId)
+		{
+			id = aId;
+		}
+	}
+}
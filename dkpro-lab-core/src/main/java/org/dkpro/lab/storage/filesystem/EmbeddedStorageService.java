@@ -0,0 +1,604 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static org.dkpro.lab.engine.impl.ImportUtil.matchConstraints;
+import static org.dkpro.lab.task.Task.DISCRIMINATORS_KEY;
+import static org.dkpro.lab.task.TaskContextMetadata.METADATA_KEY;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.Util;
+import org.dkpro.lab.storage.CompressionCodec;
+import org.dkpro.lab.storage.StreamReader;
+import org.dkpro.lab.storage.StreamWriter;
+import org.dkpro.lab.storage.impl.PropertiesAdapter;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.MVStoreException;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Storage service which keeps small keys in an embedded key-value store instead of individual
+ * files. Keys larger than the {@link #setMaxEmbeddedSize(int) maximum embedded size} are stored
+ * in the file system like in the {@link FileSystemStorageService}. The key-value store is a
+ * single file in the {@link #STORE_FOLDER} below the storage root. It is opened exclusively, so
+ * the storage root cannot be shared with other processes, e.g. forked workers or other instances
+ * of a distributed batch. Accessing a store which is open in another process fails.
+ * <p>
+ * Callers requiring a file via {@link #locateKey(String, String)} get one: an embedded key is
+ * moved to the file system before its location is returned. If the key is a folder, all embedded
+ * keys within the folder are moved. The same applies to storage folders obtained via
+ * {@link #getStorageFolder(String, String)} or imported via
+ * {@link #copy(String, String, StorageKey, AccessMode)}.
+ */
+public class EmbeddedStorageService
+	extends FileSystemStorageService
+{
+	public static final String STORE_FOLDER = ".store";
+	public static final String STORE_FILE = "contexts.mv.db";
+
+	private static final char SEPARATOR = '/';
+	private static final char TYPE_SEPARATOR = '\u0000';
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private int maxEmbeddedSize = 64 * 1024;
+
+	private MVStore store;
+	private MVMap<String, byte[]> data;
+	private MVMap<String, String> types;
+	private MVMap<String, String> contextTypes;
+
+	public EmbeddedStorageService()
+	{
+		// Contexts are tracked in the key-value store
+		setIndexEnabled(false);
+	}
+
+	/**
+	 * Set the maximum size in bytes of keys stored in the key-value store. Larger keys are stored
+	 * as files. Default: 64 KB.
+	 */
+	public void setMaxEmbeddedSize(int aMaxEmbeddedSize)
+	{
+		maxEmbeddedSize = aMaxEmbeddedSize;
+	}
+
+	public int getMaxEmbeddedSize()
+	{
+		return maxEmbeddedSize;
+	}
+
+	@Override
+	public synchronized void setStorageRoot(File aStorageRoot)
+	{
+		close();
+		super.setStorageRoot(aStorageRoot);
+	}
+
+	/**
+	 * Close the key-value store. It is opened again on the next access.
+	 */
+	public synchronized void close()
+	{
+		if (store != null) {
+			store.close();
+			store = null;
+			data = null;
+			types = null;
+			contextTypes = null;
+		}
+	}
+
+	@Override
+	public TaskContextMetadata getContext(String aContextId)
+	{
+		return retrieveBinary(aContextId, METADATA_KEY, new TaskContextMetadata());
+	}
+
+	@Override
+	public List<TaskContextMetadata> getContexts()
+	{
+		return getContextsOfType("", null);
+	}
+
+	@Override
+	public List<TaskContextMetadata> getContexts(String aTaskType, Map<String, String> aConstraints)
+	{
+		return getContextsOfType(aTaskType + TYPE_SEPARATOR, aConstraints);
+	}
+
+	@Override
+	public boolean containsContext(String aContextId)
+	{
+		return hasPrefix(aContextId + SEPARATOR) || super.containsContext(aContextId);
+	}
+
+	@Override
+	public boolean containsKey(String aContextId, String aKey)
+	{
+		String key = dataKey(aContextId, aKey);
+		return getData().containsKey(key) || hasPrefix(key + SEPARATOR)
+				|| super.containsKey(aContextId, aKey);
+	}
+
+	@Override
+	public <T extends StreamReader> T retrieveBinary(String aContextId, String aKey, T aConsumer)
+	{
+		byte[] bytes = getData().get(dataKey(aContextId, aKey));
+		if (bytes == null) {
+			return super.retrieveBinary(aContextId, aKey, aConsumer);
+		}
+
+		InputStream is = null;
+		try {
+			is = new ByteArrayInputStream(bytes);
+			CompressionCodec codec = getCodecRegistry().getCodec(aKey);
+			if (codec != null) {
+				is = codec.decompress(is);
+			}
+			aConsumer.read(is);
+			return aConsumer;
+		}
+		catch (Throwable e) {
+			throw new DataAccessResourceFailureException("Unable to load [" + aKey
+					+ "] from context [" + aContextId + "]", e);
+		}
+		finally {
+			Util.close(is);
+		}
+	}
+
+	@Override
+	public ByteBuffer retrieveMapped(String aContextId, String aKey, long aOffset, long aLength)
+	{
+		byte[] bytes = getData().get(dataKey(aContextId, aKey));
+		if (bytes == null) {
+			return super.retrieveMapped(aContextId, aKey, aOffset, aLength);
+		}
+
+		if (getCodecRegistry().getCodec(aKey) != null) {
+			throw new DataAccessResourceFailureException("Compressed key [" + aKey
+					+ "] in context [" + aContextId + "] cannot be mapped");
+		}
+		return ByteBuffer.wrap(bytes, (int) aOffset, (int) aLength).slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public ByteBuffer retrieveMapped(String aContextId, String aKey)
+	{
+		byte[] bytes = getData().get(dataKey(aContextId, aKey));
+		if (bytes == null) {
+			return super.retrieveMapped(aContextId, aKey);
+		}
+		return retrieveMapped(aContextId, aKey, 0, bytes.length);
+	}
+
+	@Override
+	public void storeBinary(String aContextId, String aKey, StreamWriter aProducer)
+	{
+		File finalFile = getFile(aContextId, aKey);
+		File tmpFile = new File(finalFile.getPath() + ".tmp");
+
+		SpillOutputStream spill = new SpillOutputStream(tmpFile, maxEmbeddedSize);
+		OutputStream os = spill;
+		try {
+			CompressionCodec codec = getCodecRegistry().getCodec(aKey);
+			if (codec != null) {
+				os = codec.compress(os);
+			}
+			aProducer.write(os);
+		}
+		catch (Exception e) {
+			Util.close(os);
+			tmpFile.delete();
+			throw new DataAccessResourceFailureException(e.getMessage(), e);
+		}
+		finally {
+			Util.close(os);
+		}
+
+		String key = dataKey(aContextId, aKey);
+		if (spill.isSpilled()) {
+			log.debug("Storing to: " + finalFile);
+			getData().remove(key);
+			if (finalFile.exists() && !finalFile.delete()) {
+				throw new DataAccessResourceFailureException("Unable to delete [" + finalFile
+						+ "] in order to replace it with an updated version.");
+			}
+			if (!tmpFile.renameTo(finalFile)) {
+				throw new DataAccessResourceFailureException("Unable to rename [" + tmpFile
+						+ "] to [" + finalFile + "]");
+			}
+		}
+		else {
+			getData().put(key, spill.toByteArray());
+			// A previously spilled version must not shadow the new data
+			if (finalFile.isFile()) {
+				finalFile.delete();
+			}
+		}
+
+		if (METADATA_KEY.equals(aKey)) {
+			TaskContextMetadata meta = getContext(aContextId);
+			registerContext(aContextId, meta.getType());
+		}
+
+		commit();
+	}
+
+	/**
+	 * Get the location of the given key in the file system. If the key or keys within the folder
+	 * denoted by the key are stored in the key-value store, they are moved to the file system
+	 * first, since the caller may access or modify them there.
+	 */
+	@Override
+	public File locateKey(String aContextId, String aKey)
+	{
+		moveToFileSystem(aContextId, aKey);
+		return getFile(aContextId, aKey);
+	}
+
+	@Override
+	public File getStorageFolder(String aContextId, String aKey)
+	{
+		moveToFileSystem(aContextId, aKey);
+		return super.getStorageFolder(aContextId, aKey);
+	}
+
+	@Override
+	public void copy(String aContextId, String aKey, StorageKey aResolvedKey, AccessMode aMode)
+	{
+		// Folders are copied in the file system
+		moveToFileSystem(aResolvedKey.contextId, aResolvedKey.key);
+		super.copy(aContextId, aKey, aResolvedKey, aMode);
+	}
+
+	@Override
+	protected boolean isStorageFolder(String aContextId, String aKey)
+	{
+		return hasPrefix(dataKey(aContextId, aKey) + SEPARATOR)
+				|| super.isStorageFolder(aContextId, aKey);
+	}
+
+	@Override
+	public void delete(String aContextId)
+	{
+		removeByPrefix(aContextId + SEPARATOR);
+		String typeKey = getContextTypes().remove(aContextId);
+		if (typeKey != null) {
+			getTypes().remove(typeKey);
+		}
+		commit();
+
+		super.delete(aContextId);
+	}
+
+	@Override
+	public void delete(String aContextId, String aKey)
+	{
+		getData().remove(dataKey(aContextId, aKey));
+		removeByPrefix(dataKey(aContextId, aKey) + SEPARATOR);
+		commit();
+
+		super.delete(aContextId, aKey);
+	}
+
+	private List<TaskContextMetadata> getContextsOfType(String aPrefix,
+			Map<String, String> aConstraints)
+	{
+		List<TaskContextMetadata> contexts = new ArrayList<TaskContextMetadata>();
+		Iterator<String> i = getTypes().keyIterator(aPrefix);
+		while (i.hasNext()) {
+			String typeKey = i.next();
+			if (!typeKey.startsWith(aPrefix)) {
+				break;
+			}
+
+			String contextId = getTypes().get(typeKey);
+			try {
+				if (aConstraints != null && aConstraints.size() > 0) {
+					Map<String, String> discriminators = retrieveBinary(contextId,
+							DISCRIMINATORS_KEY, new PropertiesAdapter()).getMap();
+					if (!matchConstraints(discriminators, aConstraints, true)) {
+						continue;
+					}
+				}
+				contexts.add(getContext(contextId));
+			}
+			catch (DataAccessResourceFailureException e) {
+				// Context has been removed from the file system by hand
+				log.debug("Ignoring unreadable context [" + contextId + "]: " + e.getMessage());
+			}
+		}
+		return sortByEnd(contexts);
+	}
+
+	/**
+	 * Move the given key and all keys within the folder denoted by the key from the key-value
+	 * store to the file system. Removing the keys from the store is committed before returning,
+	 * so a stale copy in the store cannot shadow changes the caller makes to the files.
+	 */
+	private synchronized void moveToFileSystem(String aContextId, String aKey)
+	{
+		boolean moved = false;
+		String key = dataKey(aContextId, aKey);
+		if (getData().containsKey(key)) {
+			moveToFileSystem(key, getFile(aContextId, aKey));
+			moved = true;
+		}
+
+		String prefix = key + SEPARATOR;
+		if (hasPrefix(prefix)) {
+			File folder = getFile(aContextId, aKey);
+			List<String> keys = new ArrayList<String>();
+			Iterator<String> i = getData().keyIterator(prefix);
+			while (i.hasNext()) {
+				String k = i.next();
+				if (!k.startsWith(prefix)) {
+					break;
+				}
+				keys.add(k);
+			}
+			for (String k : keys) {
+				moveToFileSystem(k, new File(folder, k.substring(prefix.length())));
+			}
+			moved = true;
+		}
+
+		if (moved) {
+			commit();
+		}
+	}
+
+	private void moveToFileSystem(String aDataKey, File aFile)
+	{
+		byte[] bytes = getData().get(aDataKey);
+		OutputStream os = null;
+		try {
+			aFile.getParentFile().mkdirs();
+			os = new FileOutputStream(aFile);
+			os.write(bytes);
+			os.close();
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException("Unable to move [" + aDataKey
+					+ "] to the file system", e);
+		}
+		finally {
+			Util.close(os);
+		}
+		getData().remove(aDataKey);
+	}
+
+	private boolean hasPrefix(String aPrefix)
+	{
+		String next = getData().ceilingKey(aPrefix);
+		return next != null && next.startsWith(aPrefix);
+	}
+
+	private void registerContext(String aContextId, String aType)
+	{
+		String typeKey = aType + TYPE_SEPARATOR + aContextId;
+		String oldTypeKey = getContextTypes().put(aContextId, typeKey);
+		if (oldTypeKey != null && !oldTypeKey.equals(typeKey)) {
+			getTypes().remove(oldTypeKey);
+		}
+		getTypes().put(typeKey, aContextId);
+	}
+
+	private void removeByPrefix(String aPrefix)
+	{
+		List<String> keys = new ArrayList<String>();
+		Iterator<String> i = getData().keyIterator(aPrefix);
+		while (i.hasNext()) {
+			String key = i.next();
+			if (!key.startsWith(aPrefix)) {
+				break;
+			}
+			keys.add(key);
+		}
+		for (String key : keys) {
+			getData().remove(key);
+		}
+	}
+
+	private File getFile(String aContextId, String aKey)
+	{
+		return new File(getContextFolder(aContextId, false), aKey);
+	}
+
+	private static String dataKey(String aContextId, String aKey)
+	{
+		return aContextId + SEPARATOR + aKey;
+	}
+
+	private synchronized void commit()
+	{
+		if (store != null) {
+			store.commit();
+		}
+	}
+
+	private MVMap<String, byte[]> getData()
+	{
+		open();
+		return data;
+	}
+
+	private MVMap<String, String> getTypes()
+	{
+		open();
+		return types;
+	}
+
+	private MVMap<String, String> getContextTypes()
+	{
+		open();
+		return contextTypes;
+	}
+
+	private synchronized void open()
+	{
+		if (store != null) {
+			return;
+		}
+
+		File file = new File(new File(getStorageRoot(), STORE_FOLDER), STORE_FILE);
+		boolean isNew = !file.exists();
+		file.getParentFile().mkdirs();
+		try {
+			store = new MVStore.Builder().fileName(file.getPath()).autoCommitDisabled().open();
+		}
+		catch (MVStoreException e) {
+			if (e.getErrorCode() == DataUtils.ERROR_FILE_LOCKED) {
+				throw new DataAccessResourceFailureException("Key-value store [" + file
+						+ "] is in use by another process. The storage root of an "
+						+ getClass().getSimpleName() + " cannot be shared between processes - "
+						+ "use a " + FileSystemStorageService.class.getSimpleName()
+						+ " instead.", e);
+			}
+			throw new DataAccessResourceFailureException("Unable to open key-value store ["
+					+ file + "]", e);
+		}
+		data = store.openMap("data");
+		types = store.openMap("types");
+		contextTypes = store.openMap("contextTypes");
+
+		if (isNew) {
+			registerExistingContexts();
+		}
+	}
+
+	/**
+	 * Register contexts which have been stored in the file system before the key-value store
+	 * was created, e.g. by a {@link FileSystemStorageService}.
+	 */
+	private void registerExistingContexts()
+	{
+		File[] children = getStorageRoot().listFiles();
+		if (children == null) {
+			return;
+		}
+
+		for (File child : children) {
+			if (new File(child, METADATA_KEY).isFile()) {
+				try {
+					TaskContextMetadata meta = super.retrieveBinary(child.getName(),
+							METADATA_KEY, new TaskContextMetadata());
+					registerContext(child.getName(), meta.getType());
+				}
+				catch (DataAccessResourceFailureException e) {
+					log.warn("Not registering context [" + child.getName() + "]: "
+							+ e.getMessage());
+				}
+			}
+		}
+		store.commit();
+	}
+
+	/**
+	 * Buffers data in memory up to a threshold and moves it to a file once the threshold is
+	 * exceeded.
+	 */
+	private static class SpillOutputStream
+		extends OutputStream
+	{
+		private final File file;
+		private final int threshold;
+		private ByteArrayOutputStream buffer;
+		private OutputStream fileStream;
+
+		public SpillOutputStream(File aFile, int aThreshold)
+		{
+			file = aFile;
+			threshold = aThreshold;
+			buffer = new ByteArrayOutputStream();
+		}
+
+		@Override
+		public void write(int aByte)
+			throws IOException
+		{
+			write(new byte[] { (byte) aByte }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] aData, int aOffset, int aLength)
+			throws IOException
+		{
+			if (fileStream == null && buffer.size() + aLength > threshold) {
+				file.getParentFile().mkdirs();
+				fileStream = new FileOutputStream(file);
+				buffer.writeTo(fileStream);
+				buffer = null;
+			}
+
+			if (fileStream != null) {
+				fileStream.write(aData, aOffset, aLength);
+			}
+			else {
+				buffer.write(aData, aOffset, aLength);
+			}
+		}
+
+		@Override
+		public void flush()
+			throws IOException
+		{
+			if (fileStream != null) {
+				fileStream.flush();
+			}
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			if (fileStream != null) {
+				fileStream.close();
+			}
+		}
+
+		public boolean isSpilled()
+		{
+			return fileStream != null;
+		}
+
+		public byte[] toByteArray()
+		{
+			return buffer.toByteArray();
+		}
+	}
+}
@@ -18,31 +18,43 @@
 package org.dkpro.lab.storage.filesystem;
 
 import static org.dkpro.lab.engine.impl.ImportUtil.matchConstraints;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 import static org.dkpro.lab.task.TaskContextMetadata.METADATA_KEY;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dkpro.lab.Util;
 import org.dkpro.lab.engine.impl.ImportUtil;
+import org.dkpro.lab.storage.CompressionCodec;
 import org.dkpro.lab.storage.StorageService;
 import org.dkpro.lab.storage.StreamReader;
 import org.dkpro.lab.storage.StreamWriter;
+import org.dkpro.lab.storage.impl.CodecRegistry;
 import org.dkpro.lab.storage.impl.PropertiesAdapter;
 import org.dkpro.lab.task.Task;
 import org.dkpro.lab.task.TaskContextMetadata;
@@ -56,14 +68,48 @@ public class FileSystemStorageService
 {
 	private final Log log = LogFactory.getLog(getClass());
 
-	private static final int MAX_RETRIES = 100;
-	private static final long SLEEP_TIME = 1000;
-
 	private File storageRoot;
 
+	/**
+	 * How storage folders imported for writing are copied into the importing context.
+	 */
+	public static enum CopyStrategy
+	{
+		/**
+		 * Copy all files.
+		 */
+		COPY,
+
+		/**
+		 * Clone the folder using copy-on-write clones (reflinks) if the file system supports
+		 * it. Otherwise, copy all files.
+		 */
+		COPY_ON_WRITE
+	}
+
+	private CodecRegistry codecRegistry = new CodecRegistry();
+	private CopyStrategy copyStrategy = CopyStrategy.COPY;
+
+	private boolean failFast = false;
+	private long retryTimeout = 100000;
+	private long initialBackoff = 50;
+	private long maxBackoff = 5000;
+
+	private final AtomicLong retryCount = new AtomicLong();
+	private final AtomicLong failFastCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	private boolean indexEnabled = true;
+	private long indexVerifyInterval = 60000;
+	private ContextIndex index;
+	private volatile long indexVerified;
+
 	public void setStorageRoot(File aStorageRoot)
 	{
 		storageRoot = aStorageRoot;
+		synchronized (this) {
+			index = null;
+		}
 	}
 
 	public File getStorageRoot()
@@ -71,6 +117,152 @@ public class FileSystemStorageService
 		return storageRoot;
 	}
 
+	/**
+	 * Set how storage folders imported for writing are copied into the importing context.
+	 * Default: {@link CopyStrategy#COPY}.
+	 */
+	public void setCopyStrategy(CopyStrategy aCopyStrategy)
+	{
+		copyStrategy = aCopyStrategy;
+	}
+
+	public CopyStrategy getCopyStrategy()
+	{
+		return copyStrategy;
+	}
+
+	/**
+	 * Set the registry selecting the compression codec for a key.
+	 */
+	public void setCodecRegistry(CodecRegistry aCodecRegistry)
+	{
+		codecRegistry = aCodecRegistry;
+	}
+
+	public CodecRegistry getCodecRegistry()
+	{
+		return codecRegistry;
+	}
+
+	/**
+	 * If enabled, reading a key which does not exist fails immediately unless the key is currently
+	 * being written. Otherwise, the read is retried until the retry timeout expires.
+	 * Default: disabled.
+	 */
+	public void setFailFast(boolean aFailFast)
+	{
+		failFast = aFailFast;
+	}
+
+	public boolean isFailFast()
+	{
+		return failFast;
+	}
+
+	/**
+	 * Maximum time in milliseconds to keep retrying to read a key. Default: 100 seconds.
+	 */
+	public void setRetryTimeout(long aRetryTimeout)
+	{
+		retryTimeout = aRetryTimeout;
+	}
+
+	public long getRetryTimeout()
+	{
+		return retryTimeout;
+	}
+
+	/**
+	 * Set the time in milliseconds to wait before the first retry and the maximal time to wait
+	 * between two retries. Default: 50 and 5000.
+	 */
+	public void setBackoff(long aInitialBackoff, long aMaxBackoff)
+	{
+		initialBackoff = aInitialBackoff;
+		maxBackoff = aMaxBackoff;
+	}
+
+	/**
+	 * Get the number of retries done while trying to read keys.
+	 */
+	public long getRetryCount()
+	{
+		return retryCount.get();
+	}
+
+	/**
+	 * Get the number of reads which failed immediately because the key did not exist.
+	 */
+	public long getFailFastCount()
+	{
+		return failFastCount.get();
+	}
+
+	/**
+	 * Get the number of reads which failed because the retry timeout expired.
+	 */
+	public long getTimeoutCount()
+	{
+		return timeoutCount.get();
+	}
+
+	/**
+	 * Enable or disable the persistent {@link ContextIndex}. If the index is disabled, the storage
+	 * root is scanned whenever contexts are looked up. Default: enabled.
+	 */
+	public void setIndexEnabled(boolean aIndexEnabled)
+	{
+		indexEnabled = aIndexEnabled;
+	}
+
+	public boolean isIndexEnabled()
+	{
+		return indexEnabled;
+	}
+
+	/**
+	 * Set the minimum time in milliseconds between two checks of all indexed contexts against
+	 * the storage. Contexts which have been deleted by hand are removed from the index by these
+	 * checks. In between, listed contexts are not checked, except for the contexts returned by
+	 * {@link #getLatestContext(String, Map)}. Default: 60000.
+	 */
+	public void setIndexVerifyInterval(long aIndexVerifyInterval)
+	{
+		indexVerifyInterval = aIndexVerifyInterval;
+	}
+
+	public long getIndexVerifyInterval()
+	{
+		return indexVerifyInterval;
+	}
+
+	/**
+	 * Rebuild the context index by scanning the storage root. This is only necessary if contexts
+	 * have been added or removed without going through a storage service.
+	 */
+	public void rebuildIndex()
+	{
+		ContextIndex idx = getIndex();
+		if (idx != null) {
+			idx.rebuild();
+		}
+	}
+
+	/**
+	 * Get the context index or {@code null} if the index is disabled.
+	 */
+	protected synchronized ContextIndex getIndex()
+	{
+		if (!indexEnabled || storageRoot == null) {
+			return null;
+		}
+
+		if (index == null) {
+			index = new ContextIndex(storageRoot);
+		}
+		return index;
+	}
+
 	@Override
 	public void delete(String aContextId)
 	{
@@ -80,17 +272,30 @@ public class FileSystemStorageService
 		catch (IOException e) {
 			throw new DataAccessResourceFailureException(e.getMessage(), e);
 		}
+
+		ContextIndex idx = getIndex();
+		if (idx != null) {
+			idx.remove(aContextId);
+		}
 	}
 
 	@Override
 	public void delete(String aContextId, String aKey)
 	{
 		try {
-			FileUtils.deleteDirectory(new File(getContextFolder(aContextId, false), aKey));
+			FileUtils.forceDelete(new File(getContextFolder(aContextId, false), aKey));
+		}
+		catch (FileNotFoundException e) {
+			// Nothing to delete
 		}
 		catch (IOException e) {
 			throw new DataAccessResourceFailureException(e.getMessage(), e);
 		}
+
+		ContextIndex idx = getIndex();
+		if (idx != null) {
+			idx.remove(aContextId, aKey);
+		}
 	}
 
 	@Override
@@ -102,6 +307,11 @@ public class FileSystemStorageService
 	@Override
 	public List<TaskContextMetadata> getContexts()
 	{
+		ContextIndex idx = getIndex();
+		if (idx != null) {
+			return sortByEnd(verifyPeriodically(idx, idx.getContexts()));
+		}
+
 		List<TaskContextMetadata> contexts = new ArrayList<TaskContextMetadata>();
 		for (File child : storageRoot.listFiles()) {
 			if (new File(child, METADATA_KEY).exists()) {
@@ -110,21 +320,17 @@ public class FileSystemStorageService
 			}
 		}
 
-		Collections.sort(contexts, new Comparator<TaskContextMetadata>()
-		{
-			@Override
-			public int compare(TaskContextMetadata aO1, TaskContextMetadata aO2)
-			{
-				return Long.signum(aO2.getEnd() - aO1.getEnd());
-			}
-		});
-
-		return contexts;
+		return sortByEnd(contexts);
 	}
 
 	@Override
 	public List<TaskContextMetadata> getContexts(String aTaskType, Map<String, String> aConstraints)
 	{
+		ContextIndex idx = getIndex();
+		if (idx != null) {
+			return sortByEnd(verifyPeriodically(idx, idx.getContexts(aTaskType, aConstraints)));
+		}
+
 		List<TaskContextMetadata> contexts = new ArrayList<TaskContextMetadata>();
 
 		nextContext: for (TaskContextMetadata e : getContexts()) {
@@ -146,7 +352,51 @@ public class FileSystemStorageService
 			contexts.add(e);
 		}
 
-		Collections.sort(contexts, new Comparator<TaskContextMetadata>()
+		return sortByEnd(contexts);
+	}
+
+	/**
+	 * Drop contexts from the list which are no longer present in the storage, e.g. because they
+	 * have been deleted by hand. These are also removed from the index. Checking every context
+	 * costs a file system access per context, so this is done at most once per
+	 * {@link #setIndexVerifyInterval(long) verify interval}.
+	 */
+	private List<TaskContextMetadata> verifyPeriodically(ContextIndex aIndex,
+			List<TaskContextMetadata> aContexts)
+	{
+		long now = System.currentTimeMillis();
+		if (now - indexVerified < indexVerifyInterval) {
+			return aContexts;
+		}
+
+		List<TaskContextMetadata> contexts = new ArrayList<TaskContextMetadata>(aContexts.size());
+		for (TaskContextMetadata e : aContexts) {
+			if (verify(aIndex, e)) {
+				contexts.add(e);
+			}
+		}
+		indexVerified = now;
+		return contexts;
+	}
+
+	/**
+	 * Check if the given indexed context is still present in the storage and remove it from the
+	 * index if it is not.
+	 */
+	private boolean verify(ContextIndex aIndex, TaskContextMetadata aContext)
+	{
+		if (containsKey(aContext.getId(), METADATA_KEY)) {
+			return true;
+		}
+
+		log.debug("Removing stale context [" + aContext.getId() + "] from index");
+		aIndex.remove(aContext.getId());
+		return false;
+	}
+
+	protected static List<TaskContextMetadata> sortByEnd(List<TaskContextMetadata> aContexts)
+	{
+		Collections.sort(aContexts, new Comparator<TaskContextMetadata>()
 		{
 			@Override
 			public int compare(TaskContextMetadata aO1, TaskContextMetadata aO2)
@@ -154,13 +404,23 @@ public class FileSystemStorageService
 				return Long.signum(aO2.getEnd() - aO1.getEnd());
 			}
 		});
-
-		return contexts;
+		return aContexts;
 	}
 
 	@Override
 	public TaskContextMetadata getLatestContext(String aTaskType, Map<String, String> aConstraints)
 	{
+		ContextIndex idx = getIndex();
+		if (idx != null) {
+			// Only check the contexts up to the one actually returned
+			for (TaskContextMetadata e : sortByEnd(idx.getContexts(aTaskType, aConstraints))) {
+				if (verify(idx, e)) {
+					return e;
+				}
+			}
+			throw ImportUtil.createContextNotFoundException(aTaskType, aConstraints);
+		}
+
 		List<TaskContextMetadata> contexts = getContexts(aTaskType, aConstraints);
 
 		if (contexts.size() == 0) {
@@ -182,51 +442,166 @@ public class FileSystemStorageService
 		return new File(getContextFolder(aContextId, false), aKey).exists();
 	}
 
+	/**
+	 * Read the given key. If the key cannot be read, e.g. because a concurrent writer is just
+	 * replacing it, the read is retried until the {@link #setRetryTimeout(long) retry timeout}
+	 * expires. Between retries, the service waits for a change in the folder containing the key,
+	 * but at most for the current backoff time which doubles with every retry. In
+	 * {@link #setFailFast(boolean) fail-fast} mode, a key which does not exist and is not being
+	 * written is not retried at all.
+	 */
 	@Override
 	public <T extends StreamReader> T retrieveBinary(String aContextId, String aKey, T aConsumer)
 	{
-		InputStream is = null;
+		File file = new File(getContextFolder(aContextId, true), aKey);
+		long deadline = System.currentTimeMillis() + retryTimeout;
+		long backoff = initialBackoff;
 		int currentTry = 1;
 		IOException lastException = null;
+		WatchService watcher = null;
 
-		while (currentTry <= MAX_RETRIES) {
-			try {
-				is = new FileInputStream(new File(getContextFolder(aContextId, true), aKey));
-				if (aKey.endsWith(".gz")) {
-					is = new GZIPInputStream(is);
+		try {
+			while (true) {
+				InputStream is = null;
+				try {
+					is = new FileInputStream(file);
+					CompressionCodec codec = codecRegistry.getCodec(aKey);
+					if (codec != null) {
+						is = codec.decompress(is);
+					}
+					aConsumer.read(is);
+					return aConsumer;
+				}
+				catch (IOException e) {
+					// https://code.google.com/p/dkpro-lab/issues/detail?id=64
+					// may be related to a concurrent access so try again after some time
+					lastException = e;
+				}
+				catch (Throwable e) {
+					throw new DataAccessResourceFailureException("Unable to load [" + aKey
+					        + "] from context [" + aContextId + "]", e);
+				}
+				finally {
+					Util.close(is);
+				}
+
+				// If the key does not exist and nobody is writing it, waiting is pointless
+				if (failFast && !isPresentOrBeingWritten(file)) {
+					failFastCount.incrementAndGet();
+					throw new DataAccessResourceFailureException("Key [" + aKey
+					        + "] does not exist in context [" + aContextId + "]", lastException);
+				}
+
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					timeoutCount.incrementAndGet();
+					break;
 				}
-				aConsumer.read(is);
-				return aConsumer;
-			}
-			catch (IOException e) {
-				// https://code.google.com/p/dkpro-lab/issues/detail?id=64
-				// may be related to a concurrent access so try again after some time
-				lastException = e;
 
 				currentTry++;
+				retryCount.incrementAndGet();
 				log.debug(currentTry + ". try accessing " + aKey + " in context " + aContextId);
 
 				try {
-					Thread.sleep(SLEEP_TIME);
+					if (watcher == null) {
+						watcher = watch(file.getParentFile());
+					}
+					awaitChange(watcher, Math.min(backoff, remaining));
 				}
-				catch (InterruptedException e1) {
+				catch (InterruptedException e) {
 					// we should probably abort the whole thing
-					currentTry = MAX_RETRIES;
+					Thread.currentThread().interrupt();
+					break;
 				}
+				backoff = Math.min(backoff * 2, maxBackoff);
 			}
-			catch (Throwable e) {
-				throw new DataAccessResourceFailureException("Unable to load [" + aKey
-				        + "] from context [" + aContextId + "]", e);
-			}
-			finally {
-				Util.close(is);
-			}
+		}
+		finally {
+			Util.close(watcher);
 		}
 
 		throw new DataAccessResourceFailureException("Unable to access [" + aKey + "] in context ["
 		        + aContextId + "]", lastException);
 	}
 
+	@Override
+	public ByteBuffer retrieveMapped(String aContextId, String aKey)
+	{
+		File file = new File(getContextFolder(aContextId, false), aKey);
+		long length = file.length();
+		if (length > Integer.MAX_VALUE) {
+			throw new DataAccessResourceFailureException("[" + aKey + "] in context ["
+					+ aContextId + "] is too large to be mapped at once (" + length
+					+ " bytes). Map it in regions instead.");
+		}
+		return retrieveMapped(aContextId, aKey, 0, length);
+	}
+
+	@Override
+	public ByteBuffer retrieveMapped(String aContextId, String aKey, long aOffset, long aLength)
+	{
+		if (codecRegistry.getCodec(aKey) != null) {
+			throw new DataAccessResourceFailureException("Compressed key [" + aKey
+					+ "] in context [" + aContextId + "] cannot be mapped");
+		}
+
+		File file = new File(getContextFolder(aContextId, false), aKey);
+		FileChannel channel = null;
+		try {
+			// The mapping stays valid after the channel has been closed
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			return channel.map(MapMode.READ_ONLY, aOffset, aLength);
+		}
+		catch (IOException e) {
+			throw new DataAccessResourceFailureException("Unable to map [" + aKey
+					+ "] in context [" + aContextId + "]", e);
+		}
+		finally {
+			Util.close(channel);
+		}
+	}
+
+	/**
+	 * Check if the given file or its temporary file exists. A writer first deletes the file and
+	 * then renames the temporary file to it, so the temporary file is checked first: if the rename
+	 * happens between both checks, the file itself is found.
+	 */
+	private static boolean isPresentOrBeingWritten(File aFile)
+	{
+		return new File(aFile.getPath() + ".tmp").exists() || aFile.exists();
+	}
+
+	private WatchService watch(File aFolder)
+	{
+		WatchService watcher = null;
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+			aFolder.toPath().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+			return watcher;
+		}
+		catch (IOException | UnsupportedOperationException e) {
+			// Fall back to plain waiting
+			log.debug("Unable to watch [" + aFolder + "]: " + e.getMessage());
+			Util.close(watcher);
+			return null;
+		}
+	}
+
+	private static void awaitChange(WatchService aWatcher, long aTimeout)
+		throws InterruptedException
+	{
+		if (aWatcher == null) {
+			Thread.sleep(aTimeout);
+			return;
+		}
+
+		WatchKey key = aWatcher.poll(aTimeout, TimeUnit.MILLISECONDS);
+		if (key != null) {
+			key.pollEvents();
+			key.reset();
+		}
+	}
+
 	@Override
 	public void storeBinary(String aContextId, String aKey, StreamWriter aProducer)
 	{
@@ -239,8 +614,9 @@ public class FileSystemStorageService
 			tmpFile.getParentFile().mkdirs(); // Necessary if the key addresses a sub-directory
 			log.debug("Storing to: " + finalFile);
 			os = new FileOutputStream(tmpFile);
-			if (aKey.endsWith(".gz")) {
-				os = new GZIPOutputStream(os);
+			CompressionCodec codec = codecRegistry.getCodec(aKey);
+			if (codec != null) {
+				os = codec.compress(os);
 			}
 			aProducer.write(os);
 		}
@@ -269,6 +645,26 @@ public class FileSystemStorageService
 			throw new DataAccessResourceFailureException("Unable to rename [" + tmpFile + "] to ["
 			        + finalFile + "]");
 		}
+
+		ContextIndex idx = getIndex();
+		if (idx != null && ContextIndex.isIndexed(aKey)) {
+			// Read back what has actually been written rather than going through retrieveBinary
+			// which may be overridden, e.g. to cache the data.
+			PropertiesAdapter props = new PropertiesAdapter();
+			InputStream is = null;
+			try {
+				is = new FileInputStream(finalFile);
+				props.read(is);
+			}
+			catch (IOException e) {
+				throw new DataAccessResourceFailureException("Unable to index [" + aKey
+						+ "] in context [" + aContextId + "]", e);
+			}
+			finally {
+				Util.close(is);
+			}
+			idx.put(aContextId, aKey, props.getMap());
+		}
 	}
 
 	@Override
@@ -335,6 +731,9 @@ public class FileSystemStorageService
 					        + "] was requested. Linking to current context");
 					Util.copy(source, target, true);
 				}
+				else if (copyStrategy == CopyStrategy.COPY_ON_WRITE) {
+					copyOnWrite(source, target, aKey);
+				}
 				else {
 					log.info("Write access to imported storage folder [" + aKey
 					        + "] was requested. Copying to current context");
@@ -350,7 +749,29 @@ public class FileSystemStorageService
 		}
 	}
 
-	private File getContextFolder(String aContextId, boolean create)
+	private void copyOnWrite(File aSource, File aTarget, String aKey)
+		throws IOException
+	{
+		if (Util.cloneTree(aSource, aTarget)) {
+			log.info("Write access to imported storage folder [" + aKey
+			        + "] was requested. Cloned to current context");
+			return;
+		}
+
+		// Hard links are no option here: files in a folder obtained for writing can be
+		// modified in place without going through the storage service
+		log.info("Write access to imported storage folder [" + aKey
+		        + "] was requested. Copying to current context");
+		Util.copy(aSource, aTarget, false);
+	}
+
+	@Override
+	public void unshare(String aContextId, String aKey)
+	{
+		// Data is never shared between contexts
+	}
+
+	protected File getContextFolder(String aContextId, boolean create)
 	{
 		File folder = new File(getStorageRoot(), aContextId);
 		if (create) {
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import org.dkpro.lab.storage.CompressionCodec;
+
+/**
+ * Selects the {@link CompressionCodec} for a storage key. Codecs registered for a key pattern take
+ * precedence over codecs registered for a key suffix. Patterns are tried in the order in which
+ * they were registered. By default, only the suffix {@code .gz} is registered for the
+ * {@link GzipCodec}. The following suffixes are only registered when
+ * {@link #setExtendedSuffixes(boolean) enabled}, because keys with these suffixes may already
+ * hold raw files written before the codecs existed:
+ * <ul>
+ * <li>{@code .lz4} - {@link Lz4Codec}</li>
+ * <li>{@code .sz} - {@link SnappyCodec}</li>
+ * <li>{@code .zst} - {@link ZstdCodec} (only if zstd-jni is available)</li>
+ * </ul>
+ */
+public class CodecRegistry
+{
+	private final Map<Pattern, CompressionCodec> patternCodecs;
+	private final Map<String, CompressionCodec> suffixCodecs;
+
+	public CodecRegistry()
+	{
+		patternCodecs = new LinkedHashMap<Pattern, CompressionCodec>();
+		suffixCodecs = new LinkedHashMap<String, CompressionCodec>();
+
+		registerSuffix(".gz", new GzipCodec());
+	}
+
+	/**
+	 * Register or remove the codecs for the suffixes {@code .lz4}, {@code .sz} and {@code .zst}.
+	 * Default: {@code false}.
+	 */
+	public void setExtendedSuffixes(boolean aEnabled)
+	{
+		registerSuffix(".lz4", aEnabled ? new Lz4Codec() : null);
+		registerSuffix(".sz", aEnabled ? new SnappyCodec() : null);
+		registerSuffix(".zst", aEnabled && ZstdCodec.isAvailable() ? new ZstdCodec() : null);
+	}
+
+	/**
+	 * Use the given codec for all keys ending in the given suffix. Passing {@code null} as codec
+	 * removes the registration.
+	 */
+	public synchronized void registerSuffix(String aSuffix, CompressionCodec aCodec)
+	{
+		if (aCodec == null) {
+			suffixCodecs.remove(aSuffix);
+		}
+		else {
+			suffixCodecs.put(aSuffix, aCodec);
+		}
+	}
+
+	/**
+	 * Use the given codec for all keys fully matching the given regular expression.
+	 */
+	public synchronized void registerPattern(String aPattern, CompressionCodec aCodec)
+	{
+		patternCodecs.put(Pattern.compile(aPattern), aCodec);
+	}
+
+	/**
+	 * Register additional suffix codecs, e.g. from a Spring configuration.
+	 */
+	public void setSuffixCodecs(Map<String, CompressionCodec> aCodecs)
+	{
+		for (Entry<String, CompressionCodec> e : aCodecs.entrySet()) {
+			registerSuffix(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Register additional pattern codecs, e.g. from a Spring configuration.
+	 */
+	public void setPatternCodecs(Map<String, CompressionCodec> aCodecs)
+	{
+		for (Entry<String, CompressionCodec> e : aCodecs.entrySet()) {
+			registerPattern(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Get the codec for the given key.
+	 *
+	 * @return the codec or {@code null} if the key is not compressed.
+	 */
+	public synchronized CompressionCodec getCodec(String aKey)
+	{
+		for (Entry<Pattern, CompressionCodec> e : patternCodecs.entrySet()) {
+			if (e.getKey().matcher(aKey).matches()) {
+				return e.getValue();
+			}
+		}
+
+		for (Entry<String, CompressionCodec> e : suffixCodecs.entrySet()) {
+			if (aKey.endsWith(e.getKey())) {
+				return e.getValue();
+			}
+		}
+
+		return null;
+	}
+}
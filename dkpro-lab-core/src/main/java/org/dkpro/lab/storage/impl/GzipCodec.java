@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.dkpro.lab.storage.CompressionCodec;
+
+/**
+ * GZIP compression. If more than one thread is configured, data is compressed in blocks in
+ * parallel using a {@link ParallelGzipOutputStream}. All streams created by the codec share a
+ * pool with the configured number of threads.
+ */
+public class GzipCodec
+	implements CompressionCodec
+{
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private int threads = 1;
+	private int blockSize = ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE;
+	private ExecutorService executor;
+
+	public GzipCodec()
+	{
+		// Default settings
+	}
+
+	public GzipCodec(int aLevel, int aThreads)
+	{
+		setLevel(aLevel);
+		setThreads(aThreads);
+	}
+
+	/**
+	 * Set the compression level from 1 (fastest) to 9 (best compression).
+	 */
+	public void setLevel(int aLevel)
+	{
+		level = aLevel;
+	}
+
+	public int getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * Set the number of threads used to compress data. Default: 1.
+	 */
+	public synchronized void setThreads(int aThreads)
+	{
+		threads = aThreads;
+		// The pool is created again with the new size when it is needed
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	/**
+	 * Set the size of the blocks compressed in parallel if multiple threads are used.
+	 */
+	public void setBlockSize(int aBlockSize)
+	{
+		blockSize = aBlockSize;
+	}
+
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	@Override
+	public OutputStream compress(OutputStream aStream)
+		throws IOException
+	{
+		if (threads > 1) {
+			return new ParallelGzipOutputStream(aStream, level, getExecutor(), threads,
+					blockSize);
+		}
+
+		return new LevelGzipOutputStream(aStream, level);
+	}
+
+	@Override
+	public InputStream decompress(InputStream aStream)
+		throws IOException
+	{
+		// Also reads the multi-member streams written by ParallelGzipOutputStream
+		return new GZIPInputStream(aStream, 65536);
+	}
+
+	private synchronized ExecutorService getExecutor()
+	{
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+				@Override
+				public Thread newThread(Runnable aRunnable)
+				{
+					// Do not keep the JVM alive for compressing
+					Thread thread = delegate.newThread(aRunnable);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * {@link GZIPOutputStream} with a configurable compression level.
+	 */
+	static class LevelGzipOutputStream
+		extends GZIPOutputStream
+	{
+		public LevelGzipOutputStream(OutputStream aStream, int aLevel)
+			throws IOException
+		{
+			super(aStream, 65536);
+			def.setLevel(aLevel);
+		}
+	}
+}
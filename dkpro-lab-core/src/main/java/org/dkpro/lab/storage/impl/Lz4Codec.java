@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.dkpro.lab.storage.CompressionCodec;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream.BLOCKSIZE;
+import net.jpountz.lz4.LZ4FrameOutputStream.FLG;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * LZ4 compression using the LZ4 frame format. A native implementation is used if available,
+ * otherwise a pure Java implementation.
+ */
+public class Lz4Codec
+	implements CompressionCodec
+{
+	private int level = 0;
+
+	/**
+	 * Set the compression level. Level 0 uses the fast compressor, levels 1 (fastest) to 17
+	 * (best compression) use the high compression compressor. Default: 0.
+	 */
+	public void setLevel(int aLevel)
+	{
+		level = aLevel;
+	}
+
+	public int getLevel()
+	{
+		return level;
+	}
+
+	@Override
+	public OutputStream compress(OutputStream aStream)
+		throws IOException
+	{
+		LZ4Factory factory = LZ4Factory.fastestInstance();
+		LZ4Compressor compressor = level > 0 ? factory.highCompressor(level)
+				: factory.fastCompressor();
+		return new LZ4FrameOutputStream(aStream, BLOCKSIZE.SIZE_4MB, -1L, compressor,
+				XXHashFactory.fastestInstance().hash32(), FLG.Bits.BLOCK_INDEPENDENCE);
+	}
+
+	@Override
+	public InputStream decompress(InputStream aStream)
+		throws IOException
+	{
+		return new LZ4FrameInputStream(aStream);
+	}
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Output stream compressing data in blocks on multiple threads. Every block is written as a
+ * separate GZIP member. The concatenated members form a valid GZIP stream which can be read
+ * using a {@link java.util.zip.GZIPInputStream}.
+ * <p>
+ * The blocks are compressed by an executor which may be shared by several streams. Flushing the
+ * stream only writes full blocks, so flushing does not produce small members. The last block is
+ * written when the stream is closed.
+ */
+public class ParallelGzipOutputStream
+	extends OutputStream
+{
+	public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+	private final OutputStream out;
+	private final int level;
+	private final int maxPending;
+	private final Executor executor;
+	private final Queue<Future<byte[]>> pending;
+
+	private byte[] block;
+	private int blockFill;
+	private boolean closed = false;
+
+	/**
+	 * @param aStream
+	 *            the stream receiving the compressed data.
+	 * @param aLevel
+	 *            the compression level.
+	 * @param aExecutor
+	 *            the executor compressing the blocks.
+	 * @param aThreads
+	 *            the number of blocks to compress concurrently.
+	 * @param aBlockSize
+	 *            the size of the uncompressed blocks.
+	 */
+	public ParallelGzipOutputStream(OutputStream aStream, int aLevel, Executor aExecutor,
+			int aThreads, int aBlockSize)
+	{
+		out = aStream;
+		level = aLevel;
+		maxPending = aThreads * 2;
+		executor = aExecutor;
+		pending = new LinkedList<Future<byte[]>>();
+		block = new byte[aBlockSize];
+	}
+
+	@Override
+	public void write(int aByte)
+		throws IOException
+	{
+		block[blockFill++] = (byte) aByte;
+		if (blockFill == block.length) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] aData, int aOffset, int aLength)
+		throws IOException
+	{
+		int offset = aOffset;
+		int remaining = aLength;
+		while (remaining > 0) {
+			int n = Math.min(remaining, block.length - blockFill);
+			System.arraycopy(aData, offset, block, blockFill, n);
+			blockFill += n;
+			offset += n;
+			remaining -= n;
+			if (blockFill == block.length) {
+				submitBlock();
+			}
+		}
+	}
+
+	/**
+	 * Write all full blocks. A partially filled block is kept until it is full or the stream is
+	 * closed.
+	 */
+	@Override
+	public void flush()
+		throws IOException
+	{
+		while (!pending.isEmpty()) {
+			writeNext();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			if (blockFill > 0) {
+				submitBlock();
+			}
+			flush();
+		}
+		finally {
+			// Blocks not written due to an error are not needed any more
+			for (Future<byte[]> f : pending) {
+				f.cancel(true);
+			}
+			pending.clear();
+			out.close();
+		}
+	}
+
+	private void submitBlock()
+		throws IOException
+	{
+		final byte[] data = block;
+		final int length = blockFill;
+		FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>()
+		{
+			@Override
+			public byte[] call()
+				throws Exception
+			{
+				ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 2);
+				OutputStream gz = new GzipCodec.LevelGzipOutputStream(bos, level);
+				gz.write(data, 0, length);
+				gz.close();
+				return bos.toByteArray();
+			}
+		});
+		executor.execute(task);
+		pending.add(task);
+		block = new byte[block.length];
+		blockFill = 0;
+
+		// Bound the memory used by blocks waiting to be written
+		while (pending.size() >= maxPending) {
+			writeNext();
+		}
+	}
+
+	private void writeNext()
+		throws IOException
+	{
+		try {
+			out.write(pending.poll().get());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing", e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException("Unable to compress block", e.getCause());
+		}
+	}
+}
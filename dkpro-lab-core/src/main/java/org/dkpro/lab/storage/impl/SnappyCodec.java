@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.dkpro.lab.storage.CompressionCodec;
+
+import io.airlift.compress.snappy.SnappyFramedInputStream;
+import io.airlift.compress.snappy.SnappyFramedOutputStream;
+
+/**
+ * Snappy compression using the Snappy framing format. This is a pure Java implementation.
+ */
+public class SnappyCodec
+	implements CompressionCodec
+{
+	@Override
+	public OutputStream compress(OutputStream aStream)
+		throws IOException
+	{
+		return new SnappyFramedOutputStream(aStream);
+	}
+
+	@Override
+	public InputStream decompress(InputStream aStream)
+		throws IOException
+	{
+		return new SnappyFramedInputStream(aStream);
+	}
+}
@@ -0,0 +1,658 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.Util;
+import org.dkpro.lab.storage.StorageService;
+import org.dkpro.lab.storage.StreamReader;
+import org.dkpro.lab.storage.StreamWriter;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Storage service decorator which performs writes asynchronously on a small pool of I/O threads.
+ * The data to be written is captured when {@link #storeBinary} is called, so the caller may
+ * modify its objects afterwards.
+ * <p>
+ * Writes to the same key are performed in the order in which they were issued. Reading a key
+ * with a pending write returns the pending data. All pending writes of a context are flushed
+ * before its {@link TaskContextMetadata#METADATA_KEY metadata} is stored, so a context which
+ * appears complete has all its data on disk. Operations which expose the underlying storage,
+ * e.g. {@link #locateKey(String, String)}, flush the context first as well.
+ * <p>
+ * Only data up to the {@link #setMaxBufferedSize(int) maximum buffered size} is written
+ * asynchronously, so pending writes occupy at most the number of pending writes times this size
+ * in memory. Larger data is written synchronously after the pending writes of its context have
+ * been flushed.
+ * <p>
+ * If a write fails, the error is reported by the next flush of the affected context. If the
+ * context is deleted before, the error is reported by the deletion.
+ */
+public class WriteBehindStorageService
+	implements StorageService
+{
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final StorageService delegate;
+	private final ExecutorService[] executors;
+	private final Semaphore capacity;
+	private final int maxPendingWrites;
+	private int maxBufferedSize = 1024 * 1024;
+
+	private final Map<String, PendingWrite> pending = new ConcurrentHashMap<String, PendingWrite>();
+	private final Map<String, Throwable> failures = new ConcurrentHashMap<String, Throwable>();
+
+	public WriteBehindStorageService(StorageService aDelegate)
+	{
+		this(aDelegate, 2, 64);
+	}
+
+	/**
+	 * @param aDelegate the storage service performing the actual writes.
+	 * @param aThreads the number of I/O threads.
+	 * @param aMaxPendingWrites the number of writes which may be queued before callers of
+	 *            {@link #storeBinary} are blocked.
+	 */
+	public WriteBehindStorageService(StorageService aDelegate, int aThreads,
+			int aMaxPendingWrites)
+	{
+		delegate = aDelegate;
+		maxPendingWrites = aMaxPendingWrites;
+		capacity = new Semaphore(aMaxPendingWrites);
+
+		// Each key is always written by the same single-threaded executor, which keeps the
+		// writes to the key in order.
+		executors = new ExecutorService[aThreads];
+		final AtomicInteger threadCount = new AtomicInteger();
+		ThreadFactory threadFactory = new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable aRunnable)
+			{
+				Thread thread = new Thread(aRunnable, "storage-writer-"
+						+ threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		for (int i = 0; i < aThreads; i++) {
+			executors[i] = Executors.newSingleThreadExecutor(threadFactory);
+		}
+	}
+
+	public StorageService getDelegate()
+	{
+		return delegate;
+	}
+
+	/**
+	 * Set the maximum size in bytes of data which is buffered in memory and written
+	 * asynchronously. Default: 1 MB.
+	 */
+	public void setMaxBufferedSize(int aMaxBufferedSize)
+	{
+		maxBufferedSize = aMaxBufferedSize;
+	}
+
+	public int getMaxBufferedSize()
+	{
+		return maxBufferedSize;
+	}
+
+	/**
+	 * Get the number of writes which have been queued but not completed yet.
+	 */
+	public int getPendingWriteCount()
+	{
+		return maxPendingWrites - capacity.availablePermits();
+	}
+
+	/**
+	 * Wait until all pending writes are completed.
+	 */
+	public void flush()
+	{
+		for (String contextId : getPendingContexts()) {
+			flush(contextId);
+		}
+	}
+
+	/**
+	 * Wait until all pending writes of the given context are completed.
+	 *
+	 * @throws DataAccessResourceFailureException if a write to the context failed.
+	 */
+	public void flush(String aContextId)
+	{
+		awaitPending(aContextId);
+
+		Throwable failure = failures.remove(aContextId);
+		if (failure != null) {
+			throw new DataAccessResourceFailureException("Unable to write to context ["
+					+ aContextId + "]", failure);
+		}
+	}
+
+	/**
+	 * Wait until all pending writes of the given context are completed. Failures are kept for
+	 * the next flush.
+	 */
+	private void awaitPending(String aContextId)
+	{
+		String prefix = pendingKey(aContextId, "");
+		for (Entry<String, PendingWrite> e : pending.entrySet()) {
+			if (e.getKey().startsWith(prefix)) {
+				PendingWrite write = e.getValue();
+				Future<?> future;
+				synchronized (write) {
+					future = write.future;
+				}
+				try {
+					future.get();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new DataAccessResourceFailureException("Interrupted while flushing "
+							+ "context [" + aContextId + "]", ex);
+				}
+				catch (ExecutionException ex) {
+					// Recorded as failure by the write itself
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flush all pending writes and stop the I/O threads.
+	 */
+	public void shutdown()
+	{
+		try {
+			flush();
+		}
+		finally {
+			for (ExecutorService executor : executors) {
+				executor.shutdown();
+			}
+			for (ExecutorService executor : executors) {
+				try {
+					executor.awaitTermination(1, TimeUnit.MINUTES);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean containsContext(String aContextId)
+	{
+		String prefix = pendingKey(aContextId, "");
+		for (String key : pending.keySet()) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return delegate.containsContext(aContextId);
+	}
+
+	@Override
+	public boolean containsKey(String aContextId, String aKey)
+	{
+		return pending.containsKey(pendingKey(aContextId, aKey))
+				|| delegate.containsKey(aContextId, aKey);
+	}
+
+	@Override
+	public TaskContextMetadata getContext(String aContextId)
+	{
+		return delegate.getContext(aContextId);
+	}
+
+	@Override
+	public TaskContextMetadata getLatestContext(String aTaskType, Map<String, String> aConstraints)
+	{
+		return delegate.getLatestContext(aTaskType, aConstraints);
+	}
+
+	@Override
+	public List<TaskContextMetadata> getContexts()
+	{
+		return delegate.getContexts();
+	}
+
+	@Override
+	public List<TaskContextMetadata> getContexts(String aTaskType,
+			Map<String, String> aConstraints)
+	{
+		return delegate.getContexts(aTaskType, aConstraints);
+	}
+
+	@Override
+	public void delete(String aContextId)
+	{
+		awaitPending(aContextId);
+		delegate.delete(aContextId);
+
+		// Nobody can flush the context any more, so report failed writes now
+		Throwable failure = failures.remove(aContextId);
+		if (failure != null) {
+			throw new DataAccessResourceFailureException("Unable to write to context ["
+					+ aContextId + "] before it was deleted", failure);
+		}
+	}
+
+	@Override
+	public void delete(String aContextId, String aKey)
+	{
+		// Failed writes to the context are reported by the next flush
+		awaitPending(aContextId);
+		delegate.delete(aContextId, aKey);
+	}
+
+	@Override
+	public void copy(String aTargetContextId, String aTargetKey, StorageKey aSourceKey,
+			AccessMode aMode)
+	{
+		flush(aSourceKey.contextId);
+		flush(aTargetContextId);
+		delegate.copy(aTargetContextId, aTargetKey, aSourceKey, aMode);
+	}
+
+	@Override
+	public void unshare(String aContextId, String aKey)
+	{
+		flush(aContextId);
+		delegate.unshare(aContextId, aKey);
+	}
+
+	@Deprecated
+	@Override
+	public File getStorageFolder(String aContextId, String aKey)
+	{
+		flush(aContextId);
+		return delegate.getStorageFolder(aContextId, aKey);
+	}
+
+	@Override
+	public File locateKey(String aContextId, String aKey)
+	{
+		flush(aContextId);
+		return delegate.locateKey(aContextId, aKey);
+	}
+
+	@Override
+	public <T extends StreamReader> T retrieveBinary(String aContextId, String aKey, T aConsumer)
+	{
+		PendingWrite write = pending.get(pendingKey(aContextId, aKey));
+		if (write == null) {
+			return delegate.retrieveBinary(aContextId, aKey, aConsumer);
+		}
+
+		try {
+			aConsumer.read(new ByteArrayInputStream(write.data));
+			return aConsumer;
+		}
+		catch (Exception e) {
+			throw new DataAccessResourceFailureException("Unable to load [" + aKey
+					+ "] from context [" + aContextId + "]", e);
+		}
+	}
+
+	@Override
+	public ByteBuffer retrieveMapped(String aContextId, String aKey)
+	{
+		flush(aContextId);
+		return delegate.retrieveMapped(aContextId, aKey);
+	}
+
+	@Override
+	public ByteBuffer retrieveMapped(String aContextId, String aKey, long aOffset, long aLength)
+	{
+		flush(aContextId);
+		return delegate.retrieveMapped(aContextId, aKey, aOffset, aLength);
+	}
+
+	@Override
+	public void storeBinary(String aContextId, String aKey, InputStream aStream)
+	{
+		byte[] buffer = new byte[maxBufferedSize + 1];
+		int length = 0;
+		try {
+			int read;
+			while (length < buffer.length
+					&& (read = aStream.read(buffer, length, buffer.length - length)) != -1) {
+				length += read;
+			}
+		}
+		catch (IOException e) {
+			Util.close(aStream);
+			throw new DataAccessResourceFailureException(e.getMessage(), e);
+		}
+
+		if (length > maxBufferedSize) {
+			// Too large to be kept in memory, write the data synchronously
+			flush(aContextId);
+			delegate.storeBinary(aContextId, aKey, new SequenceInputStream(
+					new ByteArrayInputStream(buffer, 0, length), aStream));
+			return;
+		}
+
+		Util.close(aStream);
+		store(aContextId, aKey, Arrays.copyOf(buffer, length));
+	}
+
+	@Override
+	public void storeBinary(String aContextId, String aKey, StreamWriter aStreamProducer)
+	{
+		if (TaskContextMetadata.METADATA_KEY.equals(aKey)) {
+			// The metadata marks the context as complete, so everything else must be written
+			// before it.
+			flush(aContextId);
+			delegate.storeBinary(aContextId, aKey, aStreamProducer);
+			return;
+		}
+
+		BufferOutputStream buffer = new BufferOutputStream(aContextId, aKey);
+		try {
+			aStreamProducer.write(buffer);
+		}
+		catch (Exception e) {
+			// If the delegate failed, the producer failed because it could not write any more
+			Throwable cause = buffer.abort();
+			if (cause == null) {
+				cause = e;
+			}
+			throw new DataAccessResourceFailureException(cause.getMessage(), cause);
+		}
+
+		if (buffer.isSynchronous()) {
+			buffer.finish();
+		}
+		else {
+			store(aContextId, aKey, buffer.toByteArray());
+		}
+	}
+
+	private void store(final String aContextId, final String aKey, byte[] aData)
+	{
+		if (TaskContextMetadata.METADATA_KEY.equals(aKey)) {
+			flush(aContextId);
+			delegate.storeBinary(aContextId, aKey, new ByteArrayInputStream(aData));
+			return;
+		}
+
+		try {
+			capacity.acquire();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException("Interrupted while storing [" + aKey
+					+ "] in context [" + aContextId + "]", e);
+		}
+
+		final String key = pendingKey(aContextId, aKey);
+		final PendingWrite write = new PendingWrite(aData);
+		ExecutorService executor = getExecutor(key);
+		// Register before submitting, so the write cannot complete before it is registered
+		synchronized (write) {
+			pending.put(key, write);
+			write.future = executor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						delegate.storeBinary(aContextId, aKey,
+								new ByteArrayInputStream(write.data));
+					}
+					catch (Throwable e) {
+						log.error("Unable to store [" + aKey + "] in context [" + aContextId
+								+ "]", e);
+						failures.put(aContextId, e);
+					}
+					finally {
+						// Only remove the entry if it has not been replaced by a newer write
+						pending.remove(key, write);
+						capacity.release();
+					}
+				}
+			});
+		}
+	}
+
+	private ExecutorService getExecutor(String aPendingKey)
+	{
+		return executors[(aPendingKey.hashCode() & Integer.MAX_VALUE) % executors.length];
+	}
+
+	private List<String> getPendingContexts()
+	{
+		List<String> contextIds = new ArrayList<String>();
+		for (String key : pending.keySet()) {
+			String contextId = key.substring(0, key.indexOf('\u0000'));
+			if (!contextIds.contains(contextId)) {
+				contextIds.add(contextId);
+			}
+		}
+		contextIds.addAll(failures.keySet());
+		return contextIds;
+	}
+
+	private static String pendingKey(String aContextId, String aKey)
+	{
+		return aContextId + '\u0000' + aKey;
+	}
+
+	/**
+	 * Buffers data in memory up to the {@link #setMaxBufferedSize(int) maximum buffered size}.
+	 * If the data is larger, the pending writes of the context are flushed and the data is
+	 * passed on to the delegate while it is being written.
+	 */
+	private class BufferOutputStream
+		extends OutputStream
+	{
+		private final String contextId;
+		private final String key;
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private PipedOutputStream pipe;
+		private Future<?> future;
+		private volatile boolean aborted;
+
+		public BufferOutputStream(String aContextId, String aKey)
+		{
+			contextId = aContextId;
+			key = aKey;
+		}
+
+		@Override
+		public void write(int aByte)
+			throws IOException
+		{
+			write(new byte[] { (byte) aByte }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] aData, int aOffset, int aLength)
+			throws IOException
+		{
+			if (pipe == null && buffer.size() + aLength > maxBufferedSize) {
+				startSynchronous();
+			}
+
+			if (pipe != null) {
+				pipe.write(aData, aOffset, aLength);
+			}
+			else {
+				buffer.write(aData, aOffset, aLength);
+			}
+		}
+
+		private void startSynchronous()
+			throws IOException
+		{
+			WriteBehindStorageService.this.flush(contextId);
+
+			PipedInputStream pipeIn = new PipedInputStream(65536);
+			pipe = new PipedOutputStream(pipeIn);
+			final InputStream is = new FilterInputStream(pipeIn)
+			{
+				@Override
+				public int read()
+					throws IOException
+				{
+					return checkAborted(super.read());
+				}
+
+				@Override
+				public int read(byte[] aBuffer, int aOffset, int aLength)
+					throws IOException
+				{
+					return checkAborted(super.read(aBuffer, aOffset, aLength));
+				}
+
+				private int checkAborted(int aResult)
+					throws IOException
+				{
+					if (aResult == -1 && aborted) {
+						// Make sure the delegate does not store incomplete data
+						throw new IOException("Writing [" + key + "] to context [" + contextId
+								+ "] was aborted");
+					}
+					return aResult;
+				}
+			};
+			future = getExecutor(pendingKey(contextId, key)).submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						delegate.storeBinary(contextId, key, is);
+					}
+					finally {
+						// Unblocks the writer if the delegate failed before reading everything
+						Util.close(is);
+					}
+				}
+			});
+
+			buffer.writeTo(pipe);
+			buffer = null;
+		}
+
+		public boolean isSynchronous()
+		{
+			return pipe != null;
+		}
+
+		public byte[] toByteArray()
+		{
+			return buffer.toByteArray();
+		}
+
+		/**
+		 * Wait until the delegate has stored the data written synchronously.
+		 */
+		public void finish()
+		{
+			Util.close(pipe);
+			try {
+				future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DataAccessResourceFailureException("Interrupted while storing [" + key
+						+ "] in context [" + contextId + "]", e);
+			}
+			catch (ExecutionException e) {
+				throw new DataAccessResourceFailureException("Unable to store [" + key
+						+ "] in context [" + contextId + "]", e.getCause());
+			}
+		}
+
+		/**
+		 * Discard the data written synchronously.
+		 *
+		 * @return the error of the delegate if it failed before the data was discarded.
+		 */
+		public Throwable abort()
+		{
+			if (pipe == null) {
+				return null;
+			}
+
+			boolean failedBefore = future.isDone();
+			aborted = true;
+			Util.close(pipe);
+			try {
+				future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e) {
+				if (failedBefore) {
+					return e.getCause();
+				}
+				// Otherwise expected since the data is incomplete
+			}
+			return null;
+		}
+	}
+
+	private static class PendingWrite
+	{
+		final byte[] data;
+		Future<?> future;
+
+		PendingWrite(byte[] aData)
+		{
+			data = aData;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.dkpro.lab.storage.CompressionCodec;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Zstandard compression. This requires the optional dependency {@code com.github.luben:zstd-jni}
+ * and its native library for the current platform.
+ *
+ * @see #isAvailable()
+ */
+public class ZstdCodec
+	implements CompressionCodec
+{
+	private static Boolean available;
+
+	private int level = 3;
+
+	/**
+	 * Set the compression level from 1 (fastest) to 22 (best compression). Default: 3.
+	 */
+	public void setLevel(int aLevel)
+	{
+		level = aLevel;
+	}
+
+	public int getLevel()
+	{
+		return level;
+	}
+
+	public static synchronized boolean isAvailable()
+	{
+		if (available == null) {
+			try {
+				// Initializing the class loads the native library
+				Class.forName("com.github.luben.zstd.Zstd", true, ZstdCodec.class.getClassLoader());
+				available = true;
+			}
+			catch (Throwable e) {
+				available = false;
+			}
+		}
+		return available;
+	}
+
+	@Override
+	public OutputStream compress(OutputStream aStream)
+		throws IOException
+	{
+		checkAvailable();
+		return new ZstdOutputStream(aStream, level);
+	}
+
+	@Override
+	public InputStream decompress(InputStream aStream)
+		throws IOException
+	{
+		checkAvailable();
+		return new ZstdInputStream(aStream);
+	}
+
+	private static void checkAvailable()
+		throws IOException
+	{
+		if (!isAvailable()) {
+			throw new IOException("Zstandard compression requires zstd-jni on the classpath");
+		}
+	}
+}
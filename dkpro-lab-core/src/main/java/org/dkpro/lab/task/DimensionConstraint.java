@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *   
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A constraint which only depends on the values of some dimensions. When iterating over a
+ * {@link ParameterSpace}, these constraints are checked as soon as the values of their
+ * dimensions are set. If none of the constraints allows these values, all configurations
+ * sharing them are skipped without being built.
+ */
+public interface DimensionConstraint
+	extends Constraint
+{
+	/**
+	 * Get the names of the dimensions the constraint depends on. For a dimension bundle, this is
+	 * the name of the bundle, which covers all keys of the bundle. The configuration passed to
+	 * {@link #isValid(Map)} may be partial, but it always contains the values of these
+	 * dimensions. If a name does not match any dimension of the parameter space, the parameter
+	 * space is not pruned.
+	 */
+	Set<String> getDimensions();
+
+	/**
+	 * Declare the dimensions the given constraint depends on.
+	 */
+	static DimensionConstraint create(final Constraint aConstraint, String... aDimensions)
+	{
+		final Set<String> dimensions = Collections.unmodifiableSet(
+				new LinkedHashSet<String>(Arrays.asList(aDimensions)));
+		return new DimensionConstraint()
+		{
+			@Override
+			public boolean isValid(Map<String, Object> aConfiguration)
+			{
+				return aConstraint.isValid(aConfiguration);
+			}
+
+			@Override
+			public Set<String> getDimensions()
+			{
+				return dimensions;
+			}
+		};
+	}
+}
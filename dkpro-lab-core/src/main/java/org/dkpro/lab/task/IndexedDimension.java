@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *   
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task;
+
+/**
+ * Dimensions which provide random access to their values may implement this interface. A
+ * {@link ParameterSpace} consisting only of such dimensions can compute the configuration with
+ * a given ordinal without iterating over the dimensions.
+ */
+public interface IndexedDimension<T>
+	extends FixedSizeDimension
+{
+	/**
+	 * Get the value at the given position. Unlike {@link Dimension#next()}, this does not move
+	 * the cursor of the dimension.
+	 *
+	 * @param aIndex the position, starting at 0.
+	 * @return the value.
+	 * @throws IndexOutOfBoundsException if the position is not within the dimension.
+	 */
+	T get(int aIndex);
+}
@@ -17,6 +17,8 @@
  ******************************************************************************/
 package org.dkpro.lab.task;
 
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -24,6 +26,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 import org.dkpro.lab.task.impl.DimensionBundle;
 import org.dkpro.lab.task.impl.DynamicDimension;
@@ -32,6 +36,7 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 {
 	private Dimension<?>[] dimensions;
 	private Set<Constraint> constraints;
+	private SearchStrategy searchStrategy;
 	private int stepCount = 0;
 
 	public ParameterSpace()
@@ -73,7 +78,8 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 	
 	/**
 	 * Gets the number of steps taken in the parameter space. Steps that are skipped due to a 
-	 * {@link Constraint} are counted as well.
+	 * {@link Constraint} are counted as well, except for those skipped together because a
+	 * {@link DimensionConstraint} does not allow the values of some of the dimensions.
 	 */
 	public int getStepCount()
 	{
@@ -112,12 +118,276 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 	 * Get the constraints. If no constraints are set, all parameter combinations are executed. If
 	 * constraints are set, a parameter combination is only executed if at least one constraint
 	 * allows the combination, otherwise the combination is skipped.
+	 * <p>
+	 * If all constraints are {@link DimensionConstraint dimension constraints}, the iterator
+	 * checks them as soon as the dimensions they depend on are set and skips all combinations
+	 * starting with values which none of the constraints allows. It is most effective if these
+	 * dimensions come first.
+	 * <p>
+	 * During the iteration, the constraints may receive a read-only view on the configuration
+	 * which is only valid during the call.
 	 */
 	public Set<Constraint> getConstraints()
 	{
 		return constraints;
 	}
 
+	/**
+	 * Set a strategy which chooses the configurations to execute instead of executing all of
+	 * them. The strategy is used by the batch task engines, iterating over the parameter space
+	 * still returns all configurations.
+	 * 
+	 * @param aSearchStrategy the strategy or {@code null} to execute all configurations.
+	 */
+	public void setSearchStrategy(SearchStrategy aSearchStrategy)
+	{
+		searchStrategy = aSearchStrategy;
+	}
+
+	public SearchStrategy getSearchStrategy()
+	{
+		return searchStrategy;
+	}
+
+	/**
+	 * Check if the given configuration is allowed by the constraints.
+	 * 
+	 * @see #getConstraints()
+	 */
+	public boolean isAllowed(Map<String, Object> aConfig)
+	{
+		// If no constraints are set, run everything
+		if (constraints.isEmpty()) {
+			return true;
+		}
+		
+		// If constraints are set, run a configuration if any of them says "ok"
+		for (Constraint c : constraints) {
+			if (c.isValid(aConfig)) {
+				return true;
+			}
+		}
+		
+		// default to not running
+		return false;
+	}
+
+	/**
+	 * Check if all dimensions are {@link IndexedDimension indexed}, so that the configurations
+	 * can be accessed by their ordinal.
+	 */
+	public boolean isIndexed()
+	{
+		for (Dimension<?> d : dimensions) {
+			if (!(d instanceof IndexedDimension)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of parameter combinations, including those which are not allowed by the
+	 * constraints. Empty dimensions do not contribute to the combinations.
+	 * 
+	 * @throws IllegalStateException if the parameter space is not {@link #isIndexed() indexed}.
+	 * @throws ArithmeticException if the number exceeds the range of a long.
+	 */
+	public long getGridSize()
+	{
+		checkIndexed();
+		long size = 1;
+		for (Dimension<?> d : dimensions) {
+			size = Math.multiplyExact(size, Math.max(1, ((IndexedDimension<?>) d).size()));
+		}
+		return size;
+	}
+
+	/**
+	 * Get the number of configurations allowed by the constraints, i.e. the number of
+	 * configurations returned when iterating over the parameter space. If constraints are set,
+	 * every parameter combination is computed to check it.
+	 * 
+	 * @throws IllegalStateException if the parameter space is not {@link #isIndexed() indexed}.
+	 */
+	public long size()
+	{
+		long gridSize = getGridSize();
+		if (constraints.isEmpty()) {
+			return gridSize;
+		}
+		
+		long size = 0;
+		for (long ordinal = 0; ordinal < gridSize; ordinal++) {
+			if (isAllowed(get(ordinal))) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Get the parameter combination with the given ordinal. The ordinals follow the order in
+	 * which the combinations are iterated, i.e. the last dimension changes fastest. Unlike the
+	 * iterator, this does not move the cursors of the dimensions, so it can be called from
+	 * several threads. Dynamic dimensions, including dynamic dimension bundles, still receive the
+	 * configuration of the static dimensions before their value is accessed. The constraints are
+	 * not checked.
+	 * 
+	 * @param aOrdinal the ordinal between 0 and the {@link #getGridSize() grid size}.
+	 * @return the configuration.
+	 * @throws IllegalStateException if the parameter space is not {@link #isIndexed() indexed}.
+	 * @see #isAllowed(Map)
+	 */
+	public Map<String, Object> get(long aOrdinal)
+	{
+		int[] indexes = getIndexes(aOrdinal);
+		
+		Map<String, Object> config = new LinkedHashMap<String, Object>();
+		// Pass 1: no dynamic dimensions
+		for (int i = 0; i < dimensions.length; i++) {
+			Dimension<?> d = dimensions[i];
+			if (indexes[i] < 0 || d instanceof DynamicDimension) {
+				continue;
+			}
+			
+			if (d instanceof DimensionBundle<?>) {
+				addBundleValues(config, (DimensionBundle<?>) d, indexes[i]);
+			}
+			else {
+				config.put(d.getName(), ((IndexedDimension<?>) d).get(indexes[i]));
+			}
+		}
+		
+		// Pass 2: dynamic dimensions
+		for (int i = 0; i < dimensions.length; i++) {
+			Dimension<?> d = dimensions[i];
+			if (indexes[i] >= 0 && d instanceof DynamicDimension) {
+				synchronized (d) {
+					((DynamicDimension) d).setConfiguration(config);
+					if (d instanceof DimensionBundle<?>) {
+						addBundleValues(config, (DimensionBundle<?>) d, indexes[i]);
+					}
+					config.put(d.getName(), ((IndexedDimension<?>) d).get(indexes[i]));
+				}
+			}
+		}
+		return config;
+	}
+
+	private static void addBundleValues(Map<String, Object> aConfig, DimensionBundle<?> aBundle,
+			int aIndex)
+	{
+		String bundleId = aBundle.getBundleId(aIndex);
+		if (aBundle.getName() != null && bundleId != null) {
+			aConfig.put(aBundle.getName(), bundleId);
+		}
+		aConfig.putAll(aBundle.get(aIndex));
+	}
+
+	/**
+	 * Get the positions of the values of each dimension in the parameter combination with the
+	 * given ordinal.
+	 * 
+	 * @return the positions. Empty dimensions have the position -1.
+	 * @throws IllegalStateException if the parameter space is not {@link #isIndexed() indexed}.
+	 */
+	public int[] getIndexes(long aOrdinal)
+	{
+		long gridSize = getGridSize();
+		if (aOrdinal < 0 || aOrdinal >= gridSize) {
+			throw new IndexOutOfBoundsException("Ordinal [" + aOrdinal
+					+ "] is not in the parameter space of size [" + gridSize + "]");
+		}
+		
+		// Decode the ordinal as a mixed-radix number with one digit per dimension
+		int[] indexes = new int[dimensions.length];
+		long rest = aOrdinal;
+		for (int i = dimensions.length - 1; i >= 0; i--) {
+			int size = ((IndexedDimension<?>) dimensions[i]).size();
+			if (size > 0) {
+				indexes[i] = (int) (rest % size);
+				rest /= size;
+			}
+			else {
+				// Empty dimensions contribute nothing
+				indexes[i] = -1;
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * Get the ordinal of the parameter combination with the given positions of the values of
+	 * each dimension.
+	 * 
+	 * @see #getIndexes(long)
+	 * @throws IllegalStateException if the parameter space is not {@link #isIndexed() indexed}.
+	 */
+	public long getOrdinal(int[] aIndexes)
+	{
+		checkIndexed();
+		if (aIndexes.length != dimensions.length) {
+			throw new IllegalArgumentException("Expected [" + dimensions.length
+					+ "] positions but got [" + aIndexes.length + "]");
+		}
+		
+		long ordinal = 0;
+		for (int i = 0; i < dimensions.length; i++) {
+			int size = ((IndexedDimension<?>) dimensions[i]).size();
+			if (size > 0) {
+				if (aIndexes[i] < 0 || aIndexes[i] >= size) {
+					throw new IndexOutOfBoundsException("Position [" + aIndexes[i]
+							+ "] is not in dimension [" + dimensions[i].getName() + "] of size ["
+							+ size + "]");
+				}
+				ordinal = ordinal * size + aIndexes[i];
+			}
+		}
+		return ordinal;
+	}
+
+	/**
+	 * If the parameter space is {@link #isIndexed() indexed}, the returned spliterator splits
+	 * the range of ordinals, so the configurations can be processed in parallel.
+	 */
+	@Override
+	public Spliterator<Map<String, Object>> spliterator()
+	{
+		if (!isIndexed()) {
+			return Iterable.super.spliterator();
+		}
+		return spliterator(0, getGridSize());
+	}
+
+	/**
+	 * Get a spliterator over the configurations whose ordinals are in the given range and which
+	 * are allowed by the constraints. This allows to split a large parameter space into shards
+	 * without iterating over it.
+	 * 
+	 * @param aFrom the first ordinal (inclusive).
+	 * @param aTo the last ordinal (exclusive).
+	 * @throws IllegalStateException if the parameter space is not {@link #isIndexed() indexed}.
+	 * @see #get(long)
+	 */
+	public Spliterator<Map<String, Object>> spliterator(long aFrom, long aTo)
+	{
+		long gridSize = getGridSize();
+		if (aFrom < 0 || aTo > gridSize || aFrom > aTo) {
+			throw new IndexOutOfBoundsException("Range [" + aFrom + ", " + aTo
+					+ ") is not in the parameter space of size [" + gridSize + "]");
+		}
+		return new ParameterSpaceSpliterator(aFrom, aTo);
+	}
+
+	private void checkIndexed()
+	{
+		if (!isIndexed()) {
+			throw new IllegalStateException(
+					"Random access requires all dimensions to be indexed dimensions");
+		}
+	}
+
 	@Override
 	public Iterator<Map<String, Object>> iterator()
 	{
@@ -137,81 +407,171 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 	{
 		private int incDim = -3;
 
+		// Last dimension the constraints depend on if they can be checked before all dimensions
+		// are set, otherwise -1
+		private final int pruneDepth;
+
+		// Configuration passed to the constraints, null if there are dynamic dimensions
+		private final ConfigurationView view;
+
 		public ParameterSpaceIterator()
 		{
+			pruneDepth = getPruneDepth();
+			view = hasDynamicDimensions() ? null : new ConfigurationView();
 			step();
 		}
 
 		private void step()
 		{
-			do {
+			int moved;
+			if (incDim == -3) {
 				// Initialize
-				if (incDim == -3) {
-					for (Dimension<?> d : dimensions) {
-						d.rewind();
-						try {
-							d.next();
-						}
-						catch (NoSuchElementException e) {
-							// No need to move the cursor to the first element in empty dimensions.
-						}
-					}
-					incDim = dimensions.length - 1;
-					if (constraintsMet()) {
-						return;
-					}
+				for (int i = 0; i < dimensions.length; i++) {
+					reset(i);
 				}
+				moved = 0;
+			}
+			else {
+				moved = advance(dimensions.length - 1);
+			}
 
-				if (incDim < 0) {
-					return; // Nothing more to iterate over
+			while (moved >= 0) {
+				if (moved <= pruneDepth && !prefixAllowed()) {
+					// No configuration starting with the present values of the dimensions up to
+					// the prune depth is allowed - skip all of them
+					moved = advance(pruneDepth);
+					continue;
 				}
 
-				if (dimensions[incDim].hasNext()) {
-					dimensions[incDim].next();
+				if (constraintsMet()) {
+					break;
 				}
-				else {
-					while (!dimensions[incDim].hasNext()) {
-						dimensions[incDim].rewind();
-						try {
-							dimensions[incDim].next();
-						}
-						catch (NoSuchElementException e) {
-							// No need to move the cursor to the first element in empty dimensions.
-						}
-						incDim--;
-						if (incDim < 0) {
-							return; // Nothing more to iterate over
-						}
-					}
-					dimensions[incDim].next();
-					incDim = dimensions.length - 1;
+
+				moved = advance(dimensions.length - 1);
+			}
+
+			incDim = moved < 0 ? -1 : dimensions.length - 1;
+		}
+
+		/**
+		 * Move the given dimension to its next value. If it has no more values, it is rewound and
+		 * the previous dimension is moved instead. The dimensions after the given one must be at
+		 * their first value.
+		 *
+		 * @return the dimension which has been moved or -1 if there is nothing more to iterate
+		 *         over.
+		 */
+		private int advance(int aDim)
+		{
+			if (view != null) {
+				view.invalidate();
+			}
+
+			int dim = aDim;
+			while (!dimensions[dim].hasNext()) {
+				reset(dim);
+				dim--;
+				if (dim < 0) {
+					return -1;
 				}
 			}
-			while (!constraintsMet());
+			dimensions[dim].next();
+			return dim;
 		}
 
-		private boolean constraintsMet()
+		private void reset(int aDim)
 		{
-			Map<String, Object> config = current();
+			if (view != null) {
+				view.invalidate();
+			}
 
-			stepCount++;
+			dimensions[aDim].rewind();
+			try {
+				dimensions[aDim].next();
+			}
+			catch (NoSuchElementException e) {
+				// No need to move the cursor to the first element in empty dimensions.
+			}
+		}
 
-			// If no constraints are set, run everything
+		/**
+		 * Determine up to which dimension the values must be set to check the constraints. This
+		 * is only possible if all constraints declare the dimensions they depend on and none of
+		 * them depends on a dynamic dimension. Names which do not match a dimension, e.g. keys
+		 * provided by a dimension bundle, disable pruning.
+		 */
+		private int getPruneDepth()
+		{
 			if (constraints.isEmpty()) {
-				return true;
+				return -1;
 			}
-			
-			// If constraints are set, run a configuration if any of them says "ok"
+
+			int depth = 0;
+			for (Constraint c : constraints) {
+				if (!(c instanceof DimensionConstraint)) {
+					return -1;
+				}
+				for (String name : ((DimensionConstraint) c).getDimensions()) {
+					boolean found = false;
+					for (int i = 0; i < dimensions.length; i++) {
+						if (name.equals(dimensions[i].getName())) {
+							if (dimensions[i] instanceof DynamicDimension) {
+								return -1;
+							}
+							depth = Math.max(depth, i);
+							found = true;
+						}
+					}
+					if (!found) {
+						return -1;
+					}
+				}
+			}
+
+			// Checking the constraints on the last dimension is the same as checking them on the
+			// full configuration
+			return depth < dimensions.length - 1 ? depth : -1;
+		}
+
+		private boolean hasDynamicDimensions()
+		{
+			for (Dimension<?> d : dimensions) {
+				if (d instanceof DynamicDimension) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean prefixAllowed()
+		{
+			Map<String, Object> config = view;
+			if (config == null) {
+				config = new LinkedHashMap<String, Object>();
+				for (int i = 0; i <= pruneDepth; i++) {
+					addValue(config, dimensions[i]);
+				}
+			}
+
 			for (Constraint c : constraints) {
 				if (c.isValid(config)) {
 					return true;
 				}
 			}
-			
-			// default to not running
 			return false;
 		}
 
+		private boolean constraintsMet()
+		{
+			stepCount++;
+
+			if (constraints.isEmpty()) {
+				return true;
+			}
+
+			return isAllowed(view != null ? view : current());
+		}
+
 		@Override
 		public boolean hasNext()
 		{
@@ -223,25 +583,7 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 			Map<String, Object> config = new LinkedHashMap<String, Object>();
 			// Pass 1: no dynamic dimensions
 			for (Dimension<?> d : dimensions) {
-				try {
-					if (d instanceof DimensionBundle<?>) {
-						DimensionBundle<?> bundle = ((DimensionBundle<?>) d);
-						String bundleId = bundle.getBundleId();
-						if (bundle.getName() != null && bundleId != null) {
-							config.put(bundle.getName(), bundle.getBundleId());
-						}
-						config.putAll(bundle.current());
-					}
-					else if (d instanceof DynamicDimension) {
-						// defer
-					}
-					else {
-						config.put(d.getName(), d.current());
-					}
-				}
-				catch (NoSuchElementException e) {
-					// Empty dimensions contribute nothing
-				}
+				addValue(config, d);
 			}
 
 			// Pass 2: dynamic dimensions
@@ -249,6 +591,9 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 				if (d instanceof DynamicDimension) {
 					try {
 						((DynamicDimension) d).setConfiguration(config);
+						if (d instanceof DimensionBundle<?>) {
+							addBundleValues(config, (DimensionBundle<?>) d);
+						}
 						config.put(d.getName(), d.current());
 					}
 					catch (NoSuchElementException e) {
@@ -259,6 +604,36 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 			return config;
 		}
 
+		/**
+		 * Add the current value of the given dimension unless it is dynamic.
+		 */
+		private void addValue(Map<String, Object> aConfig, Dimension<?> aDimension)
+		{
+			try {
+				if (aDimension instanceof DynamicDimension) {
+					// defer
+				}
+				else if (aDimension instanceof DimensionBundle<?>) {
+					addBundleValues(aConfig, (DimensionBundle<?>) aDimension);
+				}
+				else {
+					aConfig.put(aDimension.getName(), aDimension.current());
+				}
+			}
+			catch (NoSuchElementException e) {
+				// Empty dimensions contribute nothing
+			}
+		}
+
+		private void addBundleValues(Map<String, Object> aConfig, DimensionBundle<?> aBundle)
+		{
+			String bundleId = aBundle.getBundleId();
+			if (aBundle.getName() != null && bundleId != null) {
+				aConfig.put(aBundle.getName(), bundleId);
+			}
+			aConfig.putAll(aBundle.current());
+		}
+
 		@Override
 		public Map<String, Object> next()
 		{
@@ -287,5 +662,154 @@ public class ParameterSpace implements Iterable<Map<String, Object>>
 			sb.append("]");
 			return sb.toString();
 		}
+
+		/**
+		 * Read-only view on the current values of the dimensions. Looking up a value does not
+		 * build the configuration, so checking the constraints does not allocate any memory.
+		 * The configuration is only built if the view is iterated over. Supports no dynamic
+		 * dimensions since their values depend on the built configuration.
+		 */
+		private class ConfigurationView
+			extends AbstractMap<String, Object>
+		{
+			private Map<String, Object> materialized;
+
+			public void invalidate()
+			{
+				materialized = null;
+			}
+
+			@Override
+			public boolean containsKey(Object aKey)
+			{
+				return find(aKey) >= 0;
+			}
+
+			@Override
+			public Object get(Object aKey)
+			{
+				int i = find(aKey);
+				if (i < 0) {
+					return null;
+				}
+
+				Dimension<?> d = dimensions[i];
+				if (d instanceof DimensionBundle<?>) {
+					DimensionBundle<?> bundle = (DimensionBundle<?>) d;
+					return bundle.currentContainsKey((String) aKey) ? bundle
+							.currentValue((String) aKey) : bundle.getBundleId();
+				}
+				return d.current();
+			}
+
+			/**
+			 * Find the dimension providing the value for the given key. If several dimensions
+			 * provide a value for it, the last one wins as when building the configuration.
+			 *
+			 * @return the index of the dimension or -1 if there is no value for the key.
+			 */
+			private int find(Object aKey)
+			{
+				if (!(aKey instanceof String)) {
+					return -1;
+				}
+
+				for (int i = dimensions.length - 1; i >= 0; i--) {
+					Dimension<?> d = dimensions[i];
+					if (d instanceof DimensionBundle<?>) {
+						DimensionBundle<?> bundle = (DimensionBundle<?>) d;
+						if (bundle.currentContainsKey((String) aKey)
+								|| (aKey.equals(bundle.getName()) && bundle.getBundleId() != null)) {
+							return i;
+						}
+					}
+					else if (aKey.equals(d.getName()) && hasValue(d)) {
+						return i;
+					}
+				}
+				return -1;
+			}
+
+			private boolean hasValue(Dimension<?> aDimension)
+			{
+				if (aDimension instanceof FixedSizeDimension) {
+					return ((FixedSizeDimension) aDimension).size() > 0;
+				}
+
+				try {
+					aDimension.current();
+					return true;
+				}
+				catch (NoSuchElementException e) {
+					return false;
+				}
+			}
+
+			@Override
+			public Set<Entry<String, Object>> entrySet()
+			{
+				if (materialized == null) {
+					materialized = Collections.unmodifiableMap(current());
+				}
+				return materialized.entrySet();
+			}
+		}
+	}
+
+	private class ParameterSpaceSpliterator
+		implements Spliterator<Map<String, Object>>
+	{
+		private long next;
+		private final long end;
+
+		public ParameterSpaceSpliterator(long aFrom, long aTo)
+		{
+			next = aFrom;
+			end = aTo;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Map<String, Object>> aAction)
+		{
+			while (next < end) {
+				Map<String, Object> config = get(next++);
+				if (isAllowed(config)) {
+					aAction.accept(config);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Spliterator<Map<String, Object>> trySplit()
+		{
+			long remaining = end - next;
+			if (remaining < 2) {
+				return null;
+			}
+			
+			long mid = next + remaining / 2;
+			Spliterator<Map<String, Object>> prefix = new ParameterSpaceSpliterator(next, mid);
+			next = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return end - next;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			// Without constraints, each ordinal yields a configuration
+			int characteristics = ORDERED | NONNULL;
+			if (constraints.isEmpty()) {
+				characteristics |= SIZED | SUBSIZED;
+			}
+			return characteristics;
+		}
 	}
 }
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the resources a task needs while it is running. Batch task engines only start as
+ * many subtasks at the same time as the resources of the machine allow. The declaration can be
+ * overridden per task instance using the attributes {@link #CORES} and {@link #MEMORY}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface Resources
+{
+	/**
+	 * The number of processor cores the task keeps busy.
+	 */
+	int cores() default 1;
+
+	/**
+	 * The heap memory in megabytes the task needs.
+	 */
+	long memory() default 0;
+
+	/**
+	 * Task attribute overriding the number of cores.
+	 */
+	public static final String CORES = "org.dkpro.lab.task.Resources.CORES";
+
+	/**
+	 * Task attribute overriding the heap memory in megabytes.
+	 */
+	public static final String MEMORY = "org.dkpro.lab.task.Resources.MEMORY";
+}
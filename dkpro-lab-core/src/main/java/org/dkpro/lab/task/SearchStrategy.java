@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *   
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task;
+
+import java.util.Map;
+
+/**
+ * Chooses the configurations of a {@link ParameterSpace} which are executed, e.g. to tune the
+ * parameters of an experiment without executing every parameter combination. The batch task
+ * engine asks the strategy for one configuration after the other. After a configuration has
+ * been executed, the engine reads the result from the contexts of the subtasks and reports it
+ * to the strategy before asking for the next configuration.
+ * 
+ * @see ParameterSpace#setSearchStrategy(SearchStrategy)
+ */
+public interface SearchStrategy
+{
+	/**
+	 * Start a new search.
+	 * 
+	 * @param aParameterSpace the parameter space to search.
+	 */
+	void init(ParameterSpace aParameterSpace);
+
+	/**
+	 * Get the next configuration to execute.
+	 * 
+	 * @return the configuration or {@code null} if the search is complete.
+	 */
+	Map<String, Object> next();
+
+	/**
+	 * Report the result of a configuration returned by {@link #next()}.
+	 * 
+	 * @param aConfiguration the configuration.
+	 * @param aResult the result or {@link Double#NaN} if no subtask provided a result.
+	 */
+	void report(Map<String, Object> aConfiguration, double aResult);
+
+	/**
+	 * Get the key under which a subtask stores its results as a properties file.
+	 * 
+	 * @return the key or {@code null} if the strategy does not need results.
+	 */
+	String getResultKey();
+
+	/**
+	 * Get the property in the results file which contains the result.
+	 */
+	String getResultAttribute();
+}
@@ -48,6 +48,8 @@ public class TaskContextMetadata
 	private String type;
 	private long start;
 	private long end;
+	private long heapStart = -1;
+	private long heapEnd = -1;
 	private Map<String, String> imports;
 
 	{
@@ -138,6 +140,48 @@ public class TaskContextMetadata
 		end = aEnd;
 	}
 
+	/**
+	 * Get the heap memory in bytes used when the task execution began or {@code -1} if it was
+	 * not measured.
+	 */
+	public long getHeapStart()
+	{
+		return heapStart;
+	}
+
+	public void setHeapStart(long aHeapStart)
+	{
+		heapStart = aHeapStart;
+	}
+
+	/**
+	 * Get the heap memory in bytes used when the task execution ended or {@code -1} if it was
+	 * not measured.
+	 */
+	public long getHeapEnd()
+	{
+		return heapEnd;
+	}
+
+	public void setHeapEnd(long aHeapEnd)
+	{
+		heapEnd = aHeapEnd;
+	}
+
+	/**
+	 * Get the difference in bytes between the heap memory used at the end and at the beginning
+	 * of the task execution or {@code -1} if it was not measured. Unless a garbage collection
+	 * was forced at the beginning, this is only a rough estimate, since the heap may have been
+	 * collected during the execution.
+	 */
+	public long getHeapUsage()
+	{
+		if (heapStart < 0 || heapEnd < 0) {
+			return -1;
+		}
+		return heapEnd - heapStart;
+	}
+
 	/**
 	 * Set the data-dependencies of the task.
 	 */
@@ -167,24 +211,34 @@ public class TaskContextMetadata
 	/**
 	 * Load the context meta data.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	public void read(InputStream aInputStream)
 		throws IOException
 	{
 		Properties props = new Properties();
 		props.load(aInputStream);
-		setStart(Long.valueOf(props.getProperty("begin")));
-		setEnd(Long.valueOf(props.getProperty("end")));
-		setType(props.getProperty("type"));
-		setId(props.getProperty("uuid"));
-		setLabel(props.getProperty("label"));
+		read(props);
+	}
 
-		for (String key : (Set<String>) (Set<?>) props.keySet()) {
+	/**
+	 * Load the context meta data from already parsed properties.
+	 */
+	@SuppressWarnings("unchecked")
+	public void read(Properties aProperties)
+	{
+		setStart(Long.valueOf(aProperties.getProperty("begin")));
+		setEnd(Long.valueOf(aProperties.getProperty("end")));
+		setType(aProperties.getProperty("type"));
+		setId(aProperties.getProperty("uuid"));
+		setLabel(aProperties.getProperty("label"));
+		setHeapStart(Long.valueOf(aProperties.getProperty("heapStart", "-1")));
+		setHeapEnd(Long.valueOf(aProperties.getProperty("heapEnd", "-1")));
+
+		for (String key : (Set<String>) (Set<?>) aProperties.keySet()) {
 			if (!key.startsWith(IMPORT)) {
 				continue;
 			}
-			imports.put(key.substring(IMPORT.length()), props.getProperty(key));
+			imports.put(key.substring(IMPORT.length()), aProperties.getProperty(key));
 		}
 	}
 
@@ -204,6 +258,11 @@ public class TaskContextMetadata
 			props.setProperty("label", getLabel());
 		}
 		props.setProperty("duration", ((getEnd() - getStart()) / 1000) + "s");
+		if (getHeapUsage() >= 0) {
+			props.setProperty("heapStart", String.valueOf(getHeapStart()));
+			props.setProperty("heapEnd", String.valueOf(getHeapEnd()));
+			props.setProperty("heapUsage", (getHeapUsage() / (1024 * 1024)) + "MB");
+		}
 
 		for (Entry<String, String> e : imports.entrySet()) {
 			props.put(IMPORT + e.getKey(), e.getValue());
@@ -23,11 +23,11 @@ import java.util.NoSuchElementException;
 
 import org.dkpro.lab.Util;
 import org.dkpro.lab.task.Dimension;
-import org.dkpro.lab.task.FixedSizeDimension;
+import org.dkpro.lab.task.IndexedDimension;
 
 public class DimensionBundle<T>
 	extends Dimension<Map<String, T>>
-	implements FixedSizeDimension
+	implements IndexedDimension<Map<String, T>>
 {
 	public static final String KEY_BUNDLE_ID = "__bundleId";
 
@@ -85,8 +85,33 @@ public class DimensionBundle<T>
 			throw new NoSuchElementException("Dimension [" + getName() + "] is empty");
 		}
 		
+		return get(current);
+	}
+
+	/**
+	 * Check if the current bundle contains the given key without copying the bundle.
+	 */
+	public boolean currentContainsKey(String aKey)
+	{
+		return current >= 0 && current < values.length && !KEY_BUNDLE_ID.equals(aKey)
+				&& values[current].containsKey(aKey);
+	}
+
+	/**
+	 * Get the value of the given key in the current bundle without copying the bundle.
+	 *
+	 * @return the value or {@code null} if the current bundle does not contain the key.
+	 */
+	public T currentValue(String aKey)
+	{
+		return currentContainsKey(aKey) ? values[current].get(aKey) : null;
+	}
+
+	@Override
+	public Map<String, T> get(int aIndex)
+	{
 		// Remove the bundle key from the values
-		Map<String, T> mapCopy = new HashMap<String, T>(values[current]);
+		Map<String, T> mapCopy = new HashMap<String, T>(values[aIndex]);
 		mapCopy.remove(KEY_BUNDLE_ID);
 		
 		return mapCopy;
@@ -112,14 +137,25 @@ public class DimensionBundle<T>
 	public String getBundleId()
 	{
 		if (current >= 0 && current < values.length) {
-			Object id = values[current].get(KEY_BUNDLE_ID);
-			if (id != null) {
-			    if (getName() == null) {
-                    throw new IllegalStateException(
-                            "Bundle dimension must have a name if it declares a bundle ID");
-			    }
-                return Util.toString(id);
-			}
+			return getBundleId(current);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the bundle ID of the value at the given position.
+	 * 
+	 * @return the bundle ID or {@code null} if the value does not declare one.
+	 */
+	public String getBundleId(int aIndex)
+	{
+		Object id = values[aIndex].get(KEY_BUNDLE_ID);
+		if (id != null) {
+		    if (getName() == null) {
+                throw new IllegalStateException(
+                        "Bundle dimension must have a name if it declares a bundle ID");
+		    }
+            return Util.toString(id);
 		}
 		return null;
 	}
@@ -20,11 +20,11 @@ package org.dkpro.lab.task.impl;
 import java.util.NoSuchElementException;
 
 import org.dkpro.lab.task.Dimension;
-import org.dkpro.lab.task.FixedSizeDimension;
+import org.dkpro.lab.task.IndexedDimension;
 
 public class DiscreteDimension<T>
 	extends Dimension<T>
-	implements FixedSizeDimension
+	implements IndexedDimension<T>
 {
 	private T[] values;
 	private int current;
@@ -69,6 +69,12 @@ public class DiscreteDimension<T>
 		return values;
 	}
 
+	@Override
+	public T get(int aIndex)
+	{
+		return values[aIndex];
+	}
+
 	@Override
 	public int size()
 	{
@@ -23,8 +23,10 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.dkpro.lab.task.Dimension;
+import org.dkpro.lab.task.IndexedDimension;
 
 public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> implements DynamicDimension
 {
@@ -33,12 +35,32 @@ public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> imple
 	private int validationBucket = -1;
 	private int folds;
 	private Comparator<T> comparator;
+	private Function<? super T, ?> groupingKey;
+	// Values of the folded dimension the buckets were created from. The buckets are reused as
+	// long as the folded dimension provides the same values.
+	private List<T> bucketedItems;
+	// Set when the values of the folded dimension may have changed, i.e. when the bundle is
+	// rewound or configured. They are only read again then.
+	private boolean stale = true;
 	
     public FoldDimensionBundle(String aName, Dimension<T> aFoldedDimension, int aFolds, Comparator<T> aComparator)
     {
         this(aName, aFoldedDimension, aFolds);
         comparator = aComparator;
     }
+
+    /**
+     * Keep values with the same grouping key in the same fold, e.g. all documents by the same
+     * author. This yields the same folds as a comparator which considers values with the same
+     * key equal, but takes linear instead of quadratic time.
+     */
+    public FoldDimensionBundle(String aName, Dimension<T> aFoldedDimension, int aFolds,
+            Function<? super T, ?> aGroupingKey)
+    {
+        this(aName, aFoldedDimension, aFolds);
+        groupingKey = aGroupingKey;
+    }
+
 	public FoldDimensionBundle(String aName, Dimension<T> aFoldedDimension, int aFolds)
 	{
 		super(aName, new Object[0] );
@@ -47,21 +69,63 @@ public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> imple
 		comparator = null;
 	}
 	
+	/**
+	 * Capture all data from the folded dimension. If the folded dimension provides random access,
+	 * its cursor is not moved.
+	 */
+	private List<T> readItems()
+	{
+		List<T> items = new ArrayList<T>();
+		if (foldedDimension instanceof IndexedDimension) {
+			IndexedDimension<T> indexed = (IndexedDimension<T>) foldedDimension;
+			for (int i = 0; i < indexed.size(); i++) {
+				items.add(indexed.get(i));
+			}
+		}
+		else {
+			foldedDimension.rewind();
+			while (foldedDimension.hasNext()) {
+				items.add(foldedDimension.next());
+			}
+		}
+		return items;
+	}
+	
 	private void init()
 	{
+		if (buckets != null && !stale) {
+			return;
+		}
+		
+		List<T> items = readItems();
+		stale = false;
+		
+		if (buckets != null && items.equals(bucketedItems)) {
+			return;
+		}
+		
 		buckets = new List[folds];
 		for(int bucket=0;bucket<buckets.length;bucket++){
 			buckets[bucket] = new ArrayList<T>();
 		}
 		
-		// Capture all data from the dimension into buckets, one per fold
-		foldedDimension.rewind();
-		
 		//User controls instances across folds
-		if(comparator != null){
+		if (groupingKey != null) {
+		    // Same key goes into the same bucket, a new key into the smallest bucket
+		    Map<Object, Integer> keyBuckets = new HashMap<Object, Integer>();
+		    for (T newItem : items) {
+		        Object key = groupingKey.apply(newItem);
+		        Integer bucket = keyBuckets.get(key);
+		        if (bucket == null) {
+		            bucket = getSmallestBucket();
+		            keyBuckets.put(key, bucket);
+		        }
+		        addToBucket(newItem, bucket);
+		    }
+		}
+		else if(comparator != null){
 		
-	        while (foldedDimension.hasNext()) {
-	            T newItem = foldedDimension.next();
+	        for (T newItem : items) {
 	            
 	            // Check every bucket if the current object belongs there
 	            boolean found = false;
@@ -84,15 +148,7 @@ public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> imple
 	            // There is no bucket where the current item has to go into, just use the next one.
 	            if (!found) {
 	            	//put it in the smallest bucket
-	            	int smallestBucket = 0;
-	                int smallestBucketSize = buckets[smallestBucket].size();
-	                for(int bucket=0;bucket<buckets.length;bucket++){
-	                	if(buckets[bucket].size() < smallestBucketSize){
-	                		smallestBucket = bucket;
-	                		smallestBucketSize = buckets[smallestBucket].size();
-	                	}
-	                }
-	                addToBucket(newItem, smallestBucket);
+	                addToBucket(newItem, getSmallestBucket());
 	            }
 	        }
 
@@ -100,19 +156,20 @@ public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> imple
 		}else{
 		
 			int i = 0;
-			while (foldedDimension.hasNext()) {
+			for (T newItem : items) {
 				int bucket = i % folds;
 				
 				if (buckets[bucket] == null) {
 					buckets[bucket] = new ArrayList<T>();
 				}
 				
-				buckets[bucket].add(foldedDimension.next());
+				buckets[bucket].add(newItem);
 				i++;
 			}
 		
 		
 			if (i < folds) {
+				buckets = null;
 				throw new IllegalStateException("Requested [" + folds + "] folds, but only got [" + i
 						+ "] values. There must be at least as many values as folds.");
 			}
@@ -121,12 +178,28 @@ public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> imple
 		for(int bucket=0;bucket<buckets.length;bucket++){
 			foldsAndSizes = foldsAndSizes + " fold " + bucket + ": size " + buckets[bucket].size() + ".  ";
 			if(buckets[bucket].size() == 0){
+				buckets = null;
 				throw new IllegalStateException("Detected an empty fold: " + bucket + ". " + 
 			"Maybe your fold control is causing all of your instances to be put in very few buckets?  " + 
 						"Previous folds and buckets: " + foldsAndSizes);
 			}
 		}
+		bucketedItems = items;
 	}
+
+    private int getSmallestBucket()
+    {
+        int smallestBucket = 0;
+        int smallestBucketSize = buckets[smallestBucket].size();
+        for(int bucket=0;bucket<buckets.length;bucket++){
+        	if(buckets[bucket].size() < smallestBucketSize){
+        		smallestBucket = bucket;
+        		smallestBucketSize = buckets[smallestBucket].size();
+        	}
+        }
+        return smallestBucket;
+    }
+
     private void addToBucket(T newItem, int bucket){
 		if (buckets[bucket] == null) {
 			buckets[bucket] = new ArrayList<T>();
@@ -138,14 +211,16 @@ public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> imple
 	@Override
 	public boolean hasNext()
 	{
-		return validationBucket < buckets.length-1;
+		return validationBucket < folds - 1;
 	}
 
 	@Override
-	public void rewind()
+	public synchronized void rewind()
 	{
-		init();
+		// The folds are created when they are accessed, so a dynamic folded dimension has
+		// received its configuration by then
 		validationBucket = -1;
+		stale = true;
 	}
 
 	@Override
@@ -158,25 +233,52 @@ public class FoldDimensionBundle<T> extends DimensionBundle<Collection<T>> imple
 	@Override
 	public Map<String, Collection<T>> current()
 	{
+		return get(validationBucket);
+	}
+
+	/**
+	 * Get the training and validation data using the given fold for validation. After the
+	 * bundle has been rewound or configured, the folds are created again if the values of the
+	 * folded dimension have changed, e.g. because it is dynamic and has received a different
+	 * configuration.
+	 */
+	@Override
+	public synchronized Map<String, Collection<T>> get(int aIndex)
+	{
+		init();
+		
 		List<T> trainingData = new ArrayList<T>();
 		for (int i = 0; i < buckets.length; i++) {
-			if (i != validationBucket) {
+			if (i != aIndex) {
 				trainingData.addAll(buckets[i]);
 			}
 		}
 		
 		Map<String, Collection<T>> data = new HashMap<String, Collection<T>>();
 		data.put(getName()+"_training", trainingData);
-		data.put(getName()+"_validation", buckets[validationBucket]);
+		data.put(getName()+"_validation", buckets[aIndex]);
 		
 		return data;
 	}
 
 	@Override
-	public void setConfiguration(Map<String, Object> aConfig)
+	public String getBundleId(int aIndex)
+	{
+		return null;
+	}
+
+	@Override
+	public int size()
+	{
+		return folds;
+	}
+
+	@Override
+	public synchronized void setConfiguration(Map<String, Object> aConfig)
 	{
 		if (foldedDimension instanceof DynamicDimension) {
 			((DynamicDimension) foldedDimension).setConfiguration(aConfig);
 		}
+		stale = true;
 	}
 }
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *   
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dkpro.lab.task.ParameterSpace;
+
+/**
+ * Hyperband search: configurations are first executed with a small budget, e.g. a few training
+ * epochs, and only the best of them are executed again with a larger budget. The others are
+ * dropped early. To balance between trying many configurations with small budgets and few
+ * configurations with large budgets, several such brackets of successive halving are run, each
+ * starting with fewer configurations and a larger budget.
+ * <p>
+ * The budget is added to each configuration under the given parameter name, so the subtasks
+ * can obtain it like any other parameter, e.g. as a
+ * {@link org.dkpro.lab.task.Discriminator discriminator}.
+ */
+public class HyperbandSearch
+	extends SearchStrategyBase
+{
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final String budgetParameter;
+	private final int minBudget;
+	private final int maxBudget;
+	private final int eta;
+	private boolean successiveHalving = false;
+
+	private int maxBracket;
+	// Brackets count down from the one with the most configurations to the one with the fewest
+	private int bracket;
+	private int rung;
+	private List<Trial> trials;
+	private final LinkedList<Trial> pending = new LinkedList<Trial>();
+	private final Map<Map<String, Object>, Trial> running =
+			new IdentityHashMap<Map<String, Object>, Trial>();
+
+	/**
+	 * @param aBudgetParameter
+	 *            the name of the parameter receiving the budget.
+	 * @param aMinBudget
+	 *            the smallest budget a configuration is executed with.
+	 * @param aMaxBudget
+	 *            the largest budget a configuration is executed with.
+	 * @param aEta
+	 *            the factor by which the budget increases and the number of configurations
+	 *            decreases from one round of successive halving to the next.
+	 */
+	public HyperbandSearch(String aResultKey, String aResultAttribute, String aBudgetParameter,
+			int aMinBudget, int aMaxBudget, int aEta)
+	{
+		super(aResultKey, aResultAttribute);
+		if (aMinBudget < 1 || aMaxBudget < aMinBudget) {
+			throw new IllegalArgumentException("Budgets must satisfy 1 <= min <= max, but got ["
+					+ aMinBudget + "] and [" + aMaxBudget + "]");
+		}
+		if (aEta < 2) {
+			throw new IllegalArgumentException("Eta must be at least 2, but got [" + aEta + "]");
+		}
+		budgetParameter = aBudgetParameter;
+		minBudget = aMinBudget;
+		maxBudget = aMaxBudget;
+		eta = aEta;
+	}
+
+	/**
+	 * Run only the bracket with the most configurations, i.e. plain successive halving.
+	 * Default: false.
+	 */
+	public void setSuccessiveHalving(boolean aSuccessiveHalving)
+	{
+		successiveHalving = aSuccessiveHalving;
+	}
+
+	@Override
+	public void init(ParameterSpace aParameterSpace)
+	{
+		super.init(aParameterSpace);
+		maxBracket = (int) Math.floor(Math.log(maxBudget / (double) minBudget) / Math.log(eta)
+				+ 1e-9);
+		bracket = maxBracket;
+		rung = 0;
+		trials = null;
+		pending.clear();
+		running.clear();
+	}
+
+	@Override
+	public Map<String, Object> next()
+	{
+		while (pending.isEmpty()) {
+			if (!advance()) {
+				return null;
+			}
+		}
+
+		Trial trial = pending.poll();
+		Map<String, Object> config = getParameterSpace().get(trial.ordinal);
+		config.put(budgetParameter, getBudget());
+		running.put(config, trial);
+		return config;
+	}
+
+	/**
+	 * Only results obtained with the maximum budget are considered for the
+	 * {@link #getBest() best} configuration.
+	 */
+	@Override
+	public void report(Map<String, Object> aConfiguration, double aResult)
+	{
+		Trial trial = running.remove(aConfiguration);
+		if (trial != null) {
+			trial.result = aResult;
+		}
+		if (rung == bracket) {
+			super.report(aConfiguration, aResult);
+		}
+	}
+
+	/**
+	 * Get the budget of the configurations in the current round.
+	 */
+	public int getBudget()
+	{
+		double budget = maxBudget / Math.pow(eta, bracket - rung);
+		return (int) Math.max(minBudget, Math.round(budget));
+	}
+
+	/**
+	 * Promote the best configurations of the current round to the next round or start the next
+	 * bracket.
+	 * 
+	 * @return whether there are configurations to execute.
+	 */
+	private boolean advance()
+	{
+		if (trials != null && rung < bracket) {
+			Collections.sort(trials, new Comparator<Trial>()
+			{
+				@Override
+				public int compare(Trial aTrial1, Trial aTrial2)
+				{
+					return Double.compare(score(aTrial2.result), score(aTrial1.result));
+				}
+			});
+
+			int keep = Math.max(1, trials.size() / eta);
+			log.debug("Promoting " + keep + " of " + trials.size()
+					+ " configurations in bracket " + bracket);
+			trials = new ArrayList<Trial>(trials.subList(0, keep));
+			rung++;
+			pending.addAll(trials);
+			return true;
+		}
+
+		if (trials != null) {
+			// Bracket complete
+			if (successiveHalving || bracket == 0) {
+				return false;
+			}
+			bracket--;
+		}
+
+		int n = (int) Math.ceil((maxBracket + 1) / (double) (bracket + 1)
+				* Math.pow(eta, bracket));
+		trials = new ArrayList<Trial>();
+		for (int i = 0; i < n; i++) {
+			long ordinal = sample();
+			if (ordinal < 0) {
+				break;
+			}
+			trials.add(new Trial(ordinal));
+		}
+		if (trials.isEmpty()) {
+			return false;
+		}
+
+		log.debug("Starting bracket " + bracket + " with " + trials.size()
+				+ " configurations");
+		rung = 0;
+		pending.addAll(trials);
+		return true;
+	}
+
+	private static class Trial
+	{
+		private final long ordinal;
+		private double result = Double.NaN;
+
+		public Trial(long aOrdinal)
+		{
+			ordinal = aOrdinal;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *   
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import java.util.Map;
+
+import org.dkpro.lab.task.ParameterSpace;
+
+/**
+ * Executes a given number of configurations sampled at random from the parameter space.
+ */
+public class RandomSearch
+	extends SearchStrategyBase
+{
+	private final int trials;
+	private int count;
+
+	/**
+	 * Sample configurations without reading their results.
+	 * 
+	 * @param aTrials the number of configurations to execute.
+	 */
+	public RandomSearch(int aTrials)
+	{
+		this(null, null, aTrials);
+	}
+
+	/**
+	 * Sample configurations and keep track of the {@link #getBest() best} one.
+	 * 
+	 * @param aTrials the number of configurations to execute.
+	 */
+	public RandomSearch(String aResultKey, String aResultAttribute, int aTrials)
+	{
+		super(aResultKey, aResultAttribute);
+		trials = aTrials;
+	}
+
+	@Override
+	public void init(ParameterSpace aParameterSpace)
+	{
+		super.init(aParameterSpace);
+		count = 0;
+	}
+
+	@Override
+	public Map<String, Object> next()
+	{
+		if (count >= trials) {
+			return null;
+		}
+
+		long ordinal = sample();
+		if (ordinal < 0) {
+			return null;
+		}
+
+		count++;
+		return getParameterSpace().get(ordinal);
+	}
+}
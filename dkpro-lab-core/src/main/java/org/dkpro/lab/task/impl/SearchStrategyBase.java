@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *   
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.dkpro.lab.task.ParameterSpace;
+import org.dkpro.lab.task.SearchStrategy;
+
+/**
+ * Base class for search strategies which sample parameter combinations by their ordinal. The
+ * parameter space must consist of {@link org.dkpro.lab.task.IndexedDimension indexed
+ * dimensions}.
+ * <p>
+ * By default, larger results are better. Configurations for which no result was found are
+ * considered worse than all others.
+ */
+public abstract class SearchStrategyBase
+	implements SearchStrategy
+{
+	private static final int MAX_SAMPLING_ATTEMPTS = 1000;
+
+	private final String resultKey;
+	private final String resultAttribute;
+	private boolean minimize = false;
+	private Random random = new Random();
+
+	private ParameterSpace parameterSpace;
+	private Set<Long> sampled;
+	private Map<String, Object> best;
+	private double bestResult = Double.NaN;
+
+	/**
+	 * @param aResultKey
+	 *            the key of the properties file containing the result in the subtask contexts.
+	 * @param aResultAttribute
+	 *            the property containing the result.
+	 */
+	public SearchStrategyBase(String aResultKey, String aResultAttribute)
+	{
+		resultKey = aResultKey;
+		resultAttribute = aResultAttribute;
+	}
+
+	@Override
+	public String getResultKey()
+	{
+		return resultKey;
+	}
+
+	@Override
+	public String getResultAttribute()
+	{
+		return resultAttribute;
+	}
+
+	/**
+	 * Whether smaller results are better, e.g. if the result is an error rate. Default: false.
+	 */
+	public void setMinimize(boolean aMinimize)
+	{
+		minimize = aMinimize;
+	}
+
+	public boolean isMinimize()
+	{
+		return minimize;
+	}
+
+	/**
+	 * Set the seed for sampling the configurations, so that a search can be repeated.
+	 */
+	public void setSeed(long aSeed)
+	{
+		random = new Random(aSeed);
+	}
+
+	@Override
+	public void init(ParameterSpace aParameterSpace)
+	{
+		if (!aParameterSpace.isIndexed()) {
+			throw new IllegalArgumentException(
+					"Search strategies require all dimensions to be indexed dimensions");
+		}
+
+		parameterSpace = aParameterSpace;
+		sampled = new HashSet<Long>();
+		best = null;
+		bestResult = Double.NaN;
+	}
+
+	@Override
+	public void report(Map<String, Object> aConfiguration, double aResult)
+	{
+		if (!Double.isNaN(aResult) && (best == null || score(aResult) > score(bestResult))) {
+			best = aConfiguration;
+			bestResult = aResult;
+		}
+	}
+
+	/**
+	 * Get the configuration with the best result reported so far.
+	 * 
+	 * @return the configuration or {@code null} if no result has been reported.
+	 */
+	public Map<String, Object> getBest()
+	{
+		return best;
+	}
+
+	public double getBestResult()
+	{
+		return bestResult;
+	}
+
+	/**
+	 * Convert a result into a score where larger is better.
+	 * 
+	 * @return the score or negative infinity if there is no result.
+	 */
+	protected double score(double aResult)
+	{
+		if (Double.isNaN(aResult)) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return minimize ? -aResult : aResult;
+	}
+
+	protected ParameterSpace getParameterSpace()
+	{
+		return parameterSpace;
+	}
+
+	protected Random getRandom()
+	{
+		return random;
+	}
+
+	/**
+	 * Sample a parameter combination which is allowed by the constraints and which has not been
+	 * sampled before.
+	 * 
+	 * @return the ordinal of the combination or -1 if no such combination was found.
+	 */
+	protected long sample()
+	{
+		long gridSize = parameterSpace.getGridSize();
+		for (int i = 0; i < MAX_SAMPLING_ATTEMPTS && sampled.size() < gridSize; i++) {
+			long ordinal = gridSize <= Integer.MAX_VALUE ? random.nextInt((int) gridSize)
+					: Math.floorMod(random.nextLong(), gridSize);
+			if (isCandidate(ordinal)) {
+				sampled.add(ordinal);
+				return ordinal;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if the given parameter combination is allowed by the constraints and has not been
+	 * sampled before.
+	 */
+	protected boolean isCandidate(long aOrdinal)
+	{
+		return !sampled.contains(aOrdinal)
+				&& parameterSpace.isAllowed(parameterSpace.get(aOrdinal));
+	}
+
+	/**
+	 * Record that the given parameter combination has been chosen by other means than
+	 * {@link #sample()}.
+	 */
+	protected void markSampled(long aOrdinal)
+	{
+		sampled.add(aOrdinal);
+	}
+}
@@ -41,6 +41,7 @@ import org.dkpro.lab.Util;
 import org.dkpro.lab.conversion.ConversionService;
 import org.dkpro.lab.engine.TaskContext;
 import org.dkpro.lab.reporting.Report;
+import org.dkpro.lab.reporting.ReportBase;
 import org.dkpro.lab.storage.StorageService;
 import org.dkpro.lab.storage.impl.PropertiesAdapter;
 import org.dkpro.lab.task.Discriminator;
@@ -49,7 +50,7 @@ import org.dkpro.lab.task.Task;
 import org.dkpro.lab.task.TaskContextMetadata;
 
 public class TaskBase
-	implements Task
+	implements Task, Cloneable
 {
 	private final Log log = LogFactory.getLog(getClass());
 
@@ -416,6 +417,37 @@ public class TaskBase
 		return reports;
 	}
 
+	/**
+	 * Create a copy of this task which can be configured and executed independently of this
+	 * task, e.g. to run several configurations of a batch task concurrently. Reports derived from
+	 * {@link ReportBase} are copied as well. Fields of subclasses are copied shallowly, so
+	 * subclasses holding mutable state must override this method to copy that state.
+	 */
+	@Override
+	public TaskBase clone()
+	{
+		try {
+			TaskBase clone = (TaskBase) super.clone();
+			clone.attributes = new HashMap<String, String>(attributes);
+			clone.analyzedAttributes = new HashMap<String, String>(analyzedAttributes);
+			clone.discriminators = new HashMap<String, String>(discriminators);
+			clone.analyzedDiscriminators = new HashMap<String, String>(analyzedDiscriminators);
+			clone.imports = new HashMap<String, String>(imports);
+			clone.reports = new ArrayList<Report>();
+			for (Report report : reports) {
+				clone.reports.add(report instanceof ReportBase ? ((ReportBase) report).clone()
+						: report);
+			}
+			clone.initialized = false;
+			clone.didRun = false;
+			clone.aContext = null;
+			return clone;
+		}
+		catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	@Override
 	public void persist(final TaskContext aContext)
 		throws IOException
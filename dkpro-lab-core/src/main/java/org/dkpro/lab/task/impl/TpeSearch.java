@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *   
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dkpro.lab.task.Dimension;
+import org.dkpro.lab.task.IndexedDimension;
+import org.dkpro.lab.task.ParameterSpace;
+
+/**
+ * Simple Bayesian optimization using a tree-structured Parzen estimator (TPE). After a number of
+ * random configurations, the configurations executed so far are split into the good ones with
+ * the best results and the others. For each dimension, the distribution of the values among
+ * the good configurations and among the others is estimated. The next configuration is chosen
+ * among candidates drawn from the distribution of the good configurations, taking the one whose
+ * values are most likely to be good rather than bad.
+ * <p>
+ * The dimensions are treated as independent and categorical, i.e. the order of their values is
+ * not considered.
+ */
+public class TpeSearch
+	extends SearchStrategyBase
+{
+	private final int trials;
+	private int startupTrials = 10;
+	private double gamma = 0.25;
+	private int candidates = 24;
+
+	private int count;
+	private final List<Observation> observations = new ArrayList<Observation>();
+	private final Map<Map<String, Object>, int[]> running =
+			new IdentityHashMap<Map<String, Object>, int[]>();
+
+	/**
+	 * @param aTrials the number of configurations to execute.
+	 */
+	public TpeSearch(String aResultKey, String aResultAttribute, int aTrials)
+	{
+		super(aResultKey, aResultAttribute);
+		trials = aTrials;
+	}
+
+	/**
+	 * Set the number of configurations sampled at random before the results are used.
+	 * Default: 10.
+	 */
+	public void setStartupTrials(int aStartupTrials)
+	{
+		startupTrials = aStartupTrials;
+	}
+
+	/**
+	 * Set the fraction of the configurations considered good. Default: 0.25.
+	 */
+	public void setGamma(double aGamma)
+	{
+		gamma = aGamma;
+	}
+
+	/**
+	 * Set the number of candidates drawn to choose the next configuration. Default: 24.
+	 */
+	public void setCandidates(int aCandidates)
+	{
+		candidates = aCandidates;
+	}
+
+	@Override
+	public void init(ParameterSpace aParameterSpace)
+	{
+		super.init(aParameterSpace);
+		count = 0;
+		observations.clear();
+		running.clear();
+	}
+
+	@Override
+	public Map<String, Object> next()
+	{
+		if (count >= trials) {
+			return null;
+		}
+
+		long ordinal = observations.size() < startupTrials ? sample() : suggest();
+		if (ordinal < 0) {
+			return null;
+		}
+
+		count++;
+		Map<String, Object> config = getParameterSpace().get(ordinal);
+		running.put(config, getParameterSpace().getIndexes(ordinal));
+		return config;
+	}
+
+	@Override
+	public void report(Map<String, Object> aConfiguration, double aResult)
+	{
+		super.report(aConfiguration, aResult);
+		int[] indexes = running.remove(aConfiguration);
+		if (indexes != null) {
+			observations.add(new Observation(indexes, score(aResult)));
+		}
+	}
+
+	private long suggest()
+	{
+		Collections.sort(observations, new Comparator<Observation>()
+		{
+			@Override
+			public int compare(Observation aObs1, Observation aObs2)
+			{
+				return Double.compare(aObs2.score, aObs1.score);
+			}
+		});
+		int good = Math.max(1, (int) Math.ceil(gamma * observations.size()));
+
+		Dimension<?>[] dimensions = getParameterSpace().getDimensions();
+		double[][] goodDensity = new double[dimensions.length][];
+		double[][] badDensity = new double[dimensions.length][];
+		for (int d = 0; d < dimensions.length; d++) {
+			int size = ((IndexedDimension<?>) dimensions[d]).size();
+			if (size > 0) {
+				goodDensity[d] = density(observations.subList(0, good), d, size);
+				badDensity[d] = density(observations.subList(good, observations.size()), d,
+						size);
+			}
+		}
+
+		long best = -1;
+		double bestRatio = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < candidates; c++) {
+			int[] indexes = new int[dimensions.length];
+			double ratio = 0;
+			for (int d = 0; d < dimensions.length; d++) {
+				if (goodDensity[d] == null) {
+					indexes[d] = -1;
+					continue;
+				}
+				indexes[d] = draw(goodDensity[d]);
+				ratio += Math.log(goodDensity[d][indexes[d]])
+						- Math.log(badDensity[d][indexes[d]]);
+			}
+
+			long ordinal = getParameterSpace().getOrdinal(indexes);
+			if (ratio > bestRatio && isCandidate(ordinal)) {
+				best = ordinal;
+				bestRatio = ratio;
+			}
+		}
+
+		if (best < 0) {
+			// All candidates have already been executed
+			return sample();
+		}
+
+		markSampled(best);
+		return best;
+	}
+
+	/**
+	 * Estimate the distribution of the values of a dimension among the given observations. Each
+	 * value is counted once more than it was observed, so no value has zero probability.
+	 */
+	private static double[] density(List<Observation> aObservations, int aDimension,
+			int aSize)
+	{
+		double[] density = new double[aSize];
+		for (int i = 0; i < aSize; i++) {
+			density[i] = 1;
+		}
+		for (Observation obs : aObservations) {
+			density[obs.indexes[aDimension]]++;
+		}
+		for (int i = 0; i < aSize; i++) {
+			density[i] /= aObservations.size() + aSize;
+		}
+		return density;
+	}
+
+	private int draw(double[] aDensity)
+	{
+		double r = getRandom().nextDouble();
+		for (int i = 0; i < aDensity.length - 1; i++) {
+			r -= aDensity[i];
+			if (r < 0) {
+				return i;
+			}
+		}
+		return aDensity.length - 1;
+	}
+
+	private static class Observation
+	{
+		private final int[] indexes;
+		private final double score;
+
+		public Observation(int[] aIndexes, double aScore)
+		{
+			indexes = aIndexes;
+			score = aScore;
+		}
+	}
+}
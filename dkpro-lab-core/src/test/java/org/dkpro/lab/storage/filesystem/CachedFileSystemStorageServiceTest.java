@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static org.dkpro.lab.task.Task.DISCRIMINATORS_KEY;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dkpro.lab.storage.impl.PropertiesAdapter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachedFileSystemStorageServiceTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testEvictionAndInvalidation()
+	{
+		CachedFileSystemStorageService storage = new CachedFileSystemStorageService();
+		storage.setStorageRoot(folder.getRoot());
+		storage.setMaxCacheWeight(4);
+
+		// Each entry weighs two: one for the entry and one for the single property
+		store(storage, "ctx-1", "1");
+		store(storage, "ctx-2", "2");
+		assertEquals(2, storage.getCacheSize());
+
+		assertEquals("1", read(storage, "ctx-1"));
+		assertEquals(1, storage.getCacheHits());
+
+		// ctx-2 is the least recently used one now
+		store(storage, "ctx-3", "3");
+		assertEquals(2, storage.getCacheSize());
+		assertEquals(1, storage.getCacheEvictions());
+
+		assertEquals("2", read(storage, "ctx-2"));
+		assertEquals(1, storage.getCacheMisses());
+
+		// Another process changes the file
+		FileSystemStorageService other = new FileSystemStorageService();
+		other.setStorageRoot(folder.getRoot());
+		other.storeBinary("ctx-2", DISCRIMINATORS_KEY, new PropertiesAdapter(
+				Collections.singletonMap("x", "changed")));
+		assertEquals("changed", read(storage, "ctx-2"));
+	}
+
+	private void store(FileSystemStorageService aStorage, String aId, String aValue)
+	{
+		Map<String, String> discriminators = new HashMap<String, String>();
+		discriminators.put("x", aValue);
+		aStorage.storeBinary(aId, DISCRIMINATORS_KEY, new PropertiesAdapter(discriminators));
+	}
+
+	private String read(FileSystemStorageService aStorage, String aId)
+	{
+		return aStorage.retrieveBinary(aId, DISCRIMINATORS_KEY, new PropertiesAdapter()).getMap()
+				.get("x");
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.dkpro.lab.engine.impl.DefaultTaskContext;
+import org.dkpro.lab.storage.StorageService.AccessMode;
+import org.dkpro.lab.storage.StorageService.StorageKey;
+import org.dkpro.lab.storage.impl.StringAdapter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentAddressedStorageServiceTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ContentAddressedStorageService storage;
+
+	@Before
+	public void setup()
+	{
+		storage = new ContentAddressedStorageService();
+		storage.setStorageRoot(folder.getRoot());
+		storage.setMinBlobSize(0);
+		assumeTrue(storage.isDeduplicationSupported());
+	}
+
+	@Test
+	public void testDeduplication()
+		throws Exception
+	{
+		storage.storeBinary("ctx-1", "data.txt", new StringAdapter("same"));
+		storage.storeBinary("ctx-2", "data.txt", new StringAdapter("same"));
+
+		File file1 = storage.locateKey("ctx-1", "data.txt");
+		File file2 = storage.locateKey("ctx-2", "data.txt");
+		assertTrue(Files.isSameFile(file1.toPath(), file2.toPath()));
+		assertEquals(1, countBlobs());
+
+		storage.delete("ctx-1");
+		assertEquals(1, countBlobs());
+		storage.delete("ctx-2");
+		assertEquals(0, countBlobs());
+	}
+
+	@Test
+	public void testOverwrite()
+		throws Exception
+	{
+		storage.storeBinary("ctx-1", "data.txt", new StringAdapter("first"));
+		storage.storeBinary("ctx-1", "data.txt", new StringAdapter("second"));
+		assertEquals(1, countBlobs());
+		assertTrue(storage.locateKey("ctx-1", "data.txt").canWrite());
+
+		// Data below the minimum blob size is not deduplicated any more
+		storage.setMinBlobSize(1024);
+		storage.storeBinary("ctx-1", "data.txt", new StringAdapter("third"));
+		assertEquals(0, countBlobs());
+		assertFalse(FileUtils.readFileToString(storage.locateKey("ctx-1",
+				ContentAddressedStorageService.MANIFEST_KEY), "UTF-8").contains("data.txt"));
+	}
+
+	@Test
+	public void testImportRemovedBlob()
+		throws Exception
+	{
+		storage.storeBinary("ctx-1", "folder/a.txt", new StringAdapter("content"));
+
+		// Another process removed the blob, e.g. while the file was relinked
+		FileUtils.deleteDirectory(new File(folder.getRoot(),
+				ContentAddressedStorageService.BLOB_FOLDER));
+
+		storage.copy("ctx-2", "folder", new StorageKey("ctx-1", "folder"), AccessMode.ADD_ONLY);
+		assertTrue(Files.isSameFile(storage.locateKey("ctx-1", "folder/a.txt").toPath(),
+				storage.locateKey("ctx-2", "folder/a.txt").toPath()));
+		assertEquals(1, countBlobs());
+	}
+
+	@Test
+	public void testFolderImport()
+		throws Exception
+	{
+		File source = storage.locateKey("ctx-1", "folder");
+		source.mkdirs();
+		FileUtils.writeStringToFile(new File(source, "a.txt"), "content", "UTF-8");
+
+		// Folders imported for writing are copied
+		storage.copy("ctx-3", "folder", new StorageKey("ctx-1", "folder"), AccessMode.READWRITE);
+		assertFalse(Files.isSameFile(new File(source, "a.txt").toPath(),
+				storage.locateKey("ctx-3", "folder/a.txt").toPath()));
+
+		storage.copy("ctx-2", "folder", new StorageKey("ctx-1", "folder"), AccessMode.ADD_ONLY);
+		File target = storage.locateKey("ctx-2", "folder/a.txt");
+		assertTrue(Files.isSameFile(new File(source, "a.txt").toPath(), target.toPath()));
+
+		// Writing to the imported file must not affect the source
+		storage.unshare("ctx-2", "folder/a.txt");
+		assertFalse(Files.isSameFile(new File(source, "a.txt").toPath(), target.toPath()));
+		FileUtils.writeStringToFile(target, "changed", "UTF-8");
+		assertEquals("content", FileUtils.readFileToString(new File(source, "a.txt"), "UTF-8"));
+
+		storage.delete("ctx-1");
+		assertEquals(0, countBlobs());
+	}
+
+	@Test
+	public void testWritableFolder()
+		throws Exception
+	{
+		storage.storeBinary("ctx-1", "folder/a.txt", new StringAdapter("same"));
+		storage.storeBinary("ctx-2", "folder/a.txt", new StringAdapter("same"));
+
+		DefaultTaskContext context = new DefaultTaskContext(null);
+		context.setStorageService(storage);
+		context.getMetadata().setId("ctx-2");
+
+		// Reading the folder keeps the data shared
+		File target = new File(context.getFolder("folder", AccessMode.READONLY), "a.txt");
+		File source = storage.locateKey("ctx-1", "folder/a.txt");
+		assertTrue(Files.isSameFile(source.toPath(), target.toPath()));
+
+		// Writing to a file in the folder must not affect the other context
+		target = new File(context.getFolder("folder", AccessMode.READWRITE), "a.txt");
+		assertFalse(Files.isSameFile(source.toPath(), target.toPath()));
+		FileUtils.writeStringToFile(target, "changed", "UTF-8");
+		assertEquals("same", FileUtils.readFileToString(source, "UTF-8"));
+		assertEquals(1, countBlobs());
+	}
+
+	private int countBlobs()
+	{
+		File blobs = new File(folder.getRoot(), ContentAddressedStorageService.BLOB_FOLDER);
+		return blobs.exists() ? FileUtils.listFiles(blobs, null, true).size() : 0;
+	}
+}
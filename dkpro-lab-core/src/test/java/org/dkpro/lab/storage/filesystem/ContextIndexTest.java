@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static java.util.Arrays.asList;
+import static org.dkpro.lab.task.Task.DISCRIMINATORS_KEY;
+import static org.dkpro.lab.task.TaskContextMetadata.METADATA_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.dkpro.lab.storage.impl.PropertiesAdapter;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContextIndexTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File root;
+
+	@Before
+	public void setup()
+	{
+		root = folder.getRoot();
+	}
+
+	@Test
+	public void testLookupAcrossInstances()
+	{
+		FileSystemStorageService storage1 = createStorage();
+		store(storage1, "ctx-1", "TypeA", 1000, "x", "1");
+		store(storage1, "ctx-2", "TypeA", 2000, "x", "2");
+		store(storage1, "ctx-3", "TypeB", 3000, "x", "1");
+
+		// A second instance must pick up the persisted index
+		FileSystemStorageService storage2 = createStorage();
+		assertEquals(3, storage2.getContexts().size());
+		assertEquals("ctx-3", storage2.getContexts().get(0).getId());
+
+		List<TaskContextMetadata> matches = storage2.getContexts("TypeA",
+				Collections.singletonMap("x", "1"));
+		assertEquals(1, matches.size());
+		assertEquals("ctx-1", matches.get(0).getId());
+
+		// Changes made by the second instance become visible to the first
+		store(storage2, "ctx-4", "TypeA", 4000, "x", "1");
+		assertEquals("ctx-4", storage1.getLatestContext("TypeA",
+				Collections.singletonMap("x", "1")).getId());
+
+		storage2.delete("ctx-4");
+		assertEquals("ctx-1", storage1.getLatestContext("TypeA",
+				Collections.singletonMap("x", "1")).getId());
+
+		assertEquals(1, storage1.getContexts("TypeB",
+				Collections.singletonMap("x", "1")).size());
+	}
+
+	@Test
+	public void testRebuild()
+		throws Exception
+	{
+		FileSystemStorageService storage = createStorage();
+		store(storage, "ctx-1", "TypeA", 1000, "x", "1");
+		store(storage, "ctx-2", "TypeA", 2000, "x", "2");
+
+		assertEquals(2, storage.getContexts().size());
+
+		// Context removed behind the back of the storage service is skipped when it would be
+		// returned and dropped from listings once the verify interval has passed
+		FileUtils.deleteDirectory(new File(root, "ctx-2"));
+		assertEquals("ctx-1", storage.getLatestContext("TypeA",
+				Collections.<String, String> emptyMap()).getId());
+		storage.setIndexVerifyInterval(0);
+		assertEquals(1, storage.getContexts().size());
+
+		// A corrupt index is rebuilt from the storage root
+		File journal = new File(new File(root, ContextIndex.INDEX_FOLDER),
+				ContextIndex.JOURNAL_FILE);
+		FileUtils.writeStringToFile(journal, "garbage\n", "UTF-8");
+		FileSystemStorageService storage2 = createStorage();
+		assertEquals(1, storage2.getContexts().size());
+		assertEquals("ctx-1", storage2.getContexts().get(0).getId());
+		assertTrue(FileUtils.readFileToString(journal, "UTF-8").contains("ctx-1"));
+	}
+
+	@Test
+	public void testTypePartitions()
+	{
+		FileSystemStorageService storage = createStorage();
+		store(storage, "ctx-1", "TypeA", 1000, "x", "1");
+		store(storage, "ctx-2", "TypeB", 2000, "x", "1");
+		store(storage, "ctx-3", "TypeC", 3000, "x", "1");
+		store(storage, "ctx-4", "TypeA", 4000, "x", "2");
+
+		assertEquals(asList("ctx-4", "ctx-1"), ids(storage, "TypeA"));
+		assertEquals(asList("ctx-2"), ids(storage, "TypeB"));
+		assertEquals(asList("ctx-3"), ids(storage, "TypeC"));
+
+		// Deleted contexts leave their type, changed types move the context
+		storage.delete("ctx-4");
+		storage.delete("ctx-3");
+		store(storage, "ctx-2", "TypeA", 2000, "x", "1");
+		assertEquals(asList("ctx-2", "ctx-1"), ids(storage, "TypeA"));
+		assertEquals(Collections.emptyList(), ids(storage, "TypeB"));
+		assertEquals(Collections.emptyList(), ids(storage, "TypeC"));
+
+		// The rebuilt index has the same partitions
+		storage.rebuildIndex();
+		FileSystemStorageService storage2 = createStorage();
+		for (FileSystemStorageService instance : asList(storage, storage2)) {
+			assertEquals(asList("ctx-2", "ctx-1"), ids(instance, "TypeA"));
+			assertEquals(Collections.emptyList(), ids(instance, "TypeB"));
+			assertEquals(Collections.emptyList(), ids(instance, "TypeC"));
+			assertEquals(2, instance.getContexts().size());
+		}
+	}
+
+	private static List<String> ids(FileSystemStorageService aStorage, String aType)
+	{
+		List<String> ids = new ArrayList<String>();
+		for (TaskContextMetadata meta : aStorage.getContexts(aType,
+				Collections.<String, String> emptyMap())) {
+			assertEquals(aType, meta.getType());
+			ids.add(meta.getId());
+		}
+		return ids;
+	}
+
+	private FileSystemStorageService createStorage()
+	{
+		FileSystemStorageService storage = new FileSystemStorageService();
+		storage.setStorageRoot(root);
+		return storage;
+	}
+
+	private void store(FileSystemStorageService aStorage, String aId, String aType, long aEnd,
+			String aDiscriminator, String aValue)
+	{
+		Map<String, String> discriminators = new HashMap<String, String>();
+		discriminators.put(aDiscriminator, aValue);
+		aStorage.storeBinary(aId, DISCRIMINATORS_KEY, new PropertiesAdapter(discriminators));
+
+		TaskContextMetadata meta = new TaskContextMetadata();
+		meta.setId(aId);
+		meta.setType(aType);
+		meta.setStart(0);
+		meta.setEnd(aEnd);
+		aStorage.storeBinary(aId, METADATA_KEY, meta);
+	}
+}
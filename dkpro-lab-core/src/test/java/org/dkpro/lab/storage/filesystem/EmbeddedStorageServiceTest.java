@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.dkpro.lab.engine.impl.DefaultTaskContext;
+import org.dkpro.lab.storage.StorageService.AccessMode;
+import org.dkpro.lab.storage.StorageService.StorageKey;
+import org.dkpro.lab.storage.impl.StringAdapter;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+public class EmbeddedStorageServiceTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedStorageService storage;
+
+	@Before
+	public void setup()
+	{
+		storage = new EmbeddedStorageService();
+		storage.setStorageRoot(folder.getRoot());
+		storage.setMaxEmbeddedSize(16);
+	}
+
+	@After
+	public void teardown()
+	{
+		storage.close();
+	}
+
+	@Test
+	public void testSmallAndLargeKeys()
+		throws Exception
+	{
+		String large = StringUtils.repeat("x", 100);
+		storage.storeBinary("ctx-1", "small.txt", new StringAdapter("small"));
+		storage.storeBinary("ctx-1", "large.txt", new StringAdapter(large));
+
+		File small = new File(new File(folder.getRoot(), "ctx-1"), "small.txt");
+		assertFalse(small.exists());
+		assertTrue(new File(new File(folder.getRoot(), "ctx-1"), "large.txt").exists());
+
+		assertTrue(storage.containsKey("ctx-1", "small.txt"));
+		assertEquals("small", storage.retrieveBinary("ctx-1", "small.txt",
+				new StringAdapter()).getString());
+		assertEquals(large, storage.retrieveBinary("ctx-1", "large.txt",
+				new StringAdapter()).getString());
+
+		// Locating a key moves it to the file system
+		assertEquals(small, storage.locateKey("ctx-1", "small.txt"));
+		assertEquals("small", FileUtils.readFileToString(small, "UTF-8"));
+
+		storage.delete("ctx-1");
+		assertFalse(storage.containsContext("ctx-1"));
+	}
+
+	@Test
+	public void testMoveIsCommitted()
+		throws Exception
+	{
+		storage.storeBinary("ctx-1", "small.txt", new StringAdapter("small"));
+		File small = storage.locateKey("ctx-1", "small.txt");
+		FileUtils.writeStringToFile(small, "changed", "UTF-8");
+
+		// Without closing the store, the file on disk must no longer hold the moved key
+		File copy = folder.newFile("copy.mv.db");
+		FileUtils.copyFile(new File(new File(folder.getRoot(),
+				EmbeddedStorageService.STORE_FOLDER), EmbeddedStorageService.STORE_FILE), copy);
+		MVStore store = new MVStore.Builder().fileName(copy.getPath()).readOnly().open();
+		try {
+			MVMap<String, byte[]> data = store.openMap("data");
+			assertFalse(data.containsKey("ctx-1/small.txt"));
+		}
+		finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testStoreInUse()
+	{
+		storage.storeBinary("ctx-1", "small.txt", new StringAdapter("small"));
+
+		EmbeddedStorageService other = new EmbeddedStorageService();
+		other.setStorageRoot(folder.getRoot());
+		try {
+			other.containsKey("ctx-1", "small.txt");
+			fail("Store is in use and must not be opened");
+		}
+		catch (DataAccessResourceFailureException e) {
+			assertTrue(e.getMessage().contains("in use by another process"));
+		}
+		finally {
+			other.close();
+		}
+	}
+
+	@Test
+	public void testContextsSurviveReopen()
+	{
+		TaskContextMetadata meta = new TaskContextMetadata();
+		meta.setId("ctx-1");
+		meta.setType("type-a");
+		storage.storeBinary("ctx-1", TaskContextMetadata.METADATA_KEY, meta);
+
+		storage.close();
+		assertEquals(1, storage.getContexts("type-a", null).size());
+		assertEquals(0, storage.getContexts("type-b", null).size());
+		assertEquals("ctx-1", storage.getContexts().get(0).getId());
+
+		storage.delete("ctx-1");
+		assertEquals(0, storage.getContexts().size());
+	}
+
+	@Test
+	public void testFolder()
+		throws Exception
+	{
+		storage.storeBinary("ctx-1", "folder/a.txt", new StringAdapter("a"));
+		storage.storeBinary("ctx-1", "folder/sub/b.txt", new StringAdapter("b"));
+
+		DefaultTaskContext context = new DefaultTaskContext(null);
+		context.setStorageService(storage);
+		context.getMetadata().setId("ctx-1");
+
+		File dir = context.getFolder("folder", AccessMode.READONLY);
+		assertEquals("a", FileUtils.readFileToString(new File(dir, "a.txt"), "UTF-8"));
+		assertEquals("b", FileUtils.readFileToString(new File(dir, "sub/b.txt"), "UTF-8"));
+
+		// Imported folders include the keys which were embedded
+		storage.storeBinary("ctx-2", "other/c.txt", new StringAdapter("c"));
+		storage.copy("ctx-3", "other", new StorageKey("ctx-2", "other"), AccessMode.READWRITE);
+		assertEquals("c", FileUtils.readFileToString(storage.locateKey("ctx-3", "other/c.txt"),
+				"UTF-8"));
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.FileUtils;
+import org.dkpro.lab.Util;
+import org.dkpro.lab.storage.StorageService.AccessMode;
+import org.dkpro.lab.storage.StorageService.StorageKey;
+import org.dkpro.lab.storage.filesystem.FileSystemStorageService.CopyStrategy;
+import org.dkpro.lab.storage.impl.StringAdapter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+public class FileSystemStorageServiceTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCopyOnWriteImport()
+		throws Exception
+	{
+		FileSystemStorageService storage = new FileSystemStorageService();
+		storage.setStorageRoot(folder.getRoot());
+		storage.setCopyStrategy(CopyStrategy.COPY_ON_WRITE);
+
+		File source = storage.locateKey("ctx-1", "folder/a.txt");
+		FileUtils.writeStringToFile(source, "content", "UTF-8");
+
+		storage.copy("ctx-2", "folder", new StorageKey("ctx-1", "folder"), AccessMode.READWRITE);
+		File target = storage.locateKey("ctx-2", "folder/a.txt");
+		assertEquals("content", FileUtils.readFileToString(target, "UTF-8"));
+
+		// The data is not shared, so it can be modified in place right away
+		assertEquals(1, Util.getLinkCount(target));
+		FileUtils.writeStringToFile(target, "changed", "UTF-8");
+		assertEquals("content", FileUtils.readFileToString(source, "UTF-8"));
+		assertTrue(source.canWrite());
+	}
+
+	@Test
+	public void testReadMapped()
+		throws Exception
+	{
+		FileSystemStorageService storage = new FileSystemStorageService();
+		storage.setStorageRoot(folder.getRoot());
+
+		File source = folder.newFile("source.txt");
+		FileUtils.writeStringToFile(source, "mapped content", "UTF-8");
+		storage.storeBinary("ctx", "data", new FileInputStream(source));
+
+		assertEquals("mapped content", toString(storage.retrieveMapped("ctx", "data")));
+		assertEquals("content", toString(storage.retrieveMapped("ctx", "data", 7, 7)));
+	}
+
+	@Test
+	public void testStoreFromPipe()
+		throws Exception
+	{
+		FileSystemStorageService storage = new FileSystemStorageService();
+		storage.setStorageRoot(folder.getRoot());
+
+		// Pipes report a size of 0 and cannot be positioned
+		final File pipe = new File(folder.getRoot(), "pipe");
+		Process mkfifo;
+		try {
+			mkfifo = new ProcessBuilder("mkfifo", pipe.getPath()).start();
+		}
+		catch (IOException e) {
+			mkfifo = null;
+		}
+		assumeTrue(mkfifo != null && mkfifo.waitFor() == 0);
+
+		Thread writer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try {
+					FileUtils.writeStringToFile(pipe, "piped content", "UTF-8");
+				}
+				catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		writer.start();
+		storage.storeBinary("ctx", "data", new FileInputStream(pipe));
+		writer.join();
+
+		assertEquals("piped content", storage.retrieveBinary("ctx", "data",
+				new StringAdapter()).getString());
+	}
+
+	@Test
+	public void testMissingKey()
+		throws Exception
+	{
+		FileSystemStorageService storage = new FileSystemStorageService();
+		storage.setStorageRoot(folder.getRoot());
+		storage.setRetryTimeout(200);
+		storage.setBackoff(10, 50);
+		assertFalse(storage.isFailFast());
+
+		// Without fail-fast, a missing key is retried until the timeout expires
+		long start = System.currentTimeMillis();
+		try {
+			storage.retrieveBinary("ctx", "missing.txt", new StringAdapter());
+			fail("Expected the read to time out");
+		}
+		catch (DataAccessResourceFailureException e) {
+			// Expected
+		}
+		assertTrue(System.currentTimeMillis() - start >= 200);
+		assertTrue(storage.getRetryCount() > 0);
+		assertEquals(1, storage.getTimeoutCount());
+		assertEquals(0, storage.getFailFastCount());
+
+		// With fail-fast, it fails right away
+		storage.setFailFast(true);
+		long retries = storage.getRetryCount();
+		try {
+			storage.retrieveBinary("ctx", "missing.txt", new StringAdapter());
+			fail("Expected the read to fail");
+		}
+		catch (DataAccessResourceFailureException e) {
+			// Expected
+		}
+		assertEquals(retries, storage.getRetryCount());
+		assertEquals(1, storage.getTimeoutCount());
+		assertEquals(1, storage.getFailFastCount());
+	}
+
+	@Test
+	public void testReadWhileWriting()
+		throws Exception
+	{
+		final FileSystemStorageService storage = new FileSystemStorageService();
+		storage.setStorageRoot(folder.getRoot());
+		storage.setFailFast(true);
+		storage.setRetryTimeout(10000);
+		storage.setBackoff(10, 100);
+
+		// A writer is busy with the key, so fail-fast waits for it
+		final File tmp = new File(storage.locateKey("ctx", ""), "data.txt.tmp");
+		FileUtils.writeStringToFile(tmp, "content", "UTF-8");
+		Thread writer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try {
+					Thread.sleep(300);
+					assertTrue(tmp.renameTo(storage.locateKey("ctx", "data.txt")));
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		writer.start();
+
+		long start = System.currentTimeMillis();
+		assertEquals("content", storage.retrieveBinary("ctx", "data.txt", new StringAdapter())
+				.getString());
+		writer.join();
+
+		// The waits are bounded by the backoff rather than by the timeout
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertTrue(storage.getRetryCount() > 0);
+		assertEquals(0, storage.getFailFastCount());
+		assertEquals(0, storage.getTimeoutCount());
+	}
+
+	private static String toString(ByteBuffer aBuffer)
+		throws Exception
+	{
+		byte[] content = new byte[aBuffer.remaining()];
+		aBuffer.get(content);
+		return new String(content, "UTF-8");
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.dkpro.lab.storage.CompressionCodec;
+import org.junit.Test;
+
+public class CodecRegistryTest
+{
+	@Test
+	public void testRoundTrip()
+		throws Exception
+	{
+		CodecRegistry registry = new CodecRegistry();
+		assertNull(registry.getCodec("a.lz4"));
+		registry.setExtendedSuffixes(true);
+		registry.registerPattern("parallel/.*", new GzipCodec(1, 4));
+
+		byte[] data = createData(3 * 1024 * 1024 + 17);
+		for (String key : new String[] { "a.gz", "a.lz4", "a.sz", "parallel/a" }) {
+			assertArrayEquals(key, data, roundTrip(registry.getCodec(key), data));
+		}
+		if (ZstdCodec.isAvailable()) {
+			assertArrayEquals(data, roundTrip(registry.getCodec("a.zst"), data));
+		}
+
+		assertNull(registry.getCodec("a.txt"));
+		assertTrue(registry.getCodec("parallel/a.lz4") instanceof GzipCodec);
+	}
+
+	@Test
+	public void testParallelFlush()
+		throws Exception
+	{
+		GzipCodec codec = new GzipCodec(1, 2);
+		codec.setBlockSize(1024);
+		byte[] data = createData(1536);
+
+		// A partial block is not written when flushing
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		OutputStream os = codec.compress(bos);
+		os.write(data, 0, 512);
+		os.flush();
+		assertEquals(0, bos.size());
+
+		// A full block is
+		os.write(data, 512, 1024);
+		os.flush();
+		int flushed = bos.size();
+		assertTrue(flushed > 0);
+		os.close();
+		assertTrue(bos.size() > flushed);
+
+		InputStream is = codec.decompress(new ByteArrayInputStream(bos.toByteArray()));
+		try {
+			assertArrayEquals(data, IOUtils.toByteArray(is));
+		}
+		finally {
+			is.close();
+		}
+
+		// Closing a stream does not shut down the pool shared by the streams of the codec
+		assertArrayEquals(data, roundTrip(codec, data));
+	}
+
+	private static byte[] roundTrip(CompressionCodec aCodec, byte[] aData)
+		throws Exception
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		OutputStream os = aCodec.compress(bos);
+		os.write(aData);
+		os.close();
+
+		InputStream is = aCodec.decompress(new ByteArrayInputStream(bos.toByteArray()));
+		try {
+			return IOUtils.toByteArray(is);
+		}
+		finally {
+			is.close();
+		}
+	}
+
+	private static byte[] createData(int aLength)
+	{
+		// Somewhat compressible data
+		Random rnd = new Random(0);
+		byte[] data = new byte[aLength];
+		for (int i = 0; i < aLength; i++) {
+			data[i] = (byte) ('a' + rnd.nextInt(8));
+		}
+		return data;
+	}
+}
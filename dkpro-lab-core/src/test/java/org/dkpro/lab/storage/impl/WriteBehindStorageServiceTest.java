@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.storage.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.OutputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.dkpro.lab.storage.StreamWriter;
+import org.dkpro.lab.storage.filesystem.FileSystemStorageService;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+public class WriteBehindStorageServiceTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOrderingAndFlushOnMetadata()
+	{
+		FileSystemStorageService fs = new FileSystemStorageService();
+		fs.setStorageRoot(folder.getRoot());
+		WriteBehindStorageService storage = new WriteBehindStorageService(fs, 4, 8);
+		try {
+			for (int i = 0; i < 100; i++) {
+				storage.storeBinary("ctx-1", "key-" + (i % 5) + ".txt",
+						new StringAdapter(String.valueOf(i)));
+				// Read-your-writes
+				assertEquals(String.valueOf(i), storage.retrieveBinary("ctx-1",
+						"key-" + (i % 5) + ".txt", new StringAdapter()).getString());
+			}
+
+			TaskContextMetadata meta = new TaskContextMetadata();
+			meta.setId("ctx-1");
+			meta.setType("type");
+			storage.storeBinary("ctx-1", TaskContextMetadata.METADATA_KEY, meta);
+
+			// Once the metadata is there, all other data must be there as well
+			assertEquals(0, storage.getPendingWriteCount());
+			assertTrue(fs.containsKey("ctx-1", TaskContextMetadata.METADATA_KEY));
+			for (int k = 0; k < 5; k++) {
+				assertEquals(String.valueOf(95 + k), fs.retrieveBinary("ctx-1",
+						"key-" + k + ".txt", new StringAdapter()).getString());
+			}
+		}
+		finally {
+			storage.shutdown();
+		}
+	}
+
+	@Test
+	public void testLargeAndFailedWrites()
+	{
+		FileSystemStorageService fs = new FileSystemStorageService()
+		{
+			@Override
+			public void storeBinary(String aContextId, String aKey, StreamWriter aProducer)
+			{
+				if (aKey.startsWith("bad")) {
+					throw new DataAccessResourceFailureException("Disk full");
+				}
+				super.storeBinary(aContextId, aKey, aProducer);
+			}
+		};
+		fs.setStorageRoot(folder.getRoot());
+		WriteBehindStorageService storage = new WriteBehindStorageService(fs, 1, 8);
+		storage.setMaxBufferedSize(16);
+		try {
+			// Large data is written synchronously
+			String large = StringUtils.repeat("x", 100000);
+			storage.storeBinary("ctx-1", "small.txt", new StringAdapter("small"));
+			storage.storeBinary("ctx-1", "large.txt", new StringAdapter(large));
+			assertEquals(0, storage.getPendingWriteCount());
+			assertEquals(large, fs.retrieveBinary("ctx-1", "large.txt", new StringAdapter())
+					.getString());
+
+			// Incomplete large data is not stored
+			try {
+				storage.storeBinary("ctx-1", "aborted.txt", new StreamWriter()
+				{
+					@Override
+					public void write(OutputStream aStream)
+						throws Exception
+					{
+						aStream.write(new byte[1000]);
+						throw new IllegalStateException("Producer failed");
+					}
+				});
+				fail("Expected an exception");
+			}
+			catch (DataAccessResourceFailureException e) {
+				assertEquals("Producer failed", e.getCause().getMessage());
+			}
+			assertFalse(fs.containsKey("ctx-1", "aborted.txt"));
+
+			// Failed writes are reported when the context is deleted
+			storage.storeBinary("ctx-2", "bad.txt", new StringAdapter("bad"));
+			try {
+				storage.delete("ctx-2");
+				fail("Expected an exception");
+			}
+			catch (DataAccessResourceFailureException e) {
+				assertEquals("Disk full", e.getCause().getMessage());
+			}
+		}
+		finally {
+			storage.shutdown();
+		}
+	}
+}
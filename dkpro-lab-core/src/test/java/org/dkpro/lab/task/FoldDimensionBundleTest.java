@@ -18,10 +18,16 @@
 package org.dkpro.lab.task;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import static java.util.Arrays.asList;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
@@ -33,6 +39,8 @@ import org.dkpro.lab.task.Discriminator;
 import org.dkpro.lab.task.ParameterSpace;
 import org.dkpro.lab.task.Task;
 import org.dkpro.lab.task.impl.DefaultBatchTask;
+import org.dkpro.lab.task.impl.DiscreteDimension;
+import org.dkpro.lab.task.impl.DynamicDimension;
 import org.dkpro.lab.task.impl.ExecutableTaskBase;
 import org.dkpro.lab.task.impl.FoldDimensionBundle;
 import org.junit.Before;
@@ -206,6 +214,82 @@ public class FoldDimensionBundleTest
             assertEquals(expected, actual.toString());
     }
     
+    /**
+     * Tests that grouping by a key distributes the instances like the equivalent comparator and
+     * that the folds are reused when the parameter space is iterated again.
+     */
+    @Test
+    public void testGroupingKey()
+    {
+        Dimension<String> baseData = Dimension.create("base", "aa/1.txt", "aa/2.txt", "bb/3.txt", 
+                "cc/4.txt", "dd/5.txt", "dd/6.txt", "ee/7.txt",
+                "ff/8.txt", "gg/9.txt", "gg/10.txt");
+
+        FoldDimensionBundle<String> foldBundle = new FoldDimensionBundle<String>("fold",
+                baseData, 3, (String filename) -> new File(filename).getParentFile().getName());
+
+        String expected =
+                "0 - [aa/1.txt, aa/2.txt, ff/8.txt] [bb/3.txt, dd/5.txt, dd/6.txt, cc/4.txt, ee/7.txt, gg/9.txt, gg/10.txt]\n" + 
+                "1 - [bb/3.txt, dd/5.txt, dd/6.txt] [aa/1.txt, aa/2.txt, ff/8.txt, cc/4.txt, ee/7.txt, gg/9.txt, gg/10.txt]\n" + 
+                "2 - [cc/4.txt, ee/7.txt, gg/9.txt, gg/10.txt] [aa/1.txt, aa/2.txt, ff/8.txt, bb/3.txt, dd/5.txt, dd/6.txt]\n";
+
+        StringBuilder actual = new StringBuilder();
+        List<Object> validation = new ArrayList<Object>();
+
+        int n = 0;
+        ParameterSpace pSpace = new ParameterSpace(foldBundle);
+        for (Map<String, Object> config : pSpace) {
+            actual.append(String.format("%d - %s %s\n", n, config.get("fold_validation"),
+                    config.get("fold_training")));
+            validation.add(config.get("fold_validation"));
+            n++;
+        }
+
+        assertEquals(3 , n);
+        assertEquals(expected, actual.toString());
+
+        n = 0;
+        for (Map<String, Object> config : pSpace) {
+            assertSame(validation.get(n), config.get("fold_validation"));
+            n++;
+        }
+    }
+
+    @Test
+    public void testDynamicRandomAccess()
+    {
+        FoldDimensionBundle<String> foldBundle = new FoldDimensionBundle<String>("fold",
+                new DocumentDimension("document"), 2);
+        ParameterSpace pSpace = new ParameterSpace(
+                Dimension.create("corpus", "a1,a2,a3", "b1,b2,b3,b4"), foldBundle);
+
+        // The folds follow the corpus of the requested configuration, not the one accessed last
+        assertEquals(asList("b2", "b4"), pSpace.get(3).get("fold_validation"));
+        assertEquals(asList("b1", "b3"), pSpace.get(3).get("fold_training"));
+        assertEquals(asList("a1", "a3"), pSpace.get(0).get("fold_validation"));
+        assertEquals(asList("a2"), pSpace.get(0).get("fold_training"));
+        assertEquals(asList("b1", "b3"), pSpace.get(2).get("fold_validation"));
+        assertEquals(asList("a2"), pSpace.get(1).get("fold_validation"));
+    }
+
+    @Test
+    public void testCachedFolds()
+    {
+        CountingDimension baseData = new CountingDimension("base", "1", "2", "3", "4");
+        FoldDimensionBundle<String> foldBundle = new FoldDimensionBundle<String>("fold",
+                baseData, 2);
+
+        // The folded dimension is only read again after rewinding or configuring the bundle
+        assertEquals(asList("1", "3"), foldBundle.get(0).get("fold_validation"));
+        assertEquals(asList("2", "4"), foldBundle.get(1).get("fold_validation"));
+        assertEquals(asList("1", "3"), foldBundle.get(0).get("fold_validation"));
+        assertEquals(4, baseData.reads);
+
+        foldBundle.rewind();
+        assertEquals(asList("1", "3"), foldBundle.get(0).get("fold_validation"));
+        assertEquals(8, baseData.reads);
+    }
+
     @Test
     public void testFoldInjection() throws Exception
     {
@@ -259,6 +343,83 @@ public class FoldDimensionBundleTest
         assertEquals(expected, actual.toString());
     }
 
+    /**
+     * Provides the documents of the corpus in the configuration.
+     */
+    private static class CountingDimension
+        extends DiscreteDimension<String>
+    {
+        private int reads;
+
+        public CountingDimension(String aName, String... aValues)
+        {
+            super(aName, aValues);
+        }
+
+        @Override
+        public String get(int aIndex)
+        {
+            reads++;
+            return super.get(aIndex);
+        }
+    }
+
+    private static class DocumentDimension
+        extends Dimension<String>
+        implements IndexedDimension<String>, DynamicDimension
+    {
+        private List<String> documents = Collections.emptyList();
+        private int current = -1;
+
+        public DocumentDimension(String aName)
+        {
+            super(aName);
+        }
+
+        @Override
+        public void setConfiguration(Map<String, Object> aConfig)
+        {
+            documents = asList(((String) aConfig.get("corpus")).split(","));
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return current + 1 < documents.size();
+        }
+
+        @Override
+        public String next()
+        {
+            current++;
+            return current();
+        }
+
+        @Override
+        public String current()
+        {
+            return documents.get(current);
+        }
+
+        @Override
+        public void rewind()
+        {
+            current = -1;
+        }
+
+        @Override
+        public String get(int aIndex)
+        {
+            return documents.get(aIndex);
+        }
+
+        @Override
+        public int size()
+        {
+            return documents.size();
+        }
+    }
+
     @Rule
     public TestName name = new TestName();
 
@@ -18,13 +18,18 @@
 package org.dkpro.lab.task;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.StreamSupport;
 
 import org.dkpro.lab.task.Constraint;
 import org.dkpro.lab.task.Dimension;
 import org.dkpro.lab.task.ParameterSpace;
+import org.dkpro.lab.task.impl.DimensionBundle;
 import org.junit.Test;
 
 public class ParameterSpaceTest
@@ -89,4 +94,144 @@ public class ParameterSpaceTest
 		assertEquals((3 * 2 * 2) - 2, n);
 		assertEquals((3 * 2 * 2), pSpace.getStepCount());
 	}
+
+	@Test
+	public void testRandomAccess()
+	{
+		Dimension<String> letters = Dimension.create("letters", "a", "b", "c");
+		Dimension<Integer> numbers = Dimension.create("numbers", 1, 2);
+		Dimension<Integer> empty = Dimension.create("empty");
+		Dimension<Character> symbols = Dimension.create("symbols", '!', '&');
+
+		ParameterSpace pSpace = new ParameterSpace(letters, numbers, empty, symbols);
+		pSpace.addConstraint(new Constraint()
+		{
+			@Override
+			public boolean isValid(Map<String, Object> aConfiguration)
+			{
+				return !aConfiguration.get("letters").equals("a")
+						|| aConfiguration.get("symbols").equals('!');
+			}
+		});
+
+		List<Map<String, Object>> iterated = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> config : pSpace) {
+			iterated.add(config);
+		}
+
+		List<Map<String, Object>> accessed = new ArrayList<Map<String, Object>>();
+		for (long i = 0; i < pSpace.getGridSize(); i++) {
+			if (pSpace.isAllowed(pSpace.get(i))) {
+				accessed.add(pSpace.get(i));
+			}
+		}
+
+		assertEquals(3 * 2 * 2, pSpace.getGridSize());
+		assertEquals(iterated.size(), pSpace.size());
+		assertEquals(iterated, accessed);
+		assertEquals(iterated.size(),
+				StreamSupport.stream(pSpace.spliterator(), true).count());
+	}
+
+	@Test
+	public void testDimensionConstraint()
+	{
+		Dimension<String> letters = Dimension.create("letters", "a", "b", "c");
+		Dimension<Integer> numbers = Dimension.create("numbers", 1, 2, 3, 4);
+		Dimension<Character> symbols = Dimension.create("symbols", '!', '&');
+
+		Constraint constraint = new Constraint()
+		{
+			@Override
+			public boolean isValid(Map<String, Object> aConfiguration)
+			{
+				return "b".equals(aConfiguration.get("letters"))
+						&& !Integer.valueOf(3).equals(aConfiguration.get("numbers"));
+			}
+		};
+
+		ParameterSpace pSpace = new ParameterSpace(letters, numbers, symbols);
+		pSpace.addConstraint(constraint);
+		List<Map<String, Object>> expected = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> config : pSpace) {
+			expected.add(config);
+		}
+		assertEquals(3 * 4 * 2, pSpace.getStepCount());
+
+		pSpace = new ParameterSpace(letters, numbers, symbols);
+		pSpace.addConstraint(DimensionConstraint.create(constraint, "letters", "numbers"));
+		List<Map<String, Object>> pruned = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> config : pSpace) {
+			pruned.add(config);
+		}
+
+		assertEquals(3 * 2, pruned.size());
+		assertEquals(expected, pruned);
+		// Only the combinations with allowed letters and numbers are built
+		assertEquals(3 * 2, pSpace.getStepCount());
+	}
+
+	@Test
+	public void testDimensionConstraintOnUnknownName()
+	{
+		Dimension<String> letters = Dimension.create("letters", "a", "b");
+		Dimension<Map<String, Object>> bundle = Dimension.createBundle("bundle",
+				new Object[] { "x", 1 },
+				new Object[] { "x", 2 });
+		Dimension<Character> symbols = Dimension.create("symbols", '!', '&');
+
+		Constraint constraint = new Constraint()
+		{
+			@Override
+			public boolean isValid(Map<String, Object> aConfiguration)
+			{
+				return "b".equals(aConfiguration.get("letters"))
+						&& Integer.valueOf(2).equals(aConfiguration.get("x"));
+			}
+		};
+
+		// "x" is provided by the bundle, so the constraint cannot be checked once the letters
+		// are set and must not prune the parameter space
+		ParameterSpace pSpace = new ParameterSpace(letters, bundle, symbols);
+		pSpace.addConstraint(DimensionConstraint.create(constraint, "letters", "x"));
+		List<Map<String, Object>> configs = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> config : pSpace) {
+			configs.add(config);
+		}
+
+		assertEquals(2, configs.size());
+		assertEquals('!', configs.get(0).get("symbols"));
+		assertEquals('&', configs.get(1).get("symbols"));
+	}
+
+	@Test
+	public void testConstraintOnBundle()
+	{
+		Dimension<String> letters = Dimension.create("letters", "a", "b");
+		Dimension<Map<String, Object>> bundle = Dimension.createBundle("bundle",
+				new Object[] { DimensionBundle.KEY_BUNDLE_ID, "one", "x", 1, "y", "p" },
+				new Object[] { DimensionBundle.KEY_BUNDLE_ID, "two", "x", 2, "y", "q" });
+
+		ParameterSpace pSpace = new ParameterSpace(letters, bundle);
+		pSpace.addConstraint(new Constraint()
+		{
+			@Override
+			public boolean isValid(Map<String, Object> aConfiguration)
+			{
+				assertFalse(aConfiguration.containsKey(DimensionBundle.KEY_BUNDLE_ID));
+				return "two".equals(aConfiguration.get("bundle"))
+						&& Integer.valueOf(2).equals(aConfiguration.get("x"));
+			}
+		});
+
+		List<Map<String, Object>> configs = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> config : pSpace) {
+			configs.add(config);
+		}
+
+		assertEquals(2, configs.size());
+		assertEquals("a", configs.get(0).get("letters"));
+		assertEquals("q", configs.get(0).get("y"));
+		assertEquals("b", configs.get(1).get("letters"));
+	}
 }
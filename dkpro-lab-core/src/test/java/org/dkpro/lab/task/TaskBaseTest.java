@@ -26,6 +26,7 @@ import org.dkpro.lab.reporting.Report;
 import org.dkpro.lab.task.impl.DefaultBatchTask;
 import org.dkpro.lab.task.impl.ExecutableTaskBase;
 import org.dkpro.lab.task.impl.TaskBase;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -98,4 +99,24 @@ public class TaskBaseTest {
         //Task did run - no modification allowed
         consumer.setDescriminator("DUMMY_KEY_2", "1234");
     }
+
+    @Test
+    public void heapUsageRecorded() throws Exception
+    {
+        Task task = new ExecutableTaskBase()
+        {
+            @Override
+            public void execute(TaskContext aContext)
+                throws Exception
+            {
+                //do nothing
+            }
+        };
+
+        String id = Lab.getInstance().run(task);
+
+        TaskContextMetadata meta = Lab.getInstance().getStorageService().getContext(id);
+        Assert.assertTrue(meta.getHeapStart() > 0);
+        Assert.assertTrue(meta.getHeapEnd() > 0);
+    }
 }
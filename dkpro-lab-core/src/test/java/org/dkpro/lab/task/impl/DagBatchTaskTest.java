@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.dkpro.lab.Lab;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.engine.impl.DagBatchTaskEngine;
+import org.dkpro.lab.engine.impl.DefaultTaskExecutionService;
+import org.dkpro.lab.engine.impl.TaskDependencyGraph;
+import org.dkpro.lab.storage.UnresolvedImportException;
+import org.dkpro.lab.storage.impl.StringAdapter;
+import org.dkpro.lab.task.BatchTask;
+import org.dkpro.lab.task.Task;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+public class DagBatchTaskTest
+{
+    @Rule
+    public TestName name = new TestName();
+
+    private Lab lab;
+
+    @Before
+    public void setup()
+    {
+        File path = new File("target/repository/" + getClass().getSimpleName() + "/"
+                + name.getMethodName());
+        System.setProperty("DKPRO_HOME", path.getAbsolutePath());
+        FileUtils.deleteQuietly(path);
+
+        // Use newInstance here to avoid leaking the reconfiguration into other unit tests
+        lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, DagBatchTaskEngine.class);
+    }
+
+    @Test
+    public void testChain()
+        throws Exception
+    {
+        Task first = new AppendTask("a");
+        Task second = new AppendTask("b")
+        {
+            // Distinct type
+        };
+        Task third = new AppendTask("c")
+        {
+            // Distinct type
+        };
+        Task independent = new AppendTask("x")
+        {
+            // Distinct type
+        };
+        second.addImport(first, "DATA");
+        third.addImport(second, "DATA");
+
+        TaskDependencyGraph graph = new TaskDependencyGraph(asList(third, independent, second,
+                first));
+        assertEquals(asList(first, second, third), graph.getCriticalPath());
+
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.addTask(third);
+        batch.addTask(independent);
+        batch.addTask(second);
+        batch.addTask(first);
+
+        lab.run(batch);
+
+        assertEquals("abc", ((AppendTask) third).result);
+        assertEquals("x", ((AppendTask) independent).result);
+    }
+
+    @Test(expected = UnresolvedImportException.class)
+    public void testCycle()
+        throws Exception
+    {
+        Task task1 = new AppendTask("1");
+        Task task2 = new AppendTask("2")
+        {
+            // Distinct type
+        };
+        task1.addImport(task2, "DATA");
+        task2.addImport(task1, "DATA");
+
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.addTask(task1);
+        batch.addTask(task2);
+
+        lab.run(batch);
+    }
+
+    public static class AppendTask
+        extends ExecutableTaskBase
+    {
+        private final String value;
+        private String result;
+
+        public AppendTask(String aValue)
+        {
+            value = aValue;
+        }
+
+        @Override
+        public void execute(TaskContext aContext)
+            throws Exception
+        {
+            String input = "";
+            if (aContext.containsKey("DATA")) {
+                input = aContext.retrieveBinary("DATA", new StringAdapter()).getString();
+            }
+            result = input + value;
+            aContext.storeBinary("DATA", new StringAdapter(result));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.dkpro.lab.Lab;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.engine.impl.DefaultTaskExecutionService;
+import org.dkpro.lab.engine.impl.DistributedBatchTaskEngine;
+import org.dkpro.lab.engine.impl.FileWorkQueue;
+import org.dkpro.lab.storage.impl.StringAdapter;
+import org.dkpro.lab.task.BatchTask;
+import org.dkpro.lab.task.Dimension;
+import org.dkpro.lab.task.Discriminator;
+import org.dkpro.lab.task.ParameterSpace;
+import org.dkpro.lab.task.TaskContextMetadata;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+public class DistributedBatchTaskTest
+{
+    private static final String RUN_ID = "test";
+
+    @Rule
+    public TestName name = new TestName();
+
+    private File path;
+
+    @Before
+    public void setup()
+    {
+        path = new File("target/repository/" + getClass().getSimpleName() + "/"
+                + name.getMethodName());
+        System.setProperty("DKPRO_HOME", path.getAbsolutePath());
+        FileUtils.deleteQuietly(path);
+    }
+
+    @Test
+    public void testTwoProcesses()
+        throws Exception
+    {
+        // Start a worker process running the same batch task
+        ProcessBuilder builder = new ProcessBuilder(System.getProperty("java.home")
+                + File.separator + "bin" + File.separator + "java", "-cp",
+                System.getProperty("java.class.path"), "-DDKPRO_HOME=" + path.getAbsolutePath(),
+                DistributedBatchTaskTest.class.getName());
+        builder.inheritIO();
+        Process worker = builder.start();
+
+        Lab lab = createLab();
+        lab.run(createBatch());
+
+        assertTrue(worker.waitFor(2, TimeUnit.MINUTES));
+        assertEquals(0, worker.exitValue());
+
+        // Each configuration was executed exactly once by one of the processes
+        Set<String> values = new HashSet<String>();
+        for (TaskContextMetadata meta : lab.getStorageService().getContexts(
+                SleepTask.class.getSimpleName(), Collections.<String, String> emptyMap())) {
+            String data = lab.getStorageService().retrieveBinary(meta.getId(), "DATA",
+                    new StringAdapter()).getString();
+            assertTrue("Configuration executed twice: " + data, values.add(data));
+        }
+        assertEquals(new HashSet<String>(asList("1", "2", "3", "4", "5", "6")), values);
+    }
+
+    @Test
+    public void testExpiredLease()
+        throws Exception
+    {
+        File folder = new File(path, "queue");
+        Map<String, String> item = Collections.emptyMap();
+
+        FileWorkQueue dead = new FileWorkQueue(folder, "dead");
+        assertTrue(dead.create(asList(item, item)));
+        assertEquals(Integer.valueOf(0), dead.claim());
+
+        FileWorkQueue live = new FileWorkQueue(folder, "live");
+        live.setLeaseTimeout(1000);
+        assertEquals(Integer.valueOf(1), live.claim());
+        assertNull(live.claim());
+
+        // The dead process stops renewing its lease
+        new File(folder, "leases/0").setLastModified(System.currentTimeMillis() - 5000);
+        assertEquals(Integer.valueOf(0), live.claim());
+        live.complete(0, asList("a"));
+        live.complete(1, asList("b"));
+
+        assertTrue(live.isComplete());
+        assertEquals(new HashSet<String>(asList("a", "b")), live.getResults());
+    }
+
+    @Test
+    public void testMismatchedQueue()
+        throws Exception
+    {
+        Lab lab = createLab();
+        lab.run(createBatch());
+
+        // A different parameter space of the same size must not reuse the queue of the run
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(new ParameterSpace(Dimension.create("param", "7", "8", "9",
+                "10", "11", "12")));
+        batch.addTask(new SleepTask());
+        try {
+            lab.run(batch);
+            fail("Expected the queue to be rejected");
+        }
+        catch (Exception e) {
+            assertTrue(ExceptionUtils.getStackTrace(e).contains("does not match"));
+        }
+    }
+
+    @Test
+    public void testSearchRejected()
+        throws Exception
+    {
+        BatchTask batch = createBatch();
+        batch.getParameterSpace().setSearchStrategy(new RandomSearch("results.prop", "score",
+                3));
+        try {
+            createLab().run(batch);
+            fail("Expected the search to be rejected");
+        }
+        catch (Exception e) {
+            assertTrue(ExceptionUtils.getStackTrace(e).contains("cannot be distributed"));
+        }
+    }
+
+    /**
+     * Entry point of the worker process.
+     */
+    public static void main(String[] aArgs)
+        throws Exception
+    {
+        createLab().run(createBatch());
+        System.exit(0);
+    }
+
+    private static Lab createLab()
+    {
+        // Use newInstance here to avoid leaking the reconfiguration into other unit tests
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, DistributedBatchTaskEngine.class);
+        lab.setProperty(DistributedBatchTaskEngine.PROP_RUN_ID, RUN_ID);
+        lab.setProperty(DistributedBatchTaskEngine.PROP_POLL_INTERVAL, "100");
+        lab.setProperty(DistributedBatchTaskEngine.PROP_HEARTBEAT, "500");
+        return lab;
+    }
+
+    private static BatchTask createBatch()
+    {
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(new ParameterSpace(Dimension.create("param", "1", "2", "3",
+                "4", "5", "6")));
+        batch.addTask(new SleepTask());
+        return batch;
+    }
+
+    public static class SleepTask
+        extends ExecutableTaskBase
+    {
+        @Discriminator
+        private String param;
+
+        @Override
+        public void execute(TaskContext aContext)
+            throws Exception
+        {
+            Thread.sleep(500);
+            aContext.storeBinary("DATA", new StringAdapter(param));
+            aContext.message("Executed [" + param + "] in ["
+                    + ManagementFactory.getRuntimeMXBean().getName() + "]");
+        }
+    }
+}
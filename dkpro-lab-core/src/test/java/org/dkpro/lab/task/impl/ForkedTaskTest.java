@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.dkpro.lab.Lab;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.engine.impl.DefaultTaskExecutionService;
+import org.dkpro.lab.engine.impl.ForkedTaskEngine;
+import org.dkpro.lab.storage.impl.StringAdapter;
+import org.dkpro.lab.task.ExecutableTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+public class ForkedTaskTest
+{
+    @Rule
+    public TestName name = new TestName();
+
+    private Lab lab;
+
+    private File path;
+
+    private String oldHome;
+
+    @Before
+    public void setup()
+    {
+        path = new File("target/repository/" + getClass().getSimpleName() + "/"
+                + name.getMethodName());
+        oldHome = System.setProperty("DKPRO_HOME", path.getAbsolutePath());
+        FileUtils.deleteQuietly(path);
+
+        // Use newInstance here to avoid leaking the reconfiguration into other unit tests
+        lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                ExecutableTask.class, ForkedTaskEngine.class);
+    }
+
+    @After
+    public void teardown()
+    {
+        if (oldHome != null) {
+            System.setProperty("DKPRO_HOME", oldHome);
+        }
+        else {
+            System.clearProperty("DKPRO_HOME");
+        }
+    }
+
+    @Test
+    public void testForked()
+        throws Exception
+    {
+        ProducerTask producer = new ProducerTask();
+        producer.setType("Producer");
+        producer.setAttribute("attr", "value");
+        producer.marker = new File(path, "crashed");
+        ConsumerTask consumer = new ConsumerTask();
+        consumer.addImport(producer, "DATA");
+
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.addTask(producer);
+        batch.addTask(consumer);
+
+        lab.run(batch);
+
+        // The worker crashed once and the task was run again on a new worker
+        assertTrue(producer.marker.exists());
+
+        // The producer ran in a worker JVM, the consumer is not serializable and ran in the
+        // current JVM
+        String[] result = consumer.result.split("\\|");
+        assertFalse(ManagementFactory.getRuntimeMXBean().getName().equals(result[0]));
+
+        // The configuration inherited from TaskBase was transferred to the worker
+        assertEquals("Producer", result[1]);
+        assertEquals("value", result[2]);
+
+        // The output of the crashed attempt was removed before the task was run again
+        assertEquals("false", result[3]);
+    }
+
+    @Test
+    public void testTimeout()
+        throws Exception
+    {
+        lab.setProperty(ForkedTaskEngine.PROP_TIMEOUT, "2000");
+
+        try {
+            lab.run(new SleepTask());
+            fail("Expected the worker to time out");
+        }
+        catch (Exception e) {
+            assertTrue(ExceptionUtils.getStackTrace(e).contains("did not complete within"));
+        }
+    }
+
+    public static class ProducerTask
+        extends ExecutableTaskBase
+        implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private File marker;
+
+        @Override
+        public void execute(TaskContext aContext)
+            throws Exception
+        {
+            if (marker.createNewFile()) {
+                aContext.storeBinary("PARTIAL", new StringAdapter("partial"));
+                Runtime.getRuntime().halt(1);
+            }
+            aContext.storeBinary("DATA", new StringAdapter(
+                    ManagementFactory.getRuntimeMXBean().getName() + "|" + getType() + "|"
+                            + getAttribute("attr") + "|"
+                            + aContext.containsKey("PARTIAL")));
+        }
+    }
+
+    public static class SleepTask
+        extends ExecutableTaskBase
+        implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(TaskContext aContext)
+            throws Exception
+        {
+            Thread.sleep(60000);
+        }
+    }
+
+    public static class ConsumerTask
+        extends ExecutableTaskBase
+    {
+        private String result;
+
+        @Override
+        public void execute(TaskContext aContext)
+            throws Exception
+        {
+            result = aContext.retrieveBinary("DATA", new StringAdapter()).getString();
+        }
+    }
+}
@@ -23,8 +23,12 @@ import org.dkpro.lab.engine.TaskContext;
 import org.dkpro.lab.engine.TaskExecutionEngine;
 import org.dkpro.lab.engine.impl.DefaultTaskExecutionService;
 import org.dkpro.lab.engine.impl.MultiThreadBatchTaskEngine;
+import org.dkpro.lab.engine.impl.SharedTaskExecutor;
+import org.dkpro.lab.engine.impl.VirtualThreadBatchTaskEngine;
+import org.dkpro.lab.reporting.ReportBase;
 import org.dkpro.lab.storage.UnresolvedImportException;
 import org.dkpro.lab.storage.impl.PropertiesAdapter;
+import org.dkpro.lab.storage.impl.StringAdapter;
 import org.dkpro.lab.task.*;
 import org.dkpro.lab.task.impl.DefaultBatchTask;
 import org.dkpro.lab.task.impl.ExecutableTaskBase;
@@ -36,8 +40,17 @@ import org.junit.Test;
 import org.junit.rules.TestName;
 
 import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MultiThreadBatchTaskTest
 {
@@ -249,6 +262,419 @@ public class MultiThreadBatchTaskTest
         Lab.getInstance().run(batchTask);
     }
 
+    @Test
+    public void testConcurrentConfigurations()
+            throws Exception
+    {
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, MultiThreadBatchTaskEngine.class);
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_THREADS, "4");
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_CONFIGURATIONS, "4");
+
+        ParameterSpace pSpace = new ParameterSpace(Dimension.create("param", "1", "2", "3",
+                "4", "5", "6"));
+
+        final AtomicInteger sharedRuns = new AtomicInteger();
+        final Set<String> results = Collections.synchronizedSet(new HashSet<String>());
+
+        // Does not depend on the parameter, so it must be executed only once
+        Task shared = new ExecutableTaskBase()
+        {
+            @Override
+            public void execute(TaskContext aContext)
+                    throws Exception
+            {
+                sharedRuns.incrementAndGet();
+            }
+        };
+
+        Task producer = new ExecutableTaskBase()
+        {
+            @Discriminator
+            private String param;
+
+            @Override
+            public void execute(TaskContext aContext)
+                    throws Exception
+            {
+                aContext.storeBinary("DATA", new StringAdapter(param));
+            }
+        };
+
+        Task consumer = new ExecutableTaskBase()
+        {
+            @Override
+            public void execute(TaskContext aContext)
+                    throws Exception
+            {
+                results.add(aContext.retrieveBinary("DATA", new StringAdapter()).getString());
+            }
+        };
+        consumer.addImport(producer, "DATA");
+
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(pSpace);
+        batch.addTask(consumer);
+        batch.addTask(producer);
+        batch.addTask(shared);
+
+        lab.run(batch);
+
+        Assert.assertEquals(1, sharedRuns.get());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("1", "2", "3", "4", "5", "6")), results);
+    }
+
+    @Test
+    public void testSharedExecution()
+            throws Exception
+    {
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, RecordingBatchTaskEngine.class);
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_CONFIGURATIONS, "2");
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_VIRTUAL_THREADS, "true");
+
+        // Does not depend on the parameter, so both configurations wait for one execution
+        ExpensiveTask shared = new ExpensiveTask(false);
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(new ParameterSpace(Dimension.create("param", "1", "2")));
+        batch.addTask(shared);
+        lab.run(batch);
+
+        Assert.assertEquals(1, shared.executions.get());
+        Assert.assertEquals(1, RecordingBatchTaskEngine.last.getSharedResults());
+
+        // Depends on the parameter only through a discriminator which is not a field
+        ExpensiveTask separate = new ExpensiveTask(true);
+        batch = new DefaultBatchTask();
+        batch.setParameterSpace(new ParameterSpace(Dimension.create("param", "1", "2")));
+        batch.addTask(separate);
+        lab.run(batch);
+
+        Assert.assertEquals(2, separate.executions.get());
+        Assert.assertEquals(0, RecordingBatchTaskEngine.last.getSharedResults());
+    }
+
+    @Test
+    public void testPoolReuse()
+            throws Exception
+    {
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, RecordingBatchTaskEngine.class);
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_CONFIGURATIONS, "2");
+
+        PoolRecordingTask task = new PoolRecordingTask();
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(new ParameterSpace(Dimension.create("param", "1", "2", "3",
+                "4")));
+        batch.addTask(task);
+
+        // The pool is created under a different context class loader than the one of the
+        // thread running the batch task
+        SharedTaskExecutor executor = new SharedTaskExecutor();
+        ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        ClassLoader classLoader = new URLClassLoader(new URL[0], oldClassLoader);
+        Thread.currentThread().setContextClassLoader(classLoader);
+        ForkJoinPool pool;
+        try {
+            pool = executor.getPool();
+        }
+        finally {
+            Thread.currentThread().setContextClassLoader(oldClassLoader);
+        }
+
+        RecordingBatchTaskEngine.executor = executor;
+        try {
+            lab.run(batch);
+        }
+        finally {
+            RecordingBatchTaskEngine.executor = null;
+            executor.shutdown();
+        }
+
+        // All configurations run in the shared pool, whose threads use the class loader of the
+        // creator of the pool
+        Assert.assertEquals(4, task.executions.get());
+        Assert.assertEquals(Collections.singleton(pool), task.pools);
+        Assert.assertEquals(Collections.singleton(classLoader), task.classLoaders);
+    }
+
+    @Test
+    public void testNestedParallelism()
+            throws Exception
+    {
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, RecordingBatchTaskEngine.class);
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_THREADS, "4");
+
+        SharedTaskExecutor executor = new SharedTaskExecutor();
+        executor.setParallelism(4);
+        executor.setMaxNestedParallelism(1);
+        RecordingBatchTaskEngine.executor = executor;
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        try {
+            DefaultBatchTask inner = new DefaultBatchTask();
+            for (Task task : Arrays.<Task> asList(new SleepTask(active, maxActive) {},
+                    new SleepTask(active, maxActive) {}, new SleepTask(active, maxActive) {})) {
+                task.setAttribute(Resources.CORES, "0");
+                inner.addTask(task);
+            }
+            DefaultBatchTask outer = new DefaultBatchTask();
+            outer.addTask(inner);
+
+            lab.run(outer);
+        }
+        finally {
+            RecordingBatchTaskEngine.executor = null;
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void testVirtualThreads()
+            throws Exception
+    {
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, VirtualThreadBatchTaskEngine.class);
+
+        ParameterSpace pSpace = new ParameterSpace(Dimension.create("param", "1", "2", "3"));
+
+        final Set<String> results = Collections.synchronizedSet(new HashSet<String>());
+
+        Task producer = new ExecutableTaskBase()
+        {
+            @Discriminator
+            private String param;
+
+            @Override
+            public void execute(TaskContext aContext)
+                    throws Exception
+            {
+                aContext.storeBinary("DATA", new StringAdapter(param));
+            }
+        };
+
+        Task consumer = new ReportingTask();
+        consumer.addReport(new ReportBase()
+        {
+            @Override
+            public void execute()
+                    throws Exception
+            {
+                results.add(getContext().retrieveBinary("DATA", new StringAdapter())
+                        .getString());
+            }
+        });
+        consumer.addImport(producer, "DATA");
+
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(pSpace);
+        batch.addTask(consumer);
+        batch.addTask(producer);
+
+        lab.run(batch);
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), results);
+    }
+
+    @Test
+    public void testResourceBudget()
+            throws Exception
+    {
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, MultiThreadBatchTaskEngine.class);
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_THREADS, "4");
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        // Each task needs the whole heap, so they must run one after the other
+        String heap = String.valueOf(Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        DefaultBatchTask batch = new DefaultBatchTask();
+        for (Task task : Arrays.<Task> asList(new SleepTask(active, maxActive) {},
+                new SleepTask(active, maxActive) {}, new SleepTask(active, maxActive) {})) {
+            task.setAttribute(Resources.MEMORY, heap);
+            batch.addTask(task);
+        }
+
+        lab.run(batch);
+
+        Assert.assertEquals(1, maxActive.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testSpeculativeExecution()
+            throws Exception
+    {
+        Lab lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+        ((DefaultTaskExecutionService) lab.getTaskExecutionService()).registerEngine(
+                BatchTask.class, MultiThreadBatchTaskEngine.class);
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_SPECULATIVE_EXECUTION, "true");
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_STRAGGLER_MIN_TIME, "200");
+        // Waiting tasks need no cores, so the speculative execution can run next to the
+        // straggler even on a single core machine
+        lab.setProperty(MultiThreadBatchTaskEngine.PROP_VIRTUAL_THREADS, "true");
+
+        // The first execution for the last value hangs, the speculative execution does not
+        StragglerTask task = new StragglerTask("4");
+        task.setAttribute(Resources.CORES, "0");
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(new ParameterSpace(Dimension.create("value", "1", "2", "3",
+                "4")));
+        batch.addTask(task);
+
+        lab.run(batch);
+
+        Assert.assertEquals(2, task.attempts.get());
+        Assert.assertEquals(5, task.executions.get());
+
+        // The batch task waits for the aborted execution, so only the context of the
+        // speculative execution is left
+        Map<String, String> constraints = Collections.singletonMap(
+                StragglerTask.class.getName() + "|value", "4");
+        Assert.assertEquals(1,
+                lab.getStorageService().getContexts(task.getType(), constraints).size());
+    }
+
+    public static class RecordingBatchTaskEngine
+            extends MultiThreadBatchTaskEngine
+    {
+        private static volatile RecordingBatchTaskEngine last;
+        // Replaces the executor of the Lab if set
+        private static volatile SharedTaskExecutor executor;
+
+        public RecordingBatchTaskEngine()
+        {
+            last = this;
+        }
+
+        @Override
+        protected synchronized SharedTaskExecutor getTaskExecutor()
+        {
+            return executor != null ? executor : super.getTaskExecutor();
+        }
+    }
+
+    public static class PoolRecordingTask
+            extends ExecutableTaskBase
+    {
+        @Discriminator
+        private String param;
+
+        // Shared with the clones
+        private final AtomicInteger executions = new AtomicInteger();
+        private final Set<ForkJoinPool> pools = Collections.synchronizedSet(
+                new HashSet<ForkJoinPool>());
+        private final Set<ClassLoader> classLoaders = Collections.synchronizedSet(
+                new HashSet<ClassLoader>());
+
+        public PoolRecordingTask()
+        {
+            setAttribute(Resources.CORES, "0");
+        }
+
+        @Override
+        public void execute(TaskContext aContext)
+                throws Exception
+        {
+            executions.incrementAndGet();
+            pools.add(ForkJoinTask.getPool());
+            classLoaders.add(Thread.currentThread().getContextClassLoader());
+        }
+    }
+
+    public static class ExpensiveTask
+            extends ExecutableTaskBase
+            implements ConfigurationAware
+    {
+        private final boolean discriminate;
+        // Shared with the clones
+        private final AtomicInteger executions = new AtomicInteger();
+
+        public ExpensiveTask(boolean aDiscriminate)
+        {
+            discriminate = aDiscriminate;
+            // Waiting tasks need no cores, so both configurations can run at the same time even
+            // on a single core machine
+            setAttribute(Resources.CORES, "0");
+        }
+
+        @Override
+        public void setConfiguration(Map<String, Object> aConfig)
+        {
+            if (discriminate) {
+                setDescriminator("param", (String) aConfig.get("param"));
+            }
+        }
+
+        @Override
+        public void execute(TaskContext aContext)
+                throws Exception
+        {
+            executions.incrementAndGet();
+            Thread.sleep(500);
+        }
+    }
+
+    public static class StragglerTask
+            extends ExecutableTaskBase
+    {
+        @Discriminator
+        private String value;
+
+        private final String straggler;
+        // Shared with the clones
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger executions = new AtomicInteger();
+
+        public StragglerTask(String aStraggler)
+        {
+            straggler = aStraggler;
+        }
+
+        @Override
+        public void execute(TaskContext aContext)
+                throws Exception
+        {
+            executions.incrementAndGet();
+            if (straggler.equals(value) && attempts.incrementAndGet() == 1) {
+                Thread.sleep(30000);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    public static class SleepTask
+            extends ExecutableTaskBase
+    {
+        private final AtomicInteger active;
+        private final AtomicInteger maxActive;
+
+        public SleepTask(AtomicInteger aActive, AtomicInteger aMaxActive)
+        {
+            active = aActive;
+            maxActive = aMaxActive;
+        }
+
+        @Override
+        public void execute(TaskContext aContext)
+                throws Exception
+        {
+            int current = active.incrementAndGet();
+            maxActive.accumulateAndGet(current, Math::max);
+            Thread.sleep(100);
+            active.decrementAndGet();
+        }
+    }
+
     public static class ConfigDumperTask1
             extends ExecutableTaskBase
             implements ConfigurationAware
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.lab.task.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.dkpro.lab.Lab;
+import org.dkpro.lab.engine.TaskContext;
+import org.dkpro.lab.storage.impl.PropertiesAdapter;
+import org.dkpro.lab.task.Dimension;
+import org.dkpro.lab.task.Discriminator;
+import org.dkpro.lab.task.ParameterSpace;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+public class SearchStrategyTest
+{
+    @Rule
+    public TestName name = new TestName();
+
+    private Lab lab;
+
+    @Before
+    public void setup()
+    {
+        File path = new File("target/repository/" + getClass().getSimpleName() + "/"
+                + name.getMethodName());
+        System.setProperty("DKPRO_HOME", path.getAbsolutePath());
+        FileUtils.deleteQuietly(path);
+
+        lab = Lab.newInstance(Lab.DEFAULT_CONTEXT);
+    }
+
+    @Test
+    public void testRandomSearch()
+        throws Exception
+    {
+        RandomSearch strategy = new RandomSearch("results.prop", "score", 100);
+        strategy.setSeed(1);
+        ScoreTask task = run(strategy);
+
+        // The whole space is sampled, each configuration once
+        assertEquals(20 * 4, task.executions.size());
+        assertEquals(20 * 4, new HashSet<Map<String, Object>>(task.executions).size());
+        assertEquals(13, strategy.getBest().get("x"));
+        assertEquals("c", strategy.getBest().get("y"));
+        assertEquals(0.0, strategy.getBestResult(), 0.0);
+    }
+
+    @Test
+    public void testHyperband()
+        throws Exception
+    {
+        HyperbandSearch strategy = new HyperbandSearch("results.prop", "score", "epochs", 1, 9,
+                3);
+        strategy.setSeed(1);
+        ScoreTask task = run(strategy);
+
+        // Brackets: 9 configurations with 1 epoch, the best 3 of them with 3 epochs and the best
+        // one with 9 epochs; 5 configurations with 3 epochs and the best one with 9 epochs; and
+        // finally 3 configurations with 9 epochs
+        assertEquals(9 + 3 + 1 + 5 + 1 + 3, task.executions.size());
+        assertEquals(9, strategy.getBest().get("epochs"));
+
+        // Only the best configurations are continued with more epochs
+        List<Integer> scores = new ArrayList<Integer>();
+        for (Map<String, Object> config : task.executions.subList(0, 9)) {
+            scores.add(score(config));
+        }
+        scores.sort(null);
+        for (Map<String, Object> config : task.executions.subList(9, 12)) {
+            assertEquals(3, config.get("epochs"));
+            assertTrue(score(config) >= scores.get(6));
+        }
+    }
+
+    @Test
+    public void testTpe()
+        throws Exception
+    {
+        int tpeTotal = 0;
+        int randomTotal = 0;
+        for (int seed = 1; seed <= 5; seed++) {
+            TpeSearch tpe = new TpeSearch("results.prop", "score", 30);
+            tpe.setSeed(seed);
+            ScoreTask task = run(tpe);
+
+            assertEquals(30, task.executions.size());
+            assertEquals(30, new HashSet<Map<String, Object>>(task.executions).size());
+            tpeTotal += total(task);
+
+            RandomSearch random = new RandomSearch("results.prop", "score", 30);
+            random.setSeed(seed);
+            randomTotal += total(run(random));
+
+            // With the same seed and budget, TPE finds a configuration at least as good as
+            // random search ...
+            assertTrue(tpe.getBestResult() >= random.getBestResult());
+        }
+
+        // ... and spends more of the budget on good configurations
+        assertTrue(tpeTotal > randomTotal);
+    }
+
+    private static int total(ScoreTask aTask)
+    {
+        int total = 0;
+        for (Map<String, Object> config : aTask.executions) {
+            total += score(config);
+        }
+        return total;
+    }
+
+    private ScoreTask run(SearchStrategyBase aStrategy)
+        throws Exception
+    {
+        Integer[] values = new Integer[20];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+
+        ParameterSpace pSpace = new ParameterSpace(Dimension.create("x", (Object[]) values),
+                Dimension.create("y", "a", "b", "c", "d"));
+        pSpace.setSearchStrategy(aStrategy);
+
+        ScoreTask task = new ScoreTask();
+        DefaultBatchTask batch = new DefaultBatchTask();
+        batch.setParameterSpace(pSpace);
+        batch.addTask(task);
+
+        lab.run(batch);
+
+        return task;
+    }
+
+    private static int score(Map<String, Object> aConfig)
+    {
+        int x = (Integer) aConfig.get("x");
+        return -(x - 13) * (x - 13) - ("c".equals(aConfig.get("y")) ? 0 : 5);
+    }
+
+    public static class ScoreTask
+        extends ExecutableTaskBase
+    {
+        @Discriminator
+        private Integer x;
+
+        @Discriminator
+        private String y;
+
+        @Discriminator
+        private Integer epochs;
+
+        private final List<Map<String, Object>> executions =
+                new ArrayList<Map<String, Object>>();
+
+        @Override
+        public void execute(TaskContext aContext)
+            throws Exception
+        {
+            Map<String, Object> config = new HashMap<String, Object>();
+            config.put("x", x);
+            config.put("y", y);
+            config.put("epochs", epochs);
+            executions.add(config);
+
+            Map<String, String> results = new HashMap<String, String>();
+            results.put("score", String.valueOf(score(config)));
+            aContext.storeBinary("results.prop", new PropertiesAdapter(results));
+        }
+    }
+}